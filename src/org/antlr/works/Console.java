@@ -2,18 +2,23 @@ package org.antlr.works;
 
 import org.antlr.Tool;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
+import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngineDelegate;
 import org.antlr.works.grammar.engine.GrammarEngineImpl;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 import org.antlr.works.utils.ConsoleHelper;
 import org.antlr.works.visualization.SDGenerator;
+import org.antlr.works.visualization.VisualDrawing;
 import org.antlr.works.visualization.serializable.SEncoder;
 import org.antlr.works.visualization.serializable.SXMLEncoder;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
 
 /*
 
@@ -52,6 +57,11 @@ public class Console {
     private String outputDirectory;
     private String outputFile;
     private boolean verbose;
+    private boolean timings;
+    private int threads = 1;
+
+    /** Name of the file in the output directory listing the signature of each generated rule */
+    private static final String MANIFEST_FILE = "sd-manifest.txt";
 
     public static void main(String[] args) throws Exception {
         if(args.length == 0) {
@@ -72,6 +82,9 @@ public class Console {
         sb.append(" -sd format : ").append("specify the format of the syntax diagram output file. For EPS, use 'eps'. For bitmap, use either 'png' or any available extensions\n");
         sb.append(" -serialize outputFile : ").append("serialize all the syntax diagram of the specified files");
         sb.append(" -o outputDir : ").append("specify the output directory\n");
+        sb.append(" -threads count : ").append("specify the number of threads used to generate the syntax diagrams\n");
+        sb.append(" -incremental : ").append("generate only the syntax diagrams of the rules modified since the last generation in the output directory\n");
+        sb.append(" -timings : ").append("prints the time spent on each rule\n");
         sb.append(" -verbose : ").append("prints the operations\n");
         System.out.println(sb.toString());
     }
@@ -86,7 +99,7 @@ public class Console {
         String sdFormat = getArgumentValue(args, "-sd");
         if(sdFormat != null) {
             if(verbose) System.out.println("Generating syntax diagram in "+sdFormat);
-            generateSyntaxDiagrams(sdFormat);
+            generateSyntaxDiagrams(sdFormat, hasArgument(args, "-incremental"));
         }
         if(hasArgument(args, "-serialize")) {
             if(verbose) System.out.println("Serializing syntax diagram ");
@@ -117,37 +130,117 @@ public class Console {
         if(v != null) {
             verbose = true;
         }
+        timings = hasArgument(args, "-timings");
+
+        String t = getArgumentValue(args, "-threads");
+        if(t != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(t));
+            } catch(NumberFormatException e) {
+                System.err.println("Invalid number of threads (-threads): "+t);
+            }
+        }
     }
 
-    private void generateSyntaxDiagrams(String format) throws Exception {
-        processSyntaxDiagram(new GeneratePSDDelegate(format));
+    private void generateSyntaxDiagrams(String format, boolean incremental) throws Exception {
+        processSyntaxDiagram(new GeneratePSDDelegate(format, incremental));
     }
 
     private void serializeSyntaxDiagrams() throws Exception {
         processSyntaxDiagram(new SerializePSDDelegate());
     }
 
-    private void processSyntaxDiagram(ProcessSyntaxDiagramDelegate delegate) throws Exception {
-        GrammarEngine engine = new GrammarEngineImpl(new EngineDelegate());
+    private void processSyntaxDiagram(final ProcessSyntaxDiagramDelegate delegate) throws Exception {
+        final GrammarEngine engine = new GrammarEngineImpl(new EngineDelegate());
         GrammarSyntaxEngine syntaxEngine = engine.getSyntaxEngine();
 
         syntaxEngine.setDelegate(new SyntaxDelegate());
         syntaxEngine.processSyntax();
 
         engine.parserCompleted();
-        
-        SDGenerator gen = new SDGenerator(engine);
 
-        delegate.beginProcess();
-        for(String name : engine.getRuleNames()) {
-            delegate.processRule(name, gen);
+        // Create the ANTLR grammars (and their NFA) once before the rules are processed:
+        // the NFA are then only read by the threads building the graphs
+        final ANTLRGrammarEngine antlrEngine = engine.getANTLRGrammarEngine();
+        antlrEngine.createGrammars();
+
+        final List<String> names = engine.getRuleNames();
+        final long[] durations = new long[names.size()];
+
+        delegate.beginProcess(engine);
+        if(threads == 1) {
+            SDGenerator gen = new SDGenerator(engine);
+            gen.setGrammars(antlrEngine.getParserGrammar(), antlrEngine.getLexerGrammar());
+            for(int i=0; i<names.size(); i++) {
+                long t = System.currentTimeMillis();
+                delegate.processRule(names.get(i), gen);
+                durations[i] = System.currentTimeMillis()-t;
+            }
+        } else {
+            // Each thread has its own generator (and thus its own graphics context and factory)
+            final ThreadLocal<SDGenerator> generators = new ThreadLocal<SDGenerator>() {
+                @Override
+                protected SDGenerator initialValue() {
+                    SDGenerator gen = new SDGenerator(engine);
+                    gen.setGrammars(antlrEngine.getParserGrammar(), antlrEngine.getLexerGrammar());
+                    return gen;
+                }
+            };
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Long>> results = new ArrayList<Future<Long>>();
+                for(final String name : names) {
+                    results.add(executor.submit(new Callable<Long>() {
+                        public Long call() throws Exception {
+                            long t = System.currentTimeMillis();
+                            delegate.processRule(name, generators.get());
+                            return System.currentTimeMillis()-t;
+                        }
+                    }));
+                }
+                for(int i=0; i<results.size(); i++) {
+                    try {
+                        durations[i] = results.get(i).get();
+                    } catch(ExecutionException e) {
+                        if(e.getCause() instanceof Exception)
+                            throw (Exception)e.getCause();
+                        throw e;
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
         }
         delegate.endProcess();
+
+        if(timings) {
+            printTimings(names, durations);
+        }
+    }
+
+    private void printTimings(List<String> names, final long[] durations) {
+        Integer[] order = new Integer[names.size()];
+        long total = 0;
+        for(int i=0; i<order.length; i++) {
+            order[i] = i;
+            total += durations[i];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return durations[a] < durations[b] ? 1 : (durations[a] == durations[b] ? 0 : -1);
+            }
+        });
+
+        System.out.println("Processed "+names.size()+" rules in "+total+" ms (cumulated, "+threads+" thread(s))");
+        for (Integer index : order) {
+            System.out.println("  " + names.get(index) + ": " + durations[index] + " ms");
+        }
     }
 
+    /** The delegate is called concurrently for different rules when more than one thread is used */
     private interface ProcessSyntaxDiagramDelegate {
 
-        void beginProcess();
+        void beginProcess(GrammarEngine engine) throws Exception;
         void endProcess() throws Exception;
 
         void processRule(String name, SDGenerator gen) throws Exception;
@@ -157,44 +250,93 @@ public class Console {
     private class GeneratePSDDelegate implements ProcessSyntaxDiagramDelegate {
 
         private String format;
+        private boolean incremental;
 
-        public GeneratePSDDelegate(String format) {
+        /** Signature of the rules as recorded by the previous generation and by this one */
+        private Map<String,String> previousSignatures = new HashMap<String, String>();
+        private Map<String,String> signatures = new ConcurrentHashMap<String, String>();
+
+        public GeneratePSDDelegate(String format, boolean incremental) {
             this.format = format;
+            this.incremental = incremental;
         }
 
-        public void beginProcess() {
+        public void beginProcess(GrammarEngine engine) throws IOException {
             if(verbose) System.out.println("Begin");
             new File(outputDirectory).mkdirs();
+
+            for(ElementRule rule : engine.getRules()) {
+                signatures.put(rule.name, format+"-"+VisualDrawing.getSignature(rule, true));
+            }
+            if(incremental) {
+                readManifest();
+            }
         }
 
         public void endProcess() throws IOException {
+            writeManifest();
             if(verbose) System.out.println("Done");
         }
 
         public void processRule(String name, SDGenerator gen) throws Exception {
-            if(verbose) System.out.println("Generate rule "+name);
-
             String file = XJUtils.concatPath(outputDirectory, name+"."+format);
+            String signature = signatures.get(name);
+            if(incremental && signature != null && signature.equals(previousSignatures.get(name)) && new File(file).exists()) {
+                if(verbose) System.out.println("Skip unchanged rule "+name);
+                return;
+            }
+
+            if(verbose) System.out.println("Generate rule "+name);
             if(format.equals("eps")) {
                 gen.renderRuleToEPSFile(name, file);
             } else {
                 gen.renderRuleToBitmapFile(name, format, file);
             }
         }
+
+        private void readManifest() throws IOException {
+            File manifest = new File(XJUtils.concatPath(outputDirectory, MANIFEST_FILE));
+            if(!manifest.exists()) return;
+
+            for(String line : XJUtils.getStringFromFile(manifest.getAbsolutePath()).split("\n")) {
+                int separator = line.lastIndexOf('\t');
+                if(separator > 0) {
+                    previousSignatures.put(line.substring(0, separator), line.substring(separator+1).trim());
+                }
+            }
+        }
+
+        private void writeManifest() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for(Map.Entry<String,String> entry : new TreeMap<String,String>(signatures).entrySet()) {
+                sb.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+            }
+            XJUtils.writeStringToFile(sb.toString(), XJUtils.concatPath(outputDirectory, MANIFEST_FILE));
+        }
     }
 
     private class SerializePSDDelegate implements ProcessSyntaxDiagramDelegate {
 
-        private StringBuilder content;
+        private List<String> names;
+        private Map<String,String> content;
 
-        public void beginProcess() {
+        public void beginProcess(GrammarEngine engine) {
             if(verbose) System.out.println("Begin");
             new File(XJUtils.getPathByDeletingLastComponent(outputFile)).mkdirs();
-            content = new StringBuilder();
+            names = engine.getRuleNames();
+            content = new ConcurrentHashMap<String, String>();
         }
 
         public void endProcess() throws IOException {
-            XJUtils.writeStringToFile(content.toString(), outputFile);
+            // Assemble the rules in the order of the grammar regardless of the order they were processed
+            StringBuilder sb = new StringBuilder();
+            for(String name : names) {
+                String s = content.get(name);
+                if(s == null) continue;
+                sb.append("\n\n------").append(name).append("------\n\n");
+                sb.append(s);
+            }
+            XJUtils.writeStringToFile(sb.toString(), outputFile);
             if(verbose) System.out.println("Done");
         }
 
@@ -202,8 +344,7 @@ public class Console {
             if(verbose) System.out.println("Generate rule "+name);
             SEncoder encoder = new SXMLEncoder();
             gen.serializeRule(name, encoder);
-            content.append("\n\n------").append(name).append("------\n\n");
-            content.append(encoder.toString());
+            content.put(name, encoder.toString());
         }
     }
 
@@ -239,6 +239,10 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         setAnalysisColumnVisible(!isAnalysisColumnVisible());
     }
 
+    public void refreshAnalysis() {
+        analysisColumn.repaint();
+    }
+
     public void setSyntaxColoring(boolean flag) {
         this.syntaxColoring = flag;
         textPane.repaint();
@@ -334,17 +338,10 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public int getLineIndexAtTextPosition(int pos) {
-        List<ATELine> lines = getLines();
-        if(lines == null)
+        if(engine == null)
             return -1;
 
-        for(int i=0; i<lines.size(); i++) {
-            ATELine line = lines.get(i);
-            if(line.position > pos) {
-                return i-1;
-            }
-        }
-        return lines.size()-1;
+        return engine.getSnapshot().getLineIndexAtPosition(pos);
     }
 
     public Point getLineTextPositionsAtTextPosition(int pos) {
@@ -508,9 +505,12 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         return gutter;
     }
 
+    /** Parses the text in the background: the delegate is notified in the event
+     * dispatch thread once the result of the parsing has been published.
+     */
     public void parse() {
         if(engine != null)
-            engine.process();
+            engine.processInBackground();
     }
 
     public String getText() {
@@ -604,6 +604,11 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         }
 
         public void changeUpdate(int offset, int length, boolean insert) {
+            // Always record the change in the engine, even when the changes are not
+            // recorded, so the lexer knows which region of the text has to be tokenized again
+            if(engine != null)
+                engine.changeUpdate(offset, length);
+
             if(isEnable()) {
                 if(delegate != null)
                     delegate.ateChangeUpdate(offset, length, insert);
@@ -6,9 +6,12 @@ import org.antlr.works.ate.ATEUtilities;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngine;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 
+import javax.swing.event.DocumentEvent;
 import javax.swing.text.*;
 import java.awt.*;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /*
 
@@ -58,10 +61,24 @@ public class ATERenderingView extends PlainView {
     private List<ATEToken> tokens;
 
     private DisplayOperation displayOp = new DisplayOperation();
-    private final ModelToViewOperation modelToViewOp = new ModelToViewOperation();
-    private final ViewToModel viewToModelOp = new ViewToModel();
+    private final AdvanceOperation advanceOp = new AdvanceOperation();
+
+    /** The font and color resolved for each attribute of the syntax engine. They are
+     * resolved again only when the coloring of the engine or the font changes.
+     */
+    private final Map<AttributeSet, TextStyle> styles = new IdentityHashMap<AttributeSet, TextStyle>();
+    private TextStyle defaultStyle;
+    private Font stylesFont;
+    private int stylesColoringVersion;
+    private int stylesTabSize;
+
+    /** The x-coordinate of each character of the lines already measured, indexed by line.
+     * The cache is cleared when the text, the tokens or the styles change.
+     */
+    private int[][] lineAdvances = new int[0][];
+    private List<ATEToken> advancesTokens;
+    private int advancesX;
 
-    private Graphics currentGraphics;
     private Color savedColor;
 
     public ATERenderingView(Element elem, ATEPanel textEditor) {
@@ -139,9 +156,10 @@ public class ATERenderingView extends PlainView {
         // Fetch the rectangle of the line
         final Rectangle posRect = lineToRect(a, lineIndex);
 
-        // Compute the location of the specified position using our renderText() method:
-        // it will take care of all characters attributes.
-        posRect.x += renderText(modelToViewOp, currentGraphics, 0, 0, p0, pos);
+        // Fetch the location of the specified position from the measure of the line
+        // (computed using our renderText() method that takes care of all characters attributes)
+        final int[] advances = getLineAdvances(lineIndex, posRect.x);
+        posRect.x = advances[Math.max(0, Math.min(pos - p0, advances.length - 1))];
 
         // Default width
         posRect.width = 1;
@@ -199,20 +217,86 @@ public class ATERenderingView extends PlainView {
             return line.getEndOffset() - 1;
         }
 
-        // Fine. Now let's compute the exact location by using our custom rendering method
-        // that will take care of each token attribute.
+        // Fine. Now let's find the exact location in the measure of the line
+        // computed by our custom rendering method that takes care of each token attribute.
         final int p0 = line.getStartOffset();
-        final int p1 = line.getEndOffset() - 1;
         try {
-            viewToModelOp.setParameters((int)fx, p0);
-            renderText(viewToModelOp, currentGraphics, bounds.x, (int)fy, p0, p1);
-            return viewToModelOp.modelPos;
+            return p0 + getOffsetAtX(getLineAdvances(lineIndex, bounds.x), (int)fx);
         } catch (BadLocationException e) {
             // What should we do? Currently nothing because it should not happen.
             return -1;
         }
     }
 
+    /** Returns the x-coordinate of each character of the line (and of the end of the line)
+     * when the line is drawn at the specified x-coordinate.
+     */
+    private int[] getLineAdvances(int lineIndex, int x) throws BadLocationException {
+        final Element element = getElement();
+        final List<ATEToken> currentTokens = textEditor.getParserEngine().getTokens();
+        // Make sure the styles are up-to-date (they clear the cache if they change)
+        getStyle(null);
+        if(currentTokens != advancesTokens || x != advancesX || lineAdvances.length != element.getElementCount()) {
+            lineAdvances = new int[element.getElementCount()][];
+            advancesTokens = currentTokens;
+            advancesX = x;
+        }
+
+        int[] advances = lineAdvances[lineIndex];
+        if(advances == null) {
+            final Element line = element.getElement(lineIndex);
+            final int p0 = line.getStartOffset();
+            final int p1 = Math.max(p0, line.getEndOffset() - 1);
+            advances = new int[p1 - p0 + 1];
+            advances[0] = x;
+            advanceOp.setAdvances(advances, p0);
+            renderText(advanceOp, null, x, 0, p0, p1);
+            lineAdvances[lineIndex] = advances;
+        }
+        return advances;
+    }
+
+    /** Returns the index of the character boundary closest to the x-coordinate */
+    private static int getOffsetAtX(int[] advances, int x) {
+        int low = 0;
+        int high = advances.length - 1;
+        while(low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if(advances[mid] <= x) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if(low < advances.length - 1 && advances[low+1] - x <= x - advances[low]) {
+            return low + 1;
+        } else {
+            return low;
+        }
+    }
+
+    private void invalidateAdvances() {
+        advancesTokens = null;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent changes, Shape a, ViewFactory f) {
+        invalidateAdvances();
+        super.insertUpdate(changes, a, f);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent changes, Shape a, ViewFactory f) {
+        invalidateAdvances();
+        super.removeUpdate(changes, a, f);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent changes, Shape a, ViewFactory f) {
+        invalidateAdvances();
+        super.changedUpdate(changes, a, f);
+    }
+
     @Override
     public void paint(Graphics g, Shape a) {
         ATEUtilities.prepareForText(g);
@@ -234,7 +318,6 @@ public class ATERenderingView extends PlainView {
      */
 
     protected int drawUnselectedText(Graphics g, int x, int y, int p0, int p1) throws BadLocationException {
-        this.currentGraphics = g;
         return renderText(displayOp, g, x, y, p0, p1);
     }
 
@@ -254,7 +337,6 @@ public class ATERenderingView extends PlainView {
      *          if the range is invalid
      */
     protected int drawSelectedText(Graphics g, int x, int y, int p0, int p1) throws BadLocationException {
-        this.currentGraphics = g;
         return renderText(displayOp, g, x, y, p0, p1);
     }
 
@@ -279,17 +361,16 @@ public class ATERenderingView extends PlainView {
         final int start = findStartingTokenIndex(p0, 0, tokens.size(), 0);
         for (int i = start; i < tokens.size(); i++) {
             ATEToken t = tokens.get(i);
-            AttributeSet attribute = engine.getAttributeForToken(t);
             if(t.start >= p0 && t.start <= p1) {
                 // Fill any non-contiguous token with default color
                 if(t.start > p) {
                     x = action.renderTextPortion(g, x, y, p, t.start, p1, doc, null);
                 }
 
-                x = action.renderTextPortion(g, x, y, t.start, t.end, p1, doc, attribute);
+                x = action.renderTextPortion(g, x, y, t.start, t.end, p1, doc, engine.getAttributeForToken(t));
                 p = t.end;
             } else if(t.end >= p0 && t.start < p0) {
-                x = action.renderTextPortion(g, x, y, p0, t.end, p1, doc, attribute);
+                x = action.renderTextPortion(g, x, y, p0, t.end, p1, doc, engine.getAttributeForToken(t));
                 p = t.end;
             } else if(t.start > p1) {
                 break;
@@ -334,19 +415,38 @@ public class ATERenderingView extends PlainView {
      * @param attribute The attribute to apply
      */
     protected void applyAttribute(Graphics g, AttributeSet attribute) {
-        if(attribute == null) {
-            g.setColor(Color.black);
-            g.setFont(DEFAULT_FONT);
-            return;
+        final TextStyle style = getStyle(attribute);
+        g.setFont(style.font);
+        g.setColor(style.color);
+    }
+
+    /** Returns the font and color of the attribute, resolved once per coloring of the engine
+     * (the measures of the lines depend on the styles and are cleared with them).
+     */
+    protected TextStyle getStyle(AttributeSet attribute) {
+        final int coloringVersion = textEditor.getParserEngine().getColoringVersion();
+        final int tabSize = getTabSize();
+        if(defaultStyle == null || stylesFont != DEFAULT_FONT || stylesColoringVersion != coloringVersion
+                || stylesTabSize != tabSize)
+        {
+            styles.clear();
+            defaultStyle = new TextStyle(DEFAULT_FONT, Color.black);
+            stylesFont = DEFAULT_FONT;
+            stylesColoringVersion = coloringVersion;
+            stylesTabSize = tabSize;
+            invalidateAdvances();
         }
 
-        g.setFont(getFontForAttribute(attribute));
+        if(attribute == null)
+            return defaultStyle;
 
-        final Color c = StyleConstants.getForeground(attribute);
-        if(c == null)
-            g.setColor(Color.black);
-        else
-            g.setColor(c);
+        TextStyle style = styles.get(attribute);
+        if(style == null) {
+            final Color c = StyleConstants.getForeground(attribute);
+            style = new TextStyle(getFontForAttribute(attribute), c == null ? Color.black : c);
+            styles.put(attribute, style);
+        }
+        return style;
     }
 
     /** Return the font given the specified attributes
@@ -460,59 +560,54 @@ public class ATERenderingView extends PlainView {
         }
     }
 
-    public class ModelToViewOperation implements TextOperation {
+    /**
+     * Class that measures the x-coordinate of each character of a portion of text
+     */
+    private class AdvanceOperation implements TextOperation {
+
+        private int[] advances;
+        private int lineStart;
+
+        public void setAdvances(int[] advances, int lineStart) {
+            this.advances = advances;
+            this.lineStart = lineStart;
+        }
 
         public int renderTextPortion(Graphics g, int x, int y, int start, int end, int max, Document doc, AttributeSet attribute)
                 throws BadLocationException
         {
-            if(g == null)
-                return 0;
-
             int length = end - start;
             if(start + length > max)
                 length = max - start;
+            if(length <= 0)
+                return x;
 
-            save(g);
-            applyAttribute(g, attribute);
-            Segment text = getLineBuffer();
+            final FontMetrics fm = getStyle(attribute).metrics;
+            final Segment text = getLineBuffer();
             doc.getText(start, length, text);
-
-            x += Utilities.getTabbedTextWidth(text, g.getFontMetrics(), x, ATERenderingView.this, start);
-            restore(g);
+            for(int i=0; i<length; i++) {
+                final char c = text.array[text.offset+i];
+                if(c == '\t') {
+                    x = (int) nextTabStop(x, start+i);
+                } else {
+                    x += fm.charWidth(c);
+                }
+                advances[start+i+1-lineStart] = x;
+            }
             return x;
         }
     }
 
-    public class ViewToModel implements TextOperation {
-
-        private int modelPos;
-        private int viewX;
-
-        public void setParameters(int viewX, int modelPos) {
-            this.viewX = viewX;
-            this.modelPos = modelPos;
-        }
-
-        public int renderTextPortion(Graphics g, int x, int y, int start, int end, int max, Document doc, AttributeSet attribute)
-                throws BadLocationException
-        {
-            if(g == null)
-                return 0;
+    protected class TextStyle {
 
-            int length = end - start;
-            if(start + length > max)
-                length = max - start;
+        public final Font font;
+        public final Color color;
+        public final FontMetrics metrics;
 
-            save(g);
-            applyAttribute(g, attribute);
-            Segment text = getLineBuffer();
-            doc.getText(start, length, text);
-
-            modelPos += Utilities.getTabbedTextOffset(text, g.getFontMetrics(), x, viewX, ATERenderingView.this, start);
-            x +=Utilities.getTabbedTextWidth(text, g.getFontMetrics(), x, ATERenderingView.this, start);
-
-            restore(g);
-            return x;
+        public TextStyle(Font font, Color color) {
+            this.font = font;
+            this.color = color;
+            this.metrics = textPane.getFontMetrics(font);
         }
     }
 
@@ -34,6 +34,7 @@ package org.antlr.works.ate.syntax.generic;
 import org.antlr.works.ate.syntax.misc.ATELine;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 
+import javax.swing.*;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
@@ -47,26 +48,54 @@ public abstract class ATESyntaxEngine {
     protected ATESyntaxEngineDelegate delegate;
 
     protected ATESyntaxLexer lexer;
-    protected ATESyntaxParser parser;
 
-    protected List<ATEToken> tokens;
     protected SimpleAttributeSet commentAttr;
     protected SimpleAttributeSet stringAttr;
     protected SimpleAttributeSet keywordAttr;
 
+    /** Incremented each time the attributes are refreshed: the views resolve the font
+     * and color of each attribute only once per version.
+     */
+    private volatile int coloringVersion;
+
+    /** The result of the last parsing, replaced atomically after each parsing */
+    private volatile ATESyntaxSnapshot snapshot;
+
+    /** Lock held while lexing and parsing: the lexer keeps the state of the
+     * previous tokenization and cannot be used by two threads at the same time
+     */
+    private final Object parseLock = new Object();
+
+    /** The changes not yet handed to the lexer (offset, length, version), the current
+     * version of the text and the text waiting to be parsed in the background.
+     * These fields are guarded by this.
+     */
+    private final List<int[]> changes = new ArrayList<int[]>();
+    private int version;
+    private String pendingText;
+    private int pendingVersion;
+    private Thread worker;
+    private boolean closed;
+
     public ATESyntaxEngine() {
         lexer = createLexer();
-        parser = createParser();
+        snapshot = ATESyntaxSnapshot.empty(createParser());
         stringAttr = new SimpleAttributeSet();
         keywordAttr = new SimpleAttributeSet();
         commentAttr = new SimpleAttributeSet();
     }
 
     public void close() {
-        parser.close();
-        parser = null;
-        lexer.close();
-        lexer = null;
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        synchronized(parseLock) {
+            ATESyntaxParser parser = snapshot.getParser();
+            if(parser != null)
+                parser.close();
+            lexer.close();
+        }
         delegate = null;
     }
 
@@ -74,24 +103,34 @@ public abstract class ATESyntaxEngine {
         this.delegate = delegate;
     }
 
-    public synchronized List<ATEToken> getTokens() {
-        return tokens;
+    public ATESyntaxSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public List<ATEToken> getTokens() {
+        return snapshot.getTokens();
     }
 
-    public synchronized List<ATELine> getLines() {
-        return lexer.getLines();
+    public List<ATELine> getLines() {
+        return snapshot.getLines();
     }
 
-    public synchronized int getMaxLines() {
-        return lexer.getLineNumber();
+    public int getMaxLines() {
+        return snapshot.getMaxLines();
+    }
+
+    /** Returns the current version of the text, incremented by each change */
+    public synchronized int getVersion() {
+        return version;
     }
 
     public ATESyntaxLexer getLexer() {
         return lexer;
     }
 
+    /** Returns the parser that produced the current snapshot */
     public ATESyntaxParser getParser() {
-        return parser;
+        return snapshot.getParser();
     }
 
     public ATESyntaxLexer createLexer() {
@@ -123,21 +162,167 @@ public abstract class ATESyntaxEngine {
         return attr;
     }
 
+    /** Notifies the engine that the text has been modified. The length is positive
+     * if characters have been inserted and negative if they have been removed.
+     */
+    public synchronized void changeUpdate(int offset, int length) {
+        version++;
+        changes.add(new int[] { offset, length, version });
+    }
+
+    /** Lexes and parses the text in the current thread */
     public void processSyntax() {
+        synchronized(parseLock) {
+            String text = delegate.getText();
+            int textVersion;
+            List<int[]> textChanges;
+            synchronized(this) {
+                textVersion = version;
+                textChanges = takeChanges(textVersion);
+                // Any pending background parsing is now obsolete
+                pendingText = null;
+            }
+            ATESyntaxSnapshot s = parse(text, textVersion, textChanges, false);
+            replaceSnapshot(s);
+        }
+    }
+
+    public void process() {
+        delegate.ateEngineBeforeParsing();
+        processSyntax();
+        delegate.ateEngineAfterParsing();
+    }
+
+    /** Lexes and parses the text in a background thread. This method must be invoked from the
+     * event dispatch thread. The result is published in the event dispatch thread and the delegate
+     * is notified only if the text has not been modified in the meantime: if a newer version
+     * of the text is waiting to be parsed, the current parsing is cancelled.
+     */
+    public void processInBackground() {
+        delegate.ateEngineBeforeParsing();
+        String text = delegate.getText();
+        synchronized(this) {
+            if(closed) return;
+
+            pendingText = text;
+            pendingVersion = version;
+            if(worker == null) {
+                worker = new Thread(new ParseWorker());
+                worker.setName(getClass().getName());
+                worker.setDaemon(true);
+                worker.start();
+            }
+            notifyAll();
+        }
+    }
+
+    private List<int[]> takeChanges(int upToVersion) {
+        List<int[]> taken = new ArrayList<int[]>();
+        while(!changes.isEmpty() && changes.get(0)[2] <= upToVersion) {
+            taken.add(changes.remove(0));
+        }
+        return taken;
+    }
+
+    private synchronized boolean isObsolete(int textVersion) {
+        return closed || pendingText != null && pendingVersion > textVersion;
+    }
+
+    private ATESyntaxSnapshot parse(String text, int textVersion, List<int[]> textChanges, boolean cancellable) {
         // First run the lexer
-        lexer.tokenize(delegate.getText());
-        tokens = new ArrayList<ATEToken>(lexer.getTokens());
+        for(int[] change : textChanges) {
+            lexer.changeUpdate(change[0], change[1]);
+        }
+        lexer.tokenize(text);
+        List<ATEToken> tokens = new ArrayList<ATEToken>(lexer.getTokens());
+        List<ATELine> lines = new ArrayList<ATELine>(lexer.getLines());
+
+        if(cancellable && isObsolete(textVersion))
+            return null;
 
         // And then the parser if it exists
+        ATESyntaxParser parser = createParser();
         if(parser != null) {
             parser.parse(tokens);
         }
+        return new ATESyntaxSnapshot(textVersion, tokens, lines, lexer.getLineNumber(), parser);
     }
 
-    public void process() {
-        delegate.ateEngineBeforeParsing();
-        processSyntax();
-        delegate.ateEngineAfterParsing();
+    private void publish(final ATESyntaxSnapshot s) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if(delegate == null)
+                    return;
+
+                if(replaceSnapshot(s) && s.getVersion() == getVersion()) {
+                    delegate.ateEngineAfterParsing();
+                }
+            }
+        });
+    }
+
+    /** Replaces the current snapshot by the snapshot unless the current one is more recent.
+     * The replaced snapshot is left untouched (other threads may still read its tokens and
+     * elements): it is reclaimed once nobody references it anymore.
+     */
+    private synchronized boolean replaceSnapshot(ATESyntaxSnapshot s) {
+        if(s.getVersion() < snapshot.getVersion())
+            return false;
+
+        snapshot = s;
+        return true;
+    }
+
+    /** Rethrows the exception in the event dispatch thread, like if the text had been parsed
+     * in that thread by processSyntax()
+     */
+    private void publishFailure(final RuntimeException e) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                throw e;
+            }
+        });
+    }
+
+    private class ParseWorker implements Runnable {
+
+        public void run() {
+            while(true) {
+                synchronized(ATESyntaxEngine.this) {
+                    while(pendingText == null && !closed) {
+                        try {
+                            ATESyntaxEngine.this.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if(closed) return;
+                }
+
+                synchronized(parseLock) {
+                    String text;
+                    int textVersion;
+                    List<int[]> textChanges;
+                    synchronized(ATESyntaxEngine.this) {
+                        if(pendingText == null || closed) continue;
+
+                        text = pendingText;
+                        textVersion = pendingVersion;
+                        textChanges = takeChanges(textVersion);
+                        pendingText = null;
+                    }
+
+                    try {
+                        ATESyntaxSnapshot s = parse(text, textVersion, textChanges, true);
+                        if(s != null) {
+                            publish(s);
+                        }
+                    } catch(RuntimeException e) {
+                        publishFailure(e);
+                    }
+                }
+            }
+        }
     }
 
     public void applyCommentAttribute(SimpleAttributeSet commentAttr) {
@@ -155,7 +340,12 @@ public abstract class ATESyntaxEngine {
         StyleConstants.setBold(keywordAttr, true);
     }
 
+    public int getColoringVersion() {
+        return coloringVersion;
+    }
+
     public void refreshColoring() {
+        coloringVersion++;
         applyCommentAttribute(commentAttr);
         applyStringAttribute(stringAttr);
         applyKeywordAttribute(keywordAttr);
@@ -72,6 +72,17 @@ public class ATESyntaxLexer {
     protected char c0;
     protected char c1;
 
+    /** Region of the text modified since the last tokenization, expressed in the
+     * coordinates of the modified text (damageStart is -1 if no change is known),
+     * and the number of characters added (or removed if negative) by the changes.
+     */
+    protected int damageStart = -1;
+    protected int damageEnd;
+    protected int damageDelta;
+
+    /** True if the lexer can tokenize only the damaged region of the text */
+    protected boolean incremental = true;
+
     public ATESyntaxLexer() {
         lines = new ArrayList<ATELine>();
         tokens = new ArrayList<ATEToken>();
@@ -94,55 +105,240 @@ public class ATESyntaxLexer {
         return lineNumber;
     }
 
+    public void setIncremental(boolean flag) {
+        this.incremental = flag;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /** Records a change in the text that will be tokenized next. The length is
+     * positive if characters have been inserted and negative if they have been removed.
+     * Several changes are merged into one damaged region until the next tokenization.
+     */
+    public void changeUpdate(int offset, int length) {
+        if(damageStart == -1) {
+            damageStart = offset;
+            damageEnd = offset + Math.max(length, 0);
+            damageDelta = length;
+            return;
+        }
+
+        if(length >= 0) {
+            if(damageEnd >= offset)
+                damageEnd += length;
+            damageEnd = Math.max(damageEnd, offset + length);
+        } else {
+            int removed = -length;
+            if(damageEnd >= offset + removed)
+                damageEnd -= removed;
+            else if(damageEnd > offset)
+                damageEnd = offset;
+            damageEnd = Math.max(damageEnd, offset);
+        }
+        damageStart = Math.min(damageStart, offset);
+        damageDelta += length;
+    }
+
     public void tokenize(String text) {
-        this.text = text;
+        if(canRetokenize(text)) {
+            retokenize(text);
+        } else {
+            this.text = text;
 
-        position = -1;
-        lineNumber = 0;
-        lines.clear();
-        lines.add(new ATELine(0));
+            position = -1;
+            lineNumber = 0;
+            lineIndex = 0;
+            lines.clear();
+            lines.add(new ATELine(0));
 
-        tokens.clear();
-        tokenize();
+            tokens.clear();
+            tokenize();
+        }
+        damageStart = -1;
+        damageDelta = 0;
     }
 
     protected void tokenize() {
         while(nextCharacter()) {
-            ATEToken token = customMatch();
-
-            if(token != null) {
-                // custom match matched something
-            } else if(c0 == '\'')
-                token = matchSingleQuoteString();
-            else if(c0 == '\"')
-                token = matchDoubleQuoteString();
-            else if(c0 == '/' && c1 == '/')
-                token = matchSingleComment();
-            else if(c0 == '/' && c1 == '*')
-                token = matchComplexComment();
-            else if(isLetter())
-                token = matchID();
-            else if(c0 == '(')
-                token = createNewToken(TOKEN_LPAREN);
-            else if(c0 == ')')
-                token = createNewToken(TOKEN_RPAREN);
-            else if(c0 == '{')
-                token = createNewToken(TOKEN_LCURLY);
-            else if(c0 == '}')
-                token = createNewToken(TOKEN_RCURLY);
-            else if(c0 == '[')
-                token = createNewToken(TOKEN_LBRACK);
-            else if(c0 == ']')
-                token = createNewToken(TOKEN_RBRACK);
-            else if(c0 == ':')
-                token = createNewToken(TOKEN_COLON);
-            else if(c0 == ';')
-                token = createNewToken(TOKEN_SEMI);
-            else if(!isWhitespace())
-                token = createNewToken(TOKEN_CHAR);
+            addToken(matchToken());
+        }
+    }
+
+    protected boolean canRetokenize(String text) {
+        return incremental && damageStart != -1 && this.text != null && !tokens.isEmpty()
+                && this.text.length() + damageDelta == text.length();
+    }
+
+    /** Tokenizes only the damaged region of the text: the lexer restarts at the beginning
+     * of the last token located before the damaged region and stops as soon as it produces
+     * a token identical to one of the previous tokens located after the damaged region.
+     * The tokens before the restart point and after the synchronization point are reused (copied,
+     * because the previous tokens can still be read by another thread).
+     */
+    protected void retokenize(String text) {
+        List<ATEToken> oldTokens = tokens;
+        List<ATELine> oldLines = lines;
+        String oldText = this.text;
+
+        // Find the last token that ends before the damaged region. The lexer
+        // always restarts between two tokens, that is outside any string or comment.
+        int restartIndex = getLastTokenIndexEndingBefore(oldTokens, damageStart);
+        while(restartIndex >= 0 && isEscaped(oldText, oldTokens.get(restartIndex).start)) {
+            // Do not restart on an escaped character
+            restartIndex--;
+        }
+        int restart = restartIndex < 0 ? 0 : oldTokens.get(restartIndex).start;
+
+        this.text = text;
+        tokens = new ArrayList<ATEToken>(oldTokens.size());
+        lines = new ArrayList<ATELine>(oldLines.size());
+
+        for(int i=0; i<restartIndex; i++) {
+            addToken(oldTokens.get(i).reuse(0, 0, text));
+        }
+        for(ATELine line : oldLines) {
+            if(line.position > restart) break;
+            lines.add(line);
+        }
+
+        position = restart - 1;
+        lineNumber = lines.size() - 1;
+        lineIndex = lines.get(lineNumber).position;
+
+        // Candidate tokens for the synchronization are the old tokens after the damaged region
+        int syncIndex = getFirstTokenIndexStartingAfter(oldTokens, damageEnd - damageDelta);
+        while(nextCharacter()) {
+            ATEToken token = matchToken();
+            if(token == null) continue;
+
+            while(syncIndex < oldTokens.size() && oldTokens.get(syncIndex).start + damageDelta < token.start) {
+                syncIndex++;
+            }
+            if(syncIndex < oldTokens.size() && token.start > damageEnd) {
+                ATEToken old = oldTokens.get(syncIndex);
+                if(old.start + damageDelta == token.start && old.end + damageDelta == token.end
+                        && old.initialType == token.type)
+                {
+                    resynchronize(oldTokens, oldLines, syncIndex);
+                    return;
+                }
+            }
+            addToken(token);
+        }
+    }
 
+    /** Appends the old tokens (and lines) starting at syncIndex, shifted by the damage delta */
+    protected void resynchronize(List<ATEToken> oldTokens, List<ATELine> oldLines, int syncIndex) {
+        int oldSyncStart = oldTokens.get(syncIndex).start;
+
+        // Remove the lines added while matching the synchronization token
+        while(lines.size() > 1 && lines.get(lines.size()-1).position > oldSyncStart + damageDelta) {
+            lines.remove(lines.size()-1);
+        }
+
+        int oldLineIndex = getFirstLineIndexAfter(oldLines, oldSyncStart);
+        int lineDelta = lines.size() - oldLineIndex;
+        for(int i=oldLineIndex; i<oldLines.size(); i++) {
+            lines.add(new ATELine(oldLines.get(i).position + damageDelta));
+        }
+
+        for(int i=syncIndex; i<oldTokens.size(); i++) {
+            ATEToken token = oldTokens.get(i).reuse(damageDelta, lineDelta, text);
+            token.startLineIndex = lines.get(token.startLineNumber).position;
+            token.endLineIndex = lines.get(token.endLineNumber).position;
             addToken(token);
         }
+
+        position = text.length();
+        lineNumber = lines.size() - 1;
+        lineIndex = lines.get(lineNumber).position;
+    }
+
+    private static boolean isEscaped(String text, int position) {
+        return position > 0 && text.charAt(position - 1) == '\\';
+    }
+
+    private static int getLastTokenIndexEndingBefore(List<ATEToken> tokens, int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        int result = -1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(tokens.get(mid).end < offset) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private static int getFirstTokenIndexStartingAfter(List<ATEToken> tokens, int offset) {
+        int low = 0;
+        int high = tokens.size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(tokens.get(mid).start > offset) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static int getFirstLineIndexAfter(List<ATELine> lines, int offset) {
+        int low = 0;
+        int high = lines.size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(lines.get(mid).position > offset) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    protected ATEToken matchToken() {
+        ATEToken token = customMatch();
+
+        if(token != null) {
+            // custom match matched something
+        } else if(c0 == '\'')
+            token = matchSingleQuoteString();
+        else if(c0 == '\"')
+            token = matchDoubleQuoteString();
+        else if(c0 == '/' && c1 == '/')
+            token = matchSingleComment();
+        else if(c0 == '/' && c1 == '*')
+            token = matchComplexComment();
+        else if(isLetter())
+            token = matchID();
+        else if(c0 == '(')
+            token = createNewToken(TOKEN_LPAREN);
+        else if(c0 == ')')
+            token = createNewToken(TOKEN_RPAREN);
+        else if(c0 == '{')
+            token = createNewToken(TOKEN_LCURLY);
+        else if(c0 == '}')
+            token = createNewToken(TOKEN_RCURLY);
+        else if(c0 == '[')
+            token = createNewToken(TOKEN_LBRACK);
+        else if(c0 == ']')
+            token = createNewToken(TOKEN_RBRACK);
+        else if(c0 == ':')
+            token = createNewToken(TOKEN_COLON);
+        else if(c0 == ';')
+            token = createNewToken(TOKEN_SEMI);
+        else if(!isWhitespace())
+            token = createNewToken(TOKEN_CHAR);
+
+        return token;
     }
 
     protected ATEToken customMatch() {
@@ -0,0 +1,101 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.ate.syntax.generic;
+
+import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+
+import java.util.Collections;
+import java.util.List;
+
+/** This class holds the result of the lexing and parsing of one version of the text.
+ * A snapshot is never modified once it has been published by the engine: the tokens,
+ * the lines and the parser (with its rules, references, etc) always belong together.
+ */
+public class ATESyntaxSnapshot {
+
+    private final int version;
+    private final List<ATEToken> tokens;
+    private final List<ATELine> lines;
+    private final int maxLines;
+    private final ATESyntaxParser parser;
+
+    public ATESyntaxSnapshot(int version, List<ATEToken> tokens, List<ATELine> lines, int maxLines, ATESyntaxParser parser) {
+        this.version = version;
+        this.tokens = tokens;
+        this.lines = lines;
+        this.maxLines = maxLines;
+        this.parser = parser;
+    }
+
+    public static ATESyntaxSnapshot empty(ATESyntaxParser parser) {
+        return new ATESyntaxSnapshot(-1, Collections.<ATEToken>emptyList(), Collections.<ATELine>emptyList(), 0, parser);
+    }
+
+    /** Returns the version of the text this snapshot has been built from */
+    public int getVersion() {
+        return version;
+    }
+
+    public List<ATEToken> getTokens() {
+        return tokens;
+    }
+
+    public List<ATELine> getLines() {
+        return lines;
+    }
+
+    /** Returns the index of the line containing the position (or -1 if there is no line) */
+    public int getLineIndexAtPosition(int position) {
+        int low = 0;
+        int high = lines.size() - 1;
+        int candidate = -1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(lines.get(mid).position <= position) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return candidate;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    public ATESyntaxParser getParser() {
+        return parser;
+    }
+}
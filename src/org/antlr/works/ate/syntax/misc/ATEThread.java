@@ -127,10 +127,17 @@ public abstract class ATEThread implements Runnable {
         return interrupted;
     }
 
+    /** Returns true if some work is already waiting when the thread is about to sleep:
+     * the thread then skips the idle sleep and only waits for the threshold.
+     */
+    protected boolean isWorkPending() {
+        return false;
+    }
+
     public void run() {
         setRunning(true);
         while(run) {
-            if(threadSleep(threadSleep)) {
+            if(isWorkPending() || threadSleep(threadSleep)) {
                 // Sleep interrupted. If threshold is > 0, then wait
                 // this amount of time and loop until the thread is not
                 // anymore interrupted.
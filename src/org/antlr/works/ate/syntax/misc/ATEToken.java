@@ -31,9 +31,10 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.ate.syntax.misc;
 
-public class ATEToken implements Comparable {
+public class ATEToken implements Comparable, Cloneable {
 
     public int type;
+    public int initialType; // type assigned by the lexer, before any refinement by the parser
 
     public int startLineNumber; // starting line number
     public int endLineNumber; // ending line number
@@ -60,6 +61,7 @@ public class ATEToken implements Comparable {
                     String text)
     {
         this.type = type;
+        this.initialType = type;
 
         this.start = start;
         this.end = end;
@@ -93,6 +95,30 @@ public class ATEToken implements Comparable {
         return end;
     }
 
+    /** Returns a copy of the token that can be reused by an incremental lexing pass:
+     * the information added by the parser is reset and the copy is moved by the specified
+     * amount of characters and lines. The line indexes are adjusted by the lexer.
+     * The token itself is not modified because it can still be used by a previous snapshot.
+     */
+    public ATEToken reuse(int delta, int lineDelta, String text) {
+        ATEToken token;
+        try {
+            token = (ATEToken) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+
+        token.type = initialType;
+        token.scope = null;
+
+        token.start += delta;
+        token.end += delta;
+        token.startLineNumber += lineDelta;
+        token.endLineNumber += lineDelta;
+        token.text = text;
+        return token;
+    }
+
     public boolean containsIndex(int index) {
         return index >= getStartIndex() && index <= getEndIndex();
     }
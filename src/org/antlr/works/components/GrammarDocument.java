@@ -37,9 +37,13 @@ import org.antlr.xjlib.appkit.document.XJDocument;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import java.io.File;
+import java.io.IOException;
 
 public class GrammarDocument extends XJDocument {
 
+    /** Text of the grammar as last written on disk */
+    private String writtenText;
+
     @Override
     public GrammarWindow getWindow() {
         return (GrammarWindow) super.getWindow();
@@ -48,7 +52,26 @@ public class GrammarDocument extends XJDocument {
     @Override
     public void documentWillWriteData() {
         XJDataPlainText data = (XJDataPlainText)getDocumentData();
-        data.setText(XJUtils.getLocalizedText(getWindow().getText()));
+        writtenText = getWindow().getText();
+        data.setText(XJUtils.getLocalizedText(writtenText));
+    }
+
+    @Override
+    public void saveInBackground() {
+        if(getDocumentPath() != null && isDirty() && getWindow().documentWillSave()) {
+            super.saveInBackground();
+        }
+    }
+
+    @Override
+    public void documentDidSave(boolean upToDate) {
+        getWindow().resetEditJournal(writtenText);
+    }
+
+    @Override
+    public void documentDidFailToSaveInBackground(String file, IOException error) {
+        // Do not interrupt the user with an alert at each auto-save
+        getWindow().reportError("Cannot auto-save "+file+": "+error);
     }
 
     @Override
@@ -68,7 +91,12 @@ public class GrammarDocument extends XJDocument {
                 if(backup.exists()) backup.delete();
                 new File(documentPath).renameTo(backup);
             }
-            return super.save(saveAs);
+            if(super.save(saveAs)) {
+                getWindow().storeSyntaxCache();
+                getWindow().resetEditJournal(writtenText);
+                return true;
+            }
+            return false;
         } else {
             return false;
         }
@@ -0,0 +1,327 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.components;
+
+import org.antlr.works.stats.StatisticsManager;
+import org.antlr.works.utils.Console;
+import org.antlr.xjlib.appkit.document.XJDocumentWriter;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Append-only journal of the edits done to a grammar since it was last saved, so the unsaved
+ * changes can be recovered if the application does not quit normally. The journal starts with the
+ * path and the digest of the grammar as saved on disk, followed by the edits. The edits are
+ * collected in the event thread and appended to the journal by XJDocumentWriter shortly after.
+ * A truncated last edit (written while crashing) is simply ignored.
+ */
+public class GrammarEditJournal implements DocumentListener {
+
+    public static final String JOURNAL_DIR = "journal";
+    public static final String JOURNAL_EXTENSION = ".journal";
+
+    /** Delay before the edits are appended to the journal */
+    public static final int FLUSH_DELAY = 1000;
+
+    private static final int MAGIC = 0x414A4E4C;
+    private static final int VERSION = 1;
+
+    private static final byte INSERT = 'I';
+    private static final byte REMOVE = 'R';
+
+    private final Document document;
+    private final Console console;
+
+    /** The following fields are shared with the writer thread */
+    private final List<Edit> pendingEdits = new ArrayList<Edit>();
+    private final List<File> obsoleteFiles = new ArrayList<File>();
+    private File file;
+    private byte[] pendingHeader;
+    private boolean flushScheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        public void run() {
+            flush();
+        }
+    };
+
+    public GrammarEditJournal(Document document, Console console) {
+        this.document = document;
+        this.console = console;
+        document.addDocumentListener(this);
+    }
+
+    public void close() {
+        document.removeDocumentListener(this);
+        synchronized(this) {
+            if(file != null) {
+                obsoleteFiles.add(file);
+            }
+            file = null;
+            pendingHeader = null;
+            pendingEdits.clear();
+        }
+        XJDocumentWriter.execute(flushTask);
+    }
+
+    /** Starts a new journal for the grammar at path, which contains the base text on disk and the
+     * current text in the editor. The journal is disabled if the grammar has never been saved.
+     */
+    public void reset(String path, String base, String current) {
+        File newFile = getFile(path);
+        byte[] header = newFile == null ? null : createHeader(path, base, current);
+        synchronized(this) {
+            if(file != null && !file.equals(newFile)) {
+                obsoleteFiles.add(file);
+            }
+            file = header == null ? null : newFile;
+            pendingHeader = header;
+            pendingEdits.clear();
+        }
+        XJDocumentWriter.execute(flushTask);
+    }
+
+    /** Returns the text of the grammar at path with the edits of its journal if they were not saved,
+     * or null if there is nothing to recover. The text must be the content of the grammar on disk.
+     */
+    public static String recover(String path, String text) {
+        File f = getFile(path);
+        if(f == null || !f.exists())
+            return null;
+
+        StringBuilder sb = new StringBuilder(text);
+        try {
+            DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            try {
+                if(is.readInt() != MAGIC || is.readInt() != VERSION)
+                    return null;
+                if(!path.equals(is.readUTF()) || !getDigest(text).equals(is.readUTF()))
+                    return null;
+                readEdits(is, sb);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            // The journal is unreadable
+            return null;
+        }
+
+        String recovered = sb.toString();
+        return recovered.equals(text) ? null : recovered;
+    }
+
+    private static void readEdits(DataInputStream is, StringBuilder sb) {
+        try {
+            while(true) {
+                byte type = is.readByte();
+                int offset = is.readInt();
+                int length = is.readInt();
+                if(type == INSERT) {
+                    char[] chars = new char[length];
+                    for(int i=0; i<length; i++) {
+                        chars[i] = is.readChar();
+                    }
+                    if(offset > sb.length()) return;
+                    sb.insert(offset, chars);
+                } else if(type == REMOVE) {
+                    if(offset+length > sb.length()) return;
+                    sb.delete(offset, offset+length);
+                } else {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // End of the journal or last edit incomplete
+        }
+    }
+
+    public void insertUpdate(DocumentEvent e) {
+        try {
+            addEdit(new Edit(INSERT, e.getOffset(), e.getLength(), document.getText(e.getOffset(), e.getLength())));
+        } catch (BadLocationException e1) {
+            e1.printStackTrace();
+        }
+    }
+
+    public void removeUpdate(DocumentEvent e) {
+        addEdit(new Edit(REMOVE, e.getOffset(), e.getLength(), null));
+    }
+
+    public void changedUpdate(DocumentEvent e) {
+        // Only the attributes have changed
+    }
+
+    private synchronized void addEdit(Edit edit) {
+        if(file == null)
+            return;
+
+        pendingEdits.add(edit);
+        if(!flushScheduled) {
+            flushScheduled = true;
+            XJDocumentWriter.schedule(flushTask, FLUSH_DELAY);
+        }
+    }
+
+    /** Called in the writer thread */
+    private void flush() {
+        File f;
+        byte[] header;
+        List<Edit> edits;
+        List<File> obsolete;
+        synchronized(this) {
+            f = file;
+            header = pendingHeader;
+            edits = new ArrayList<Edit>(pendingEdits);
+            obsolete = new ArrayList<File>(obsoleteFiles);
+            pendingHeader = null;
+            pendingEdits.clear();
+            obsoleteFiles.clear();
+            flushScheduled = false;
+        }
+
+        for(File o : obsolete) {
+            if(!o.equals(f)) o.delete();
+        }
+
+        if(f == null || (header == null && edits.isEmpty()))
+            return;
+
+        File dir = f.getParentFile();
+        if(!dir.exists() && !dir.mkdirs())
+            return;
+
+        try {
+            FileOutputStream fos = new FileOutputStream(f, header == null);
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(fos));
+            try {
+                if(header != null) {
+                    os.write(header);
+                }
+                for(Edit edit : edits) {
+                    edit.write(os);
+                }
+                os.flush();
+                fos.getFD().sync();
+            } finally {
+                os.close();
+            }
+        } catch (IOException e) {
+            // The console can be used from any thread
+            console.println("Cannot write the journal "+f+": "+e, Console.LEVEL_ERROR);
+        }
+    }
+
+    private static byte[] createHeader(String path, String base, String current) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream os = new DataOutputStream(bos);
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeUTF(path);
+            os.writeUTF(getDigest(base));
+
+            // Record the difference between the text on disk and the text in the editor as one edit
+            if(!base.equals(current)) {
+                int start = 0;
+                int max = Math.min(base.length(), current.length());
+                while(start < max && base.charAt(start) == current.charAt(start)) {
+                    start++;
+                }
+                int end = 0;
+                while(end < max-start && base.charAt(base.length()-1-end) == current.charAt(current.length()-1-end)) {
+                    end++;
+                }
+                new Edit(REMOVE, start, base.length()-end-start, null).write(os);
+                String inserted = current.substring(start, current.length()-end);
+                new Edit(INSERT, start, inserted.length(), inserted).write(os);
+            }
+            os.close();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static File getFile(String path) {
+        if(path == null)
+            return null;
+        return new File(StatisticsManager.getAbsoluteFileName(JOURNAL_DIR), getDigest(path)+JOURNAL_EXTENSION);
+    }
+
+    private static String getDigest(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(text.getBytes("UTF-8"));
+
+            StringBuilder sb = new StringBuilder();
+            for(byte b : digest.digest()) {
+                sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(text.hashCode());
+        } catch (UnsupportedEncodingException e) {
+            return String.valueOf(text.hashCode());
+        }
+    }
+
+    private static class Edit {
+
+        public final byte type;
+        public final int offset;
+        public final int length;
+        public final String text;
+
+        public Edit(byte type, int offset, int length, String text) {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+
+        public void write(DataOutputStream os) throws IOException {
+            os.writeByte(type);
+            os.writeInt(offset);
+            os.writeInt(length);
+            if(text != null) {
+                os.writeChars(text);
+            }
+        }
+    }
+}
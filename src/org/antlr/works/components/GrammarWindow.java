@@ -18,6 +18,7 @@ import org.antlr.works.editor.navigation.GoToRuleDelegate;
 import org.antlr.works.find.FindAndReplace;
 import org.antlr.works.find.FindAndReplaceDelegate;
 import org.antlr.works.find.Usages;
+import org.antlr.works.grammar.GrammarAnalysisScheduler;
 import org.antlr.works.grammar.GrammarAutoIndent;
 import org.antlr.works.grammar.decisiondfa.DecisionDFAEngine;
 import org.antlr.works.grammar.element.ElementImport;
@@ -27,6 +28,8 @@ import org.antlr.works.grammar.element.Jumpable;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngineDelegate;
 import org.antlr.works.grammar.engine.GrammarEngineImpl;
+import org.antlr.works.grammar.syntax.GrammarSyntaxCache;
+import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 import org.antlr.works.interpreter.InterpreterTab;
 import org.antlr.works.menu.*;
 import org.antlr.works.prefs.AWPrefs;
@@ -36,6 +39,7 @@ import org.antlr.works.utils.Utils;
 import org.antlr.works.visualization.SyntaxDiagramTab;
 import org.antlr.xjlib.appkit.app.XJApplication;
 import org.antlr.xjlib.appkit.document.XJDocument;
+import org.antlr.xjlib.appkit.document.XJDocumentWriter;
 import org.antlr.xjlib.appkit.frame.XJWindow;
 import org.antlr.xjlib.appkit.menu.XJMainMenuBar;
 import org.antlr.xjlib.appkit.menu.XJMenu;
@@ -170,6 +174,12 @@ public class GrammarWindow
     private String lastSelectedRule;
 
     private AfterParseOperations afterParserOp;
+    private GrammarAnalysisScheduler analysisScheduler;
+    private GrammarEditJournal editJournal;
+
+    /** The warnings read from the grammar cache, waiting for the text to be parsed */
+    private GrammarSyntaxCache.Entry syntaxCacheEntry;
+    private String syntaxCacheText;
 
     public GrammarWindow() {
         createTextEditor();
@@ -181,11 +191,13 @@ public class GrammarWindow
         debuggerTab = new DebuggerTab(new GrammarDebuggerDelegate(this));
         consoleTab = new ConsoleTab(this);
         consoleTab.makeCurrent();
+        editJournal = new GrammarEditJournal(getTextPane().getDocument(), consoleTab);
 
         menu = new GrammarWindowMenu(this);
         toolbar = new GrammarWindowToolbar(this);        
         afterParserOp = new AfterParseOperations();
         grammarEngine = new GrammarEngineImpl(this);
+        analysisScheduler = new GrammarAnalysisScheduler(this);
         decisionDFAEngine = new DecisionDFAEngine(this);
         goToRule = new GoToRule(this, this, getTextPane());
         goToHistory = new GoToHistory();
@@ -334,6 +346,9 @@ public class GrammarWindow
 
         XJNotificationCenter.defaultCenter().removeObserver(this);
 
+        storeSyntaxCache();
+        editJournal.close();
+
         goToRule.close();
 
         autoCompletionMenu.close();
@@ -347,6 +362,7 @@ public class GrammarWindow
         editorInspector.close();
 
         editorPersistence.close();
+        analysisScheduler.close();
         grammarEngine.close();
 
         editorRules.close();
@@ -710,6 +726,87 @@ public class GrammarWindow
         } finally {
             enableTextPaneUndo();
         }
+
+        // The text of the editor is the normalized text: it is the one stored in the cache
+        loadSyntaxCache(getText());
+
+        final String recovered = GrammarEditJournal.recover(getFilePath(), text);
+        resetEditJournal(text);
+        if(recovered != null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    if(XJAlert.displayAlertYESNO(getJavaContainer(), "Recover Unsaved Changes",
+                            "This grammar has changes that were not saved when ANTLRWorks quit unexpectedly. Do you want to recover them?") == XJAlert.YES) {
+                        setText(recovered);
+                    }
+                }
+            });
+        }
+    }
+
+    /** Starts a new journal of the edits: the text is the grammar as it is now saved on disk */
+    public void resetEditJournal(String savedText) {
+        editJournal.reset(getFilePath(), savedText, getText());
+    }
+
+    /** Reads in the background the warnings cached by a previous session for this text: they
+     * are displayed once the text is parsed, until the analysis of the grammar replaces them.
+     */
+    private void loadSyntaxCache(final String text) {
+        XJDocumentWriter.execute(new Runnable() {
+            public void run() {
+                final GrammarSyntaxCache.Entry entry = GrammarSyntaxCache.load(text);
+                if(entry == null) return;
+
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        syntaxCacheEntry = entry;
+                        syntaxCacheText = text;
+                        if(isTextParsed() && restoreSyntaxCache()) {
+                            editorRules.refreshRules();
+                            textEditor.refreshAnalysis();
+                            textEditor.damage();
+                            textEditor.repaint();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /** Sets the cached warnings on the rules if they have been parsed from the cached text.
+     * Returns true if the warnings have been set.
+     */
+    private boolean restoreSyntaxCache() {
+        if(syntaxCacheEntry == null)
+            return false;
+
+        boolean restored = getText().equals(syntaxCacheText) && syntaxCacheEntry.restore(grammarEngine.getRules());
+        syntaxCacheEntry = null;
+        syntaxCacheText = null;
+        return restored;
+    }
+
+    private boolean isTextParsed() {
+        GrammarSyntaxEngine engine = grammarEngine.getSyntaxEngine();
+        return engine.getSnapshot().getVersion() == engine.getVersion();
+    }
+
+    /** Stores in the background the warnings of the last analysis in the grammar cache */
+    public void storeSyntaxCache() {
+        if(!isTextParsed())
+            return;
+
+        final GrammarSyntaxCache.Entry entry = GrammarSyntaxCache.Entry.create(grammarEngine.getRules());
+        if(!entry.hasWarnings())
+            return;
+
+        final String text = getText();
+        XJDocumentWriter.execute(new Runnable() {
+            public void run() {
+                GrammarSyntaxCache.store(text, entry);
+            }
+        });
     }
 
     public synchronized void setText(String text) {
@@ -782,6 +879,14 @@ public class GrammarWindow
         updateInformation();
     }
 
+    /** This method gets called when the background analysis of the grammar has completed
+     * and the grammar did not change in the meantime.
+     */
+    public void analysisDidComplete() {
+        analysisManager.analysisDidComplete(analysisScheduler.getLastQueueTime(), analysisScheduler.getLastAnalysisTime());
+        textEditor.refreshAnalysis();
+    }
+
     public void createFile(String name) {
         // not used anymore
     }
@@ -900,6 +1005,10 @@ public class GrammarWindow
         return XJUtils.concatPath(XJUtils.getPathByDeletingLastComponent(getFilePath()), outputPath.getPath());
     }
 
+    public GrammarAnalysisScheduler getAnalysisScheduler() {
+        return analysisScheduler;
+    }
+
     public GrammarEngine getGrammarEngine() {
         return grammarEngine;
     }
@@ -1168,11 +1277,27 @@ public class GrammarWindow
     }
 
     private void afterParseOperations() {
+        updateParsedModel();
+        updateParsedViews();
+    }
+
+    /** Updates the grammar model using the result of the last parsing. This method
+     * does not touch any Swing component and can be invoked from any thread.
+     */
+    private void updateParsedModel() {
         editorPersistence.restore();
 
         grammarEngine.parserCompleted();
         grammarEngine.updateAll();
 
+        analysisScheduler.schedule();
+    }
+
+    /** Updates the views using the grammar model. This method must be invoked
+     * from the event dispatch thread.
+     */
+    private void updateParsedViews() {
+        restoreSyntaxCache();
         interpreterTab.setRules(getNaturalRules());
         editorRules.parserDidParse();
         decisionDFAEngine.reset();
@@ -1202,6 +1327,7 @@ public class GrammarWindow
 
     private void grammarChanged() {
         grammarEngine.markDirty();
+        analysisScheduler.cancelOutdatedAnalysis();
     }
 
     public void consolePrint(String s, int level) {
@@ -1541,7 +1667,8 @@ public class GrammarWindow
     }
 
     /** This class is used to perform after parsing operations in another
-     * thread than the main event thread.
+     * thread than the main event thread: the model is updated in this thread
+     * and the views are then updated in the event thread.
      */
     protected class AfterParseOperations extends ATEThread {
 
@@ -1550,7 +1677,12 @@ public class GrammarWindow
         }
 
         protected void threadRun() throws Exception {
-            afterParseOperations();
+            updateParsedModel();
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    updateParsedViews();
+                }
+            });
         }
     }
 
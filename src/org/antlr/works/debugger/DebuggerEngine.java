@@ -9,7 +9,10 @@ import org.antlr.works.utils.Utils;
 import org.antlr.xjlib.foundation.XJSystem;
 import org.antlr.xjlib.foundation.XJUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
@@ -65,6 +68,18 @@ public class DebuggerEngine {
     }
 
     public static String getClassPath(String outputPath) {
+        String classPath = getUnquotedClassPath(outputPath);
+
+        // On Mac OS X, quoting the path works fine except within IntelliJ when
+        // AW is working as a plugin. Without quoting, it works everywhere in Mac
+        // OS X so I decided to quote only on Windows.
+        if(XJSystem.isWindows())
+            return Utils.quotePath(classPath);
+        else
+            return classPath;
+    }
+
+    public static String getUnquotedClassPath(String outputPath) {
         String appPath = IDE.getApplicationPath();
 
         // Need to include the path of the application in order to be able
@@ -80,67 +95,7 @@ public class DebuggerEngine {
             classPath += File.pathSeparatorChar+Utils.unquotePath(AWPrefs.getCustomClassPath());
 
         classPath += File.pathSeparatorChar+".";
-
-        // On Mac OS X, quoting the path works fine except within IntelliJ when
-        // AW is working as a plugin. Without quoting, it works everywhere in Mac
-        // OS X so I decided to quote only on Windows.
-        if(XJSystem.isWindows())
-            return Utils.quotePath(classPath);
-        else
-            return classPath;
-    }
-
-    public static String runANTLR(Console console, String file, String libPath, String outputPath, StreamWatcherDelegate delegate) {
-        String error = null;
-        StreamWatcher esw = null;
-        int result = 0;
-        try {
-            String[] args = new String[9];
-            args[0] = "java";
-            args[1] = "-cp";
-            args[2] = getClassPath(outputPath);
-            args[3] = "org.antlr.Tool";
-            args[4] = "-o";
-            args[5] = Utils.quotePath(outputPath);
-            args[6] = "-lib";
-            args[7] = Utils.quotePath(libPath);
-            args[8] = file;
-
-            IDE.debugVerbose(console, DebuggerEngine.class, "Run ANTLR: "+Utils.toString(args));
-
-            Process p = Runtime.getRuntime().exec(args);
-            setProcess(p);
-            esw = new StreamWatcher(p.getErrorStream(), "ANTLR[error]", delegate);
-            esw.start();
-            new StreamWatcher(p.getInputStream(), "ANTLR[stdout]", delegate).start();
-            result = p.waitFor();
-        } catch(Exception e) {
-            error = "Failed to run ANTLR with exception:\n"+e.toString();
-        } finally {
-            removeProcess();
-        }
-
-        if(result != 0) {
-            error = "Failed to run ANTLR with result:\n"+result;
-        }
-
-        /** Make sure ANTLR didn't return an error in the error string
-         *
-         */
-
-        if(error == null) {
-            for (String line : esw.getLines()) {
-                if (line.startsWith("ANTLR Parser Generator"))
-                    continue;
-
-                if (line.startsWith("no such locale file"))
-                    continue;
-
-                error = line;
-                break;
-            }
-        }
-        return error;
+        return classPath;
     }
 
     public static String runJava(Console console, String currentPath, String[] params, StreamWatcherDelegate delegate) {
@@ -181,7 +136,10 @@ public class DebuggerEngine {
             String compiler = AWPrefs.getCompiler();
             String classPath = getClassPath(outputFileDir);
 
-            if(compiler.equalsIgnoreCase(AWPrefs.COMPILER_JAVAC)) {
+            Object systemCompiler = getSystemCompiler(compiler);
+            if(systemCompiler != null) {
+                result = compileInProcess(console, systemCompiler, files, outputFileDir, delegate);
+            } else if(compiler.equalsIgnoreCase(AWPrefs.COMPILER_JAVAC)) {
                 String[] args = new String[5+files.length];
                 if(AWPrefs.getJavaCCustomPath())
                     args[0] = XJUtils.concatPath(AWPrefs.getJavaCPath(), "javac");
@@ -250,4 +208,44 @@ public class DebuggerEngine {
         return error;
     }
 
+    /** Returns the compiler to use in-process or null if the files have to be compiled
+     * by an external compiler (jikes, a custom javac or a runtime without compiler).
+     * The compiler API is accessed by reflection because it is not available in Java 1.5.
+     */
+    private static Object getSystemCompiler(String compiler) {
+        if(compiler.equalsIgnoreCase(AWPrefs.COMPILER_JIKES))
+            return null;
+        if(compiler.equalsIgnoreCase(AWPrefs.COMPILER_JAVAC) && AWPrefs.getJavaCCustomPath())
+            return null;
+        try {
+            Class<?> provider = Class.forName("javax.tools.ToolProvider");
+            return provider.getMethod("getSystemJavaCompiler").invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Compiles all the files in a single compilation task without forking a new process */
+    private static int compileInProcess(Console console, Object compiler, String[] files, String outputFileDir,
+                                        StreamWatcherDelegate delegate) throws Exception
+    {
+        String[] args = new String[4+files.length];
+        args[0] = "-classpath";
+        args[1] = getUnquotedClassPath(outputFileDir);
+        args[2] = "-d";
+        args[3] = outputFileDir;
+        System.arraycopy(files, 0, args, 4, files.length);
+
+        IDE.debugVerbose(console, DebuggerEngine.class, "Compile in-process: "+Utils.toString(args));
+
+        // javax.tools.Tool.run(InputStream, OutputStream, OutputStream, String...)
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Method run = Class.forName("javax.tools.Tool").getMethod("run",
+                InputStream.class, OutputStream.class, OutputStream.class, String[].class);
+        Object result = run.invoke(compiler, null, output, output, args);
+        if(output.size() > 0)
+            delegate.streamWatcherDidReceiveString(output.toString());
+        return (Integer) result;
+    }
+
 }
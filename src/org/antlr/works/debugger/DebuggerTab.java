@@ -44,6 +44,7 @@ import org.antlr.works.debugger.local.DBLocal;
 import org.antlr.works.debugger.panels.*;
 import org.antlr.works.debugger.remote.DBRemoteConnectDialog;
 import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
 import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
 import org.antlr.works.debugger.tivo.DBRecorder;
 import org.antlr.works.debugger.tree.DBASTModel;
@@ -513,7 +514,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
 
         // The  send the notification
         // todo still needed with the delegate?
-        XJNotificationCenter.defaultCenter().postNotification(this, NOTIF_DEBUG_STARTED);
+        XJNotificationCenter.defaultCenter().enqueueNotification(this, NOTIF_DEBUG_STARTED);
 
         delegate.debuggerStarted();
 
@@ -559,11 +560,25 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         astPanel.clear();
     }
 
-    public void addEvent(DBEvent event, DBPlayerContextInfo info) {
-        eventsPanel.addEvent(event, info);
+    public void playerSaveCheckpoint(DBPlayerCheckpoint checkpoint) {
+        checkpoint.stack = stackPanel.createCheckpoint();
+        checkpoint.parseTree = parseTreeModel.createCheckpoint();
+        checkpoint.ast = astModel.createCheckpoint();
     }
 
-    public void playEvents(List events, int lastEventPosition, boolean reset) {
+    public void playerRestoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        stackPanel.restoreCheckpoint(checkpoint.stack);
+        eventsPanel.truncate(checkpoint.eventCount);
+        parseTreePanel.restoreCheckpoint(checkpoint.parseTree);
+        astPanel.restoreCheckpoint(checkpoint.ast);
+    }
+
+    public void addEvent(int index, DBEvent event, DBPlayerContextInfo info) {
+        eventsPanel.addEvent(index, event, info);
+    }
+
+    public void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        eventsPanel.setEvents(events);
         player.playEvents(events, lastEventPosition, reset);
         breaksOnEvent();
     }
@@ -649,7 +664,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
                 running = false;
 
                 delegate.debuggerStopped();
-                XJNotificationCenter.defaultCenter().postNotification(this, NOTIF_DEBUG_STOPPED);
+                XJNotificationCenter.defaultCenter().enqueueNotification(this, NOTIF_DEBUG_STOPPED);
             }
         });
     }
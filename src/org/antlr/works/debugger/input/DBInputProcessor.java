@@ -51,4 +51,8 @@ public interface DBInputProcessor {
 
     public int getCurrentTokenIndex();
     public DBInputTextTokenInfo getTokenInfoAtTokenIndex(int index);
+
+    /** Returns an opaque copy of the state modified by the player */
+    public Object createCheckpoint();
+    public void restoreCheckpoint(Object checkpoint);
 }
@@ -216,6 +216,32 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         }
     }
 
+    public Object createCheckpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.currentTokenIndex = currentTokenIndex;
+        checkpoint.locationEvent = locationEvent;
+        checkpoint.indexToTokenInfoMap.putAll(indexToTokenInfoMap);
+        checkpoint.indexToConsumeAttributeMap.putAll(indexToConsumeAttributeMap);
+        checkpoint.lookaheadTokenIndexes.addAll(lookaheadTokenIndexes);
+        return checkpoint;
+    }
+
+    public void restoreCheckpoint(Object object) {
+        Checkpoint checkpoint = (Checkpoint)object;
+        currentTokenIndex = checkpoint.currentTokenIndex;
+        locationEvent = checkpoint.locationEvent;
+
+        /** Keep the tokens received after the checkpoint so they are still displayed
+         * (as rewindAll() does) but restore the info of the tokens known at that time.
+         */
+        indexToTokenInfoMap.putAll(checkpoint.indexToTokenInfoMap);
+
+        indexToConsumeAttributeMap.clear();
+        indexToConsumeAttributeMap.putAll(checkpoint.indexToConsumeAttributeMap);
+        lookaheadTokenIndexes.clear();
+        lookaheadTokenIndexes.addAll(checkpoint.lookaheadTokenIndexes);
+    }
+
     public void addToken(Token token) {
         int index = token.getTokenIndex();
         if(index == -1) {
@@ -430,6 +456,16 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         }
     }
 
+    protected static class Checkpoint {
+
+        public int currentTokenIndex;
+        public DBEventLocation locationEvent;
+        public Map<Integer,DBInputTextTokenInfo> indexToTokenInfoMap = new HashMap<Integer, DBInputTextTokenInfo>();
+        public Map<Integer,AttributeSet> indexToConsumeAttributeMap = new HashMap<Integer, AttributeSet>();
+        public Set<Integer> lookaheadTokenIndexes = new HashSet<Integer>();
+
+    }
+
     protected class MyMouseListener extends MouseAdapter {
 
         public void mousePressed(MouseEvent e) {
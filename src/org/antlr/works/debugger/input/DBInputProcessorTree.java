@@ -220,6 +220,34 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         return null;
     }
 
+    public Object createCheckpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.currentNode = currentNode;
+        checkpoint.lastNode = lastNode;
+        checkpoint.location = location;
+        for (NodeInfo info : nodeInfoForToken.values()) {
+            if (info.node != null)
+                checkpoint.colors.put(info.node, info.node.getNodeColor());
+        }
+        return checkpoint;
+    }
+
+    public void restoreCheckpoint(Object object) {
+        Checkpoint checkpoint = (Checkpoint)object;
+        /** The nodes created after the checkpoint are kept in the tree
+         * but displayed as non-consumed (as rewindAll() does)
+         */
+        for (NodeInfo info : nodeInfoForToken.values()) {
+            if (info.node == null) continue;
+
+            Color c = checkpoint.colors.get(info.node);
+            info.node.setColor(c == null ? nonConsumedColor : c);
+        }
+        currentNode = checkpoint.currentNode;
+        lastNode = checkpoint.lastNode;
+        location = checkpoint.location;
+    }
+
     public void notificationFire(Object source, String name) {
         if(name.equals(AWPrefsDialog.NOTIF_PREFS_APPLIED)) {
             createColors();
@@ -231,6 +259,15 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         return !(info == null || info.node == null) && info.node.breakpoint;
     }
 
+    public static class Checkpoint {
+
+        public InputTreeNode currentNode;
+        public InputTreeNode lastNode;
+        public DBEventLocation location;
+        public Map<InputTreeNode,Color> colors = new HashMap<InputTreeNode, Color>();
+
+    }
+
     public static class NodeInfo {
 
         /** Token */
@@ -269,6 +306,11 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
                 return super.getColor();
         }
 
+        /** Returns the color of the node regardless of the breakpoint */
+        public Color getNodeColor() {
+            return super.getColor();
+        }
+
         public String toString() {
             if(token != null)
                 return token.getText();
@@ -59,6 +59,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -82,6 +83,13 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     protected String outputFileDir;
 
     protected List<String> grammarGeneratedFiles;
+
+    /** Files compiled together in a single pass once the grammar and the glue code are generated */
+    protected Set<String> filesToCompile = new LinkedHashSet<String>();
+
+    /** Duration of each stage of the launch, displayed in the console */
+    protected StringBuilder stageTimings = new StringBuilder();
+    protected long stageStartTime;
     protected String fileRemoteParser;
     protected String fileRemoteParserInputTextFile;
     protected String fileRemoteParserTemplateTextFile;
@@ -217,15 +225,27 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
 
     public void run() {
         resetErrors();
+        filesToCompile.clear();
+        stageTimings.setLength(0);
 
+        beginStage();
         if(prepare()) {
+            endStage("prepare");
             if(optionBuild()) generateAndCompileGrammar();
             if(!cancelled() && !optionAgain()) askUserForInputText();
+            beginStage();
             if(!cancelled() && !AWPrefs.TEST_RIG_MODE_CLASS.equals(testTemplateMode)) generateAndCompileGlueCode(optionBuild());
             if(!cancelled()) generateInputText();
+            endStage("glue code");
+            if(!cancelled()) compileAllFiles();
+            beginStage();
             if(!cancelled()) launchRemoteParser();
+            endStage("launch");
         }
 
+        if(stageTimings.length() > 0)
+            debuggerTab.getConsole().println("Debugger launch: "+stageTimings);
+
         if(hasErrors())
             notifyErrors();
         else if(cancelled())
@@ -359,23 +379,35 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         return true;
     }
 
+    protected void beginStage() {
+        stageStartTime = System.currentTimeMillis();
+    }
+
+    protected void endStage(String name) {
+        if(stageTimings.length() > 0)
+            stageTimings.append(", ");
+        stageTimings.append(name).append(" ").append(System.currentTimeMillis()-stageStartTime).append(" ms");
+    }
+
     protected void generateAndCompileGrammar() {
         progress.setInfo("Analyzing...");
         progress.setProgress(1);
+        beginStage();
         analyzeGrammar();
+        endStage("analyze");
 
         if(cancelled())
             return;
 
         progress.setInfo("Generating...");
         progress.setProgress(2);
+        beginStage();
         generateGrammar();
+        endStage("generate");
 
         if(cancelled())
             return;
 
-        progress.setInfo("Compiling...");
-        progress.setProgress(3);
         compileGrammar();
     }
 
@@ -413,7 +445,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     protected void compileGrammar() {
         XJUtils.deleteDirectory(outputFileDir);
         new File(outputFileDir).mkdirs();
-        compileFiles(grammarGeneratedFiles.toArray(new String[grammarGeneratedFiles.size()]));
+        filesToCompile.addAll(grammarGeneratedFiles);
     }
 
     protected void generateAndCompileGlueCode(boolean build) {
@@ -546,15 +578,28 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
             String lexerName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (getLexerName()+"Lexer.java") : (getLexerName()+".java")));
             String parserName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (debuggerTab.getDelegate().getTokenVocab()+"Parser.java") :
                     (debuggerTab.getDelegate().getGrammarEngine().getGeneratedClassName(ElementGrammarName.PARSER)+".java")));
-            compileFiles(new String[] { lexerName});
-            compileFiles(new String[] { parserName});
-            compileFiles(new String[] { fileRemoteParser});
+            filesToCompile.add(lexerName);
+            filesToCompile.add(parserName);
+            filesToCompile.add(fileRemoteParser);
         } catch (Exception e) {
             debuggerTab.getConsole().println(e);
             reportError("Error :\n"+e.toString());
         }
     }
 
+    /** Compiles the grammar and the glue code files in a single pass */
+    protected void compileAllFiles() {
+        if(filesToCompile.isEmpty())
+            return;
+
+        progress.setInfo("Compiling...");
+        progress.setProgress(3);
+        beginStage();
+        compileFiles(filesToCompile.toArray(new String[filesToCompile.size()]));
+        endStage("compile");
+        filesToCompile.clear();
+    }
+
     protected void compileFiles(String[] files) {
         String error = DebuggerEngine.compileFiles(debuggerTab.getConsole(), files, outputFileDir, this);
         if(error != null)
@@ -10,8 +10,10 @@ import org.antlr.xjlib.appkit.swing.XJTableView;
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 /*
 
 [The "BSD licence"]
@@ -52,6 +54,9 @@ public class DBEventsPanel extends DetachablePanel {
     public static final int INFO_COLUMN_MARK = 4;
     public static final int INFO_COLUMN_BACKTRACK = 5;
 
+    /** Number of rows rendered to compute the width of the columns */
+    protected static final int MAX_MEASURED_ROWS = 500;
+
     protected XJTableView infoTableView;
 
     protected EventTableDataModel eventTableDataModel;
@@ -63,6 +68,7 @@ public class DBEventsPanel extends DetachablePanel {
 
         infoTableView = new XJTableView();
         infoTableView.setFocusable(true);
+        infoTableView.setMaxMeasuredRows(MAX_MEASURED_ROWS);
         setInfoTableModel(infoTableView.getTable(), eventTableDataModel);
 
         mainPanel.add(infoTableView, BorderLayout.CENTER);
@@ -80,7 +86,7 @@ public class DBEventsPanel extends DetachablePanel {
     }
 
     public int getNumberOfEvents() {
-        return eventTableDataModel.getRowCount();
+        return eventTableDataModel.getEventCount();
     }
     
     public void clear() {
@@ -97,8 +103,19 @@ public class DBEventsPanel extends DetachablePanel {
         });
     }
 
-    public void addEvent(DBEvent event, DBPlayerContextInfo info) {
-        eventTableDataModel.add(event, info);
+    /** Sets the list of the recorded events displayed by the table */
+    public void setEvents(List<DBEvent> events) {
+        eventTableDataModel.setEvents(events);
+    }
+
+    /** Adds the event played at the specified index of the recorded events */
+    public void addEvent(int index, DBEvent event, DBPlayerContextInfo info) {
+        eventTableDataModel.add(index, event, info);
+    }
+
+    /** Removes all the events after the specified number of events */
+    public void truncate(int numberOfEvents) {
+        eventTableDataModel.truncate(numberOfEvents);
     }
 
     public String getEventsAsString() {
@@ -106,37 +123,102 @@ public class DBEventsPanel extends DetachablePanel {
         sb.append(eventTableDataModel.getHeadersAsString());
         sb.append("\n");
 
-        List<EventTableDataModel.EventInfo> events = eventTableDataModel.events;
-        for(int i=0; i<events.size(); i++) {
+        for(int i=0; i<eventTableDataModel.getEventCount(); i++) {
             sb.append(i);
             sb.append(":\t");
-            sb.append(events.get(i).toString());
+            sb.append(eventTableDataModel.getRowAsString(i));
             sb.append("\n");
         }
         return sb.toString();
     }
 
+    /** The model only keeps the context information of each row: the events themselves
+     * are fetched from the recorded events when a row is displayed or exported.
+     * The rows added while the events are played are notified to the table in a
+     * single batch when update() is called.
+     */
     public class EventTableDataModel extends AbstractTableModel {
 
-        protected List<EventInfo> events = new ArrayList<EventInfo>();
+        protected static final int INFO_FIELDS = 4;
+
+        protected List<DBEvent> recordedEvents;
+
+        /** Events played that are not part of the recorded events */
+        protected Map<Integer,DBEvent> otherEvents = new HashMap<Integer, DBEvent>();
+
+        protected int[] infos = new int[INFO_FIELDS*1024];
+        protected int count = 0;
+
+        /** Number of rows the table has been notified of */
+        protected int notifiedCount = 0;
+
+        public void setEvents(List<DBEvent> events) {
+            this.recordedEvents = events;
+        }
+
+        public void add(int index, DBEvent event, DBPlayerContextInfo info) {
+            // Compare the indexes and not the events: the recorded events may have to be
+            // decoded again and must not be kept in memory by the table
+            if(recordedEvents == null || index != count || index >= recordedEvents.size()) {
+                otherEvents.put(count, event);
+            }
+
+            if(INFO_FIELDS*(count+1) > infos.length) {
+                int[] newInfos = new int[infos.length*2];
+                System.arraycopy(infos, 0, newInfos, 0, INFO_FIELDS*count);
+                infos = newInfos;
+            }
+            int base = INFO_FIELDS*count;
+            infos[base] = info.getSubrule();
+            infos[base+1] = info.getDecision();
+            infos[base+2] = info.getMark();
+            infos[base+3] = info.getBacktrack();
+            count++;
+        }
 
-        public void add(DBEvent event, DBPlayerContextInfo info) {
-            events.add(new EventInfo(event, info));
+        public DBEvent getEvent(int row) {
+            DBEvent event = otherEvents.get(row);
+            if(event == null && recordedEvents != null && row < recordedEvents.size()) {
+                event = recordedEvents.get(row);
+            }
+            return event;
+        }
+
+        public void truncate(int numberOfEvents) {
+            if(numberOfEvents < count) {
+                count = numberOfEvents;
+                for(Iterator<Integer> iterator = otherEvents.keySet().iterator(); iterator.hasNext();) {
+                    if(iterator.next() >= numberOfEvents)
+                        iterator.remove();
+                }
+            }
+            if(count < notifiedCount) {
+                int removed = notifiedCount;
+                notifiedCount = count;
+                fireTableRowsDeleted(count, removed-1);
+            }
         }
 
         public void clear() {
-            events.clear();
-            fireTableDataChanged();
+            truncate(0);
             infoTableView.autoresizeColumns();
         }
 
         public void update() {
-            fireTableDataChanged();
-            infoTableView.autoresizeColumns();
+            if(count > notifiedCount) {
+                int firstRow = notifiedCount;
+                notifiedCount = count;
+                fireTableRowsInserted(firstRow, count-1);
+                infoTableView.growColumnsToFitRows(firstRow, count);
+            }
+        }
+
+        public int getEventCount() {
+            return count;
         }
 
         public int getRowCount() {
-            return events.size();
+            return notifiedCount;
         }
 
         public int getColumnCount() {
@@ -168,14 +250,14 @@ public class DBEventsPanel extends DetachablePanel {
         }
 
         public Object getValueAt(int rowIndex, int columnIndex) {
-            EventInfo info = events.get(rowIndex);
+            int base = INFO_FIELDS*rowIndex;
             switch(columnIndex) {
                 case INFO_COLUMN_COUNT: return String.valueOf(rowIndex);
-                case INFO_COLUMN_EVENT: return info.event;
-                case INFO_COLUMN_SUBRULE: return info.getSubrule();
-                case INFO_COLUMN_DECISION: return info.getDecision();
-                case INFO_COLUMN_MARK: return info.getMark();
-                case INFO_COLUMN_BACKTRACK: return info.getBacktrack();
+                case INFO_COLUMN_EVENT: return getEvent(rowIndex);
+                case INFO_COLUMN_SUBRULE: return getText(infos[base]);
+                case INFO_COLUMN_DECISION: return getText(infos[base+1]);
+                case INFO_COLUMN_MARK: return getText(infos[base+2]);
+                case INFO_COLUMN_BACKTRACK: return getText(infos[base+3]);
             }
             return null;
         }
@@ -184,58 +266,26 @@ public class DBEventsPanel extends DetachablePanel {
             return "#\tEvent\tSubrule\tDecision\tMark\tBacktrack";
         }
 
-        public class EventInfo {
-
-            public DBEvent event;
-            public int subrule;
-            public int decision;
-            public int mark;
-            public int backtrack;
-
-            public EventInfo(DBEvent event, DBPlayerContextInfo info) {
-                this.event = event;
-                this.subrule = info.getSubrule();
-                this.decision = info.getDecision();
-                this.mark = info.getMark();
-                this.backtrack = info.getBacktrack();
-            }
-
-            public Object getSubrule() {
-                return subrule==-1?null:String.valueOf(subrule);
-            }
-
-            public Object getDecision() {
-                return decision==-1?null:String.valueOf(decision);
-            }
-
-            public Object getMark() {
-                return mark==-1?null:String.valueOf(mark);
-            }
-
-            public Object getBacktrack() {
-                return backtrack==-1?null:String.valueOf(backtrack);
+        public String getRowAsString(int row) {
+            int base = INFO_FIELDS*row;
+            StringBuilder sb = new StringBuilder();
+            sb.append(getEvent(row));
+            for(int i=0; i<INFO_FIELDS; i++) {
+                sb.append("\t");
+                sb.append(getTextForExport(infos[base+i]));
             }
+            return sb.toString();
+        }
 
-            public String getTextForExport(int value) {
-                if(value == -1)
-                    return "-";
-                else
-                    return String.valueOf(value);
-            }
+        public Object getText(int value) {
+            return value==-1?null:String.valueOf(value);
+        }
 
-            public String toString() {
-                StringBuilder sb = new StringBuilder();
-                sb.append(event.toString());
-                sb.append("\t");
-                sb.append(getTextForExport(subrule));
-                sb.append("\t");
-                sb.append(getTextForExport(decision));
-                sb.append("\t");
-                sb.append(getTextForExport(mark));
-                sb.append("\t");
-                sb.append(getTextForExport(backtrack));
-                return sb.toString();
-            }
+        public String getTextForExport(int value) {
+            if(value == -1)
+                return "-";
+            else
+                return String.valueOf(value);
         }
     }
 
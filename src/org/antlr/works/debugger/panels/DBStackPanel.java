@@ -10,6 +10,7 @@ import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 /*
 
@@ -98,6 +99,17 @@ public class DBStackPanel extends DetachablePanel {
         rules.pop();
     }
 
+    public List<DBEventEnterRule> createCheckpoint() {
+        return new ArrayList<DBEventEnterRule>(rules);
+    }
+
+    public void restoreCheckpoint(List<DBEventEnterRule> checkpoint) {
+        clear();
+        for(DBEventEnterRule rule : checkpoint) {
+            pushRule(rule);
+        }
+    }
+
     public DBEventEnterRule peekRule() {
         if(rules.isEmpty()) {
             return null;
@@ -0,0 +1,232 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.events.DBEventCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * List of the events recorded by the debugger. The events are encoded and appended
+ * to a memory-mapped temporary file: only the offset and the type of each event are
+ * kept in memory, as well as a window of the most recently used decoded events.
+ * The events that cannot be encoded (see DBEventCodec) are kept in memory.
+ */
+public class DBEventStore extends AbstractList<DBEvent> {
+
+    /** Size of each mapped segment of the file. An event never spans two segments. */
+    public static final int SEGMENT_SIZE = 8*1024*1024;
+
+    /** Number of decoded events kept in memory */
+    public static final int HOT_WINDOW_SIZE = 10000;
+
+    private static final long PINNED = -1;
+
+    private File file;
+    private RandomAccessFile raf;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    private long length = 0;
+
+    private long[] offsets = new long[1024];
+    private byte[] types = new byte[1024];
+    private int size = 0;
+
+    private final Map<Integer,DBEvent> pinned = new HashMap<Integer, DBEvent>();
+    private final Map<Integer,DBEvent> hot = new LinkedHashMap<Integer, DBEvent>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, DBEvent> eldest) {
+            return size() > HOT_WINDOW_SIZE;
+        }
+    };
+
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final DataOutputStream encoder = new DataOutputStream(encoded);
+
+    public DBEventStore() {
+        try {
+            file = File.createTempFile("antlrworks-events", ".bin");
+            file.deleteOnExit();
+            raf = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            System.err.println("Cannot create the debugger events file, the events are kept in memory: "+e);
+            closeFile();
+        }
+    }
+
+    @Override
+    public synchronized boolean add(DBEvent event) {
+        ensureCapacity(size+1);
+        types[size] = (byte)event.getEventType();
+        offsets[size] = write(event);
+        if(offsets[size] == PINNED) {
+            pinned.put(size, event);
+        } else {
+            hot.put(size, event);
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized DBEvent get(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+
+        if(offsets[index] == PINNED)
+            return pinned.get(index);
+
+        DBEvent event = hot.get(index);
+        if(event == null) {
+            event = read(offsets[index]);
+            hot.put(index, event);
+        }
+        return event;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Returns the type of the event at the specified index without decoding it */
+    public synchronized int getEventType(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+        return types[index];
+    }
+
+    @Override
+    public synchronized void clear() {
+        size = 0;
+        length = 0;
+        pinned.clear();
+        hot.clear();
+        modCount++;
+    }
+
+    /** Releases the file used to store the events */
+    public synchronized void close() {
+        clear();
+        segments.clear();
+        closeFile();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > offsets.length) {
+            int newCapacity = Math.max(capacity, offsets.length*2);
+            long[] newOffsets = new long[newCapacity];
+            System.arraycopy(offsets, 0, newOffsets, 0, size);
+            offsets = newOffsets;
+            byte[] newTypes = new byte[newCapacity];
+            System.arraycopy(types, 0, newTypes, 0, size);
+            types = newTypes;
+        }
+    }
+
+    /** Appends the encoded event to the file and returns its offset or PINNED
+     * if the event has to be kept in memory.
+     */
+    private long write(DBEvent event) {
+        if(raf == null || !DBEventCodec.canEncode(event))
+            return PINNED;
+
+        try {
+            encoded.reset();
+            DBEventCodec.encode(event, encoder);
+            encoder.flush();
+            int recordLength = 4+encoded.size();
+            if(recordLength > SEGMENT_SIZE)
+                return PINNED;
+
+            // Start a new segment if the record does not fit in the current one
+            long remaining = SEGMENT_SIZE - length % SEGMENT_SIZE;
+            if(recordLength > remaining)
+                length += remaining;
+
+            ByteBuffer buffer = getSegment((int)(length / SEGMENT_SIZE)).duplicate();
+            buffer.position((int)(length % SEGMENT_SIZE));
+            buffer.putInt(encoded.size());
+            buffer.put(encoded.toByteArray());
+
+            long offset = length;
+            length += recordLength;
+            return offset;
+        } catch (IOException e) {
+            System.err.println("Cannot write the debugger event, the events are now kept in memory: "+e);
+            closeFile();
+            return PINNED;
+        }
+    }
+
+    private DBEvent read(long offset) {
+        ByteBuffer buffer = segments.get((int)(offset / SEGMENT_SIZE)).duplicate();
+        buffer.position((int)(offset % SEGMENT_SIZE));
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        try {
+            return DBEventCodec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            // Cannot happen when reading from a byte array
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MappedByteBuffer getSegment(int index) throws IOException {
+        while(segments.size() <= index) {
+            long position = (long)segments.size()*SEGMENT_SIZE;
+            segments.add(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_SIZE));
+        }
+        return segments.get(index);
+    }
+
+    private void closeFile() {
+        // The mapped segments are still used to read the events already written
+        if(raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            raf = null;
+        }
+        if(file != null && segments.isEmpty()) {
+            file.delete();
+            file = null;
+        }
+    }
+
+}
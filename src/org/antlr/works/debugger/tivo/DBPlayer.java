@@ -37,6 +37,7 @@ import org.antlr.works.debugger.events.*;
 import org.antlr.works.debugger.input.DBInputProcessor;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 
@@ -51,6 +52,15 @@ public class DBPlayer {
     protected int resyncing = 0;
     protected int eventPlayedCount = 0;
 
+    /** Interval (in number of events) between two checkpoints. It doubles each time
+     * the maximum number of checkpoints is reached so the memory stays bounded. */
+    public static final int CHECKPOINT_INTERVAL = 2000;
+    public static final int MAX_CHECKPOINTS = 32;
+
+    protected List<DBPlayerCheckpoint> checkpoints = new ArrayList<DBPlayerCheckpoint>();
+    protected int checkpointInterval = CHECKPOINT_INTERVAL;
+    protected List<DBEvent> checkpointEvents;
+
     public DBPlayer(DebuggerTab debuggerTab) {
         this.debuggerTab = debuggerTab;
         contextInfo = new DBPlayerContextInfo();
@@ -76,10 +86,12 @@ public class DBPlayer {
          the events are reset (when the debugger starts).
          Then, keep rewinding the input text so already received
          tokens are displayed */
-        if(first)
+        if(first) {
             processor.reset();
-        else
+            clearCheckpoints();
+        } else {
             processor.rewindAll();
+        }
 
         contextInfo.clear();
         markStack.clear();
@@ -88,13 +100,29 @@ public class DBPlayer {
         eventPlayedCount = 0;
     }
 
-    public void playEvents(List events, int lastEventPosition, boolean reset) {
-        if(reset)
-            resetPlayEvents(false);
+    public void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        if(events != checkpointEvents) {
+            // New events (i.e. new debugging session): the checkpoints are obsolete
+            clearCheckpoints();
+            checkpointEvents = events;
+        }
+
+        if(reset) {
+            DBPlayerCheckpoint checkpoint = getCheckpoint(Math.min(lastEventPosition, eventPlayedCount));
+            if(checkpoint == null) {
+                resetPlayEvents(false);
+            } else {
+                restoreCheckpoint(checkpoint);
+                if(eventPlayedCount == lastEventPosition) {
+                    // No event to replay, play the location of the checkpoint
+                    playLocation();
+                }
+            }
+        }
 
         int lastIndex = lastEventPosition - 1;
         for(int i=eventPlayedCount; i< lastEventPosition; i++) {
-            DBEvent event = (DBEvent)events.get(i);
+            DBEvent event = events.get(i);
 
             try {
                 playEvent(event);
@@ -102,15 +130,74 @@ public class DBPlayer {
                 debuggerTab.getConsole().println(e);
             }
 
-            debuggerTab.addEvent(event, contextInfo);
+            debuggerTab.addEvent(i, event, contextInfo);
             if(i == lastIndex) {
                 // Last event, play the location
                 playLocation();
             }
+
+            eventPlayedCount = i + 1;
+            if(eventPlayedCount % checkpointInterval == 0) {
+                saveCheckpoint();
+            }
         }
         eventPlayedCount = lastEventPosition;
     }
 
+    /** Returns the most recent checkpoint taken at or before the specified number of events */
+    protected DBPlayerCheckpoint getCheckpoint(int eventCount) {
+        for(int i=checkpoints.size()-1; i>=0; i--) {
+            DBPlayerCheckpoint checkpoint = checkpoints.get(i);
+            if(checkpoint.eventCount <= eventCount)
+                return checkpoint;
+        }
+        return null;
+    }
+
+    protected void saveCheckpoint() {
+        if(!checkpoints.isEmpty() && checkpoints.get(checkpoints.size()-1).eventCount >= eventPlayedCount) {
+            // Already saved when the events were played before
+            return;
+        }
+
+        DBPlayerCheckpoint checkpoint = new DBPlayerCheckpoint(eventPlayedCount);
+        checkpoint.contextInfo = contextInfo.copy();
+        checkpoint.markStack = new Stack<Integer>();
+        checkpoint.markStack.addAll(markStack);
+        checkpoint.resyncing = resyncing;
+        checkpoint.lastLocationEvent = lastLocationEvent;
+        checkpoint.processor = processor.createCheckpoint();
+        debuggerTab.playerSaveCheckpoint(checkpoint);
+        checkpoints.add(checkpoint);
+
+        if(checkpoints.size() > MAX_CHECKPOINTS) {
+            // Keep only the checkpoints aligned on the new interval
+            checkpointInterval *= 2;
+            for(int i=checkpoints.size()-1; i>=0; i--) {
+                if(checkpoints.get(i).eventCount % checkpointInterval != 0)
+                    checkpoints.remove(i);
+            }
+        }
+    }
+
+    protected void restoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        debuggerTab.playerRestoreCheckpoint(checkpoint);
+        processor.restoreCheckpoint(checkpoint.processor);
+
+        contextInfo.set(checkpoint.contextInfo);
+        markStack.clear();
+        markStack.addAll(checkpoint.markStack);
+
+        resyncing = checkpoint.resyncing;
+        lastLocationEvent = checkpoint.lastLocationEvent;
+        eventPlayedCount = checkpoint.eventCount;
+    }
+
+    protected void clearCheckpoints() {
+        checkpoints.clear();
+        checkpointInterval = CHECKPOINT_INTERVAL;
+    }
+
     public void playEvent(DBEvent event) {
         switch(event.getEventType()) {
             case DBEvent.ENTER_RULE:
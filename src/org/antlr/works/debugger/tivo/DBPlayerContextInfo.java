@@ -104,4 +104,18 @@ public class DBPlayerContextInfo {
         mark.clear();
         backtrack.clear();
     }
+
+    public DBPlayerContextInfo copy() {
+        DBPlayerContextInfo info = new DBPlayerContextInfo();
+        info.set(this);
+        return info;
+    }
+
+    public void set(DBPlayerContextInfo other) {
+        clear();
+        subrule.addAll(other.subrule);
+        decision.addAll(other.decision);
+        mark.addAll(other.mark);
+        backtrack.addAll(other.backtrack);
+    }
 }
@@ -90,7 +90,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     protected String address;
     protected int port;
 
-    protected List<DBEvent> events;
+    protected DBEventStore events;
     protected int position;
     protected NumberSet breakEvents = new NumberSet();
     protected int stoppedOnEvent = DBEvent.NO_EVENT;
@@ -128,6 +128,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     public void close() {
+        events.close();
         debuggerTab = null;
     }
 
@@ -156,7 +157,9 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     public synchronized void reset() {
-        events = Collections.synchronizedList(new ArrayList<DBEvent>());
+        if(events != null)
+            events.close();
+        events = new DBEventStore();
         position = -1;
         currentTokenIndex = -1;
         remoteParserStateWarned = false;
@@ -568,8 +571,10 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
      * the remote parser. It is running on another thread than the event thread.
      */
     public synchronized void listenerEvent(DBEvent event) {
-        events.add(event);
+        // The grammar name is set before the event is stored because the store
+        // may not keep the instance in memory
         handleGrammarName(event);
+        events.add(event);
         recordIndexes(event);
         setPositionToEnd();
 
@@ -165,6 +165,70 @@ public class DBASTModel {
         root.addChild(child);
     }
 
+    /* Checkpoints used by the player */
+
+    /** Returns a copy of the state of the model that can be restored later on
+     * using restoreCheckpoint().
+     */
+    public Checkpoint createCheckpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        copy(rules, nodesMap, checkpoint);
+        return checkpoint;
+    }
+
+    public void restoreCheckpoint(Checkpoint checkpoint) {
+        // Copy the checkpoint again because the nodes are modified by the player
+        Checkpoint c = new Checkpoint();
+        copy(checkpoint.rules, checkpoint.nodesMap, c);
+        rules = c.rules;
+        nodesMap = c.nodesMap;
+        fireDataChanged();
+    }
+
+    private void copy(Stack<Rule> rules, Map<Integer, ASTNode> nodesMap, Checkpoint target) {
+        Map<ASTNode,ASTNode> copies = new IdentityHashMap<ASTNode, ASTNode>();
+
+        // Collect all the nodes iteratively because the trees can be very deep
+        Stack<ASTNode> pending = new Stack<ASTNode>();
+        pending.addAll(nodesMap.values());
+        for(Rule rule : rules) {
+            pending.addAll(rule.roots);
+        }
+        while(!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            if(copies.containsKey(node)) continue;
+
+            copies.put(node, new ASTNode(node));
+            for(int i = 0; i < node.getChildCount(); i++) {
+                pending.push((ASTNode) node.getChildAt(i));
+            }
+            if(node.parentNode != null) {
+                pending.push(node.parentNode);
+            }
+        }
+
+        // Then link the copies together
+        for(Map.Entry<ASTNode,ASTNode> entry : copies.entrySet()) {
+            ASTNode node = entry.getKey();
+            ASTNode copy = entry.getValue();
+            for(int i = 0; i < node.getChildCount(); i++) {
+                copy.appendChild(copies.get((ASTNode) node.getChildAt(i)));
+            }
+            copy.parentNode = node.parentNode == null ? null : copies.get(node.parentNode);
+        }
+
+        for(Rule rule : rules) {
+            Stack<ASTNode> roots = new Stack<ASTNode>();
+            for(ASTNode root : rule.roots) {
+                roots.push(copies.get(root));
+            }
+            target.rules.push(new Rule(rule.name, roots));
+        }
+        for(Map.Entry<Integer, ASTNode> entry : nodesMap.entrySet()) {
+            target.nodesMap.put(entry.getKey(), copies.get(entry.getValue()));
+        }
+    }
+
     /* Utility methods */
 
 	protected ASTNode createNilTreeNode(int id) {
@@ -196,6 +260,13 @@ public class DBASTModel {
             return (rules.peek()).roots;
     }
 
+    public class Checkpoint {
+
+        protected Stack<Rule> rules = new Stack<Rule>();
+        protected Map<Integer, ASTNode> nodesMap = new HashMap<Integer, ASTNode>();
+
+    }
+
     public class Rule {
 
         public String name;
@@ -228,6 +299,15 @@ public class DBASTModel {
             children = new Vector();
         }
 
+        /** Copy the node without its children and parent */
+        public ASTNode(ASTNode node) {
+            this(node.id);
+            this.nil = node.nil;
+            this.token = node.token;
+            this.location = node.location;
+            this.color = node.color;
+        }
+
         /** Add a child */
         public void addChild(ASTNode node) {
             if(node.nil) {
@@ -243,6 +323,11 @@ public class DBASTModel {
             }
         }
 
+        /** Add a child as is, without changing its parent */
+        public void appendChild(ASTNode node) {
+            children.add(node);
+        }
+
         /** Remove a child */
         public void removeChild(ASTNode node) {
             children.remove(node);
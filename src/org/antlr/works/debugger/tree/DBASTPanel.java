@@ -125,6 +125,11 @@ public class DBASTPanel extends DetachablePanel implements DBASTModelListener, X
         treePanel.clear();
     }
 
+    public void restoreCheckpoint(DBASTModel.Checkpoint checkpoint) {
+        treePanel.clear();
+        model.restoreCheckpoint(checkpoint);
+    }
+
     public void updateOnBreakEvent() {
         model.fireDataChanged();
 
@@ -12,10 +12,8 @@ import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
 
 import javax.swing.tree.TreeNode;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.*;
 import java.util.List;
-import java.util.Stack;
 /*
 
 [The "BSD licence"]
@@ -177,6 +175,75 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
         setLastNode(b.getLastNode());
     }
 
+    /** Returns a copy of the state of the model that can be restored later on
+     * using restoreCheckpoint().
+     */
+    public Checkpoint createCheckpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        copy(rules, backtrackStack, lastNode, checkpoint);
+        checkpoint.location = location;
+        return checkpoint;
+    }
+
+    public void restoreCheckpoint(Checkpoint checkpoint) {
+        super.clear();
+
+        // Copy the checkpoint again because the nodes are modified by the player
+        Checkpoint c = new Checkpoint();
+        copy(checkpoint.rules, checkpoint.backtrackStack, checkpoint.lastNode, c);
+        rules = c.rules;
+        backtrackStack = c.backtrackStack;
+        location = checkpoint.location;
+        setLastNode(c.lastNode);
+        fireDataChanged();
+    }
+
+    private static void copy(Stack<ParseTreeNode> rules, Stack<Backtrack> backtrackStack, TreeNode lastNode,
+                             Checkpoint target)
+    {
+        Map<TreeNode,ParseTreeNode> copies = new IdentityHashMap<TreeNode, ParseTreeNode>();
+        if(!rules.isEmpty()) {
+            // Copy the tree iteratively because it can be very deep
+            ParseTreeNode root = rules.firstElement();
+            copies.put(root, new ParseTreeNode(root));
+            Stack<ParseTreeNode> pending = new Stack<ParseTreeNode>();
+            pending.push(root);
+            while(!pending.isEmpty()) {
+                ParseTreeNode node = pending.pop();
+                ParseTreeNode copy = copies.get(node);
+                for(int index=0; index<node.getChildCount(); index++) {
+                    ParseTreeNode child = (ParseTreeNode) node.getChildAt(index);
+                    ParseTreeNode childCopy = new ParseTreeNode(child);
+                    copies.put(child, childCopy);
+                    copy.add(childCopy);
+                    pending.push(child);
+                }
+            }
+        }
+
+        for(ParseTreeNode rule : rules) {
+            target.rules.push(getCopy(copies, rule));
+        }
+        for(Backtrack b : backtrackStack) {
+            Backtrack copy = new Backtrack(b.level, b.lookaheadTokenColor);
+            for(DBTreeNode node : b.nodes) {
+                copy.nodes.add(getCopy(copies, node));
+            }
+            target.backtrackStack.push(copy);
+        }
+        target.lastNode = lastNode == null ? null : getCopy(copies, lastNode);
+    }
+
+    private static ParseTreeNode getCopy(Map<TreeNode,ParseTreeNode> copies, TreeNode node) {
+        ParseTreeNode copy = copies.get(node);
+        if(copy == null) {
+            // node not attached to the tree
+            copy = new ParseTreeNode((ParseTreeNode)node);
+            copies.put(node, copy);
+        }
+        return copy;
+    }
+
     public void notificationFire(Object source, String name) {
         if(name.equals(AWPrefsDialog.NOTIF_PREFS_APPLIED)) {
             initColors();
@@ -202,6 +269,14 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
             super(token, location);
         }
 
+        /** Copy the node without its children */
+        public ParseTreeNode(ParseTreeNode node) {
+            super(node.token, node.location);
+            this.s = node.s;
+            this.e = node.e;
+            this.color = node.color;
+        }
+
         public String toString() {
             if(s != null)
                 return s;
@@ -213,6 +288,15 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
 
     }
 
+    public static class Checkpoint {
+
+        protected Stack<ParseTreeNode> rules = new Stack<ParseTreeNode>();
+        protected Stack<Backtrack> backtrackStack = new Stack<Backtrack>();
+        protected TreeNode lastNode;
+        protected DBEventLocation location;
+
+    }
+
     public static class Backtrack {
 
         public int level;
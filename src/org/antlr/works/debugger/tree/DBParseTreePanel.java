@@ -79,6 +79,11 @@ public class DBParseTreePanel extends DetachablePanel implements DBParseTreeMode
         treePanel.clear();
     }
 
+    public void restoreCheckpoint(DBParseTreeModel.Checkpoint checkpoint) {
+        treePanel.clear();
+        model.restoreCheckpoint(checkpoint);
+    }
+
     public void updateOnBreakEvent() {
         model.fireDataChanged();
     }
@@ -416,7 +416,8 @@ public class AWPrefsDialog extends XJPanel {
         }
         applyCommonPrefs();
         applyTestRigPrefs();
-        XJNotificationCenter.defaultCenter().postNotification(this, NOTIF_PREFS_APPLIED);
+        AWPrefs.refreshSnapshot();
+        XJNotificationCenter.defaultCenter().enqueueNotification(this, NOTIF_PREFS_APPLIED);
     }
 
     private void changeLookAndFeel() {
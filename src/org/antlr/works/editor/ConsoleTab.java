@@ -32,27 +32,41 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.editor;
 
 import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.ConsoleHelper;
 import org.antlr.works.utils.Toolbar;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ConsoleTab extends GrammarWindowTab implements Console {
 
     protected JPanel panel;
     protected JTextArea textArea;
 
+    /** Delay between two flushes of the pending messages to the text area */
+    protected static final int FLUSH_DELAY = 40;
+
     protected SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss");
-    protected Map<Thread,Integer> modeByThread = new HashMap<Thread, Integer>();
+    protected Map<Thread,Integer> modeByThread = new ConcurrentHashMap<Thread, Integer>();
+
+    /** Messages printed by any thread and not yet appended to the text area */
+    protected final ConcurrentLinkedQueue<Message> pendingMessages = new ConcurrentLinkedQueue<Message>();
+    protected final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    protected final Timer flushTimer;
 
     public ConsoleTab(GrammarWindow window) {
         super(window);
@@ -71,6 +85,13 @@ public class ConsoleTab extends GrammarWindowTab implements Console {
 
         panel.add(createTextArea(), BorderLayout.CENTER);
         panel.add(box, BorderLayout.SOUTH);
+
+        flushTimer = new Timer(FLUSH_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                flush();
+            }
+        });
+        flushTimer.setRepeats(false);
     }
 
     public void setMode(int mode) {
@@ -78,6 +99,7 @@ public class ConsoleTab extends GrammarWindowTab implements Console {
     }
 
     public void close() {
+        flushTimer.stop();
         if(ConsoleHelper.getCurrent() == this) {
             ConsoleHelper.setCurrent(null);
         }
@@ -107,44 +129,84 @@ public class ConsoleTab extends GrammarWindowTab implements Console {
     }
 
     public void clear() {
+        pendingMessages.clear();
         textArea.setText("");
         window.clearConsoleStatus();
     }
 
-    public synchronized void println(String s) {
+    public void println(String s) {
         println(s, Console.LEVEL_NORMAL);
     }
 
-    public synchronized void println(String s, int level) {
+    public void println(String s, int level) {
         print(s+"\n", level);
     }
 
-    public synchronized void println(Throwable e) {
+    public void println(Throwable e) {
         println(XJUtils.stackTrace(e), Console.LEVEL_ERROR);
     }
 
-    public synchronized void print(final String s, final int level) {
-        if(!SwingUtilities.isEventDispatchThread()) {
-            SwingUtilities.invokeLater(new Runnable() {
-                public void run() {
-                    print(s, level);
-                }
-            });
+    /** Can be called from any thread: the message is queued and appended to the text area
+     * with the other pending messages by the next flush on the event dispatch thread.
+     */
+    public void print(String s, int level) {
+        System.out.print(s);
+        pendingMessages.add(new Message(s, level, getMode() == Console.MODE_VERBOSE));
+        if(flushScheduled.compareAndSet(false, true)) {
+            flushTimer.start();
+        }
+    }
+
+    public void print(Throwable e) {
+        print(XJUtils.stackTrace(e), Console.LEVEL_ERROR);
+    }
+
+    protected void flush() {
+        flushScheduled.set(false);
+
+        StringBuilder sb = new StringBuilder();
+        Message message;
+        while((message = pendingMessages.poll()) != null) {
+            sb.append("[").append(dateFormat.format(message.date)).append("] ").append(message.text);
+            if(message.verbose) {
+                window.consolePrint(message.text, message.level);
+            }
+        }
+        if(sb.length() == 0)
             return;
+
+        Document doc = textArea.getDocument();
+        try {
+            doc.insertString(doc.getLength(), sb.toString(), null);
+            removeExceedingLines(doc);
+        } catch (BadLocationException e) {
+            // Cannot happen: the text is always appended at the end of the document
+            e.printStackTrace();
         }
-        
-        String t = "["+dateFormat.format(new Date())+"] "+s;
-        textArea.setText(textArea.getText()+t);
-        textArea.setCaretPosition(textArea.getText().length());
-        System.out.println(s);
-
-        if(getMode() == Console.MODE_VERBOSE) {
-            window.consolePrint(s, level);
+        textArea.setCaretPosition(doc.getLength());
+    }
+
+    /** Removes the oldest lines so the console does not keep more than the maximum number of lines */
+    protected void removeExceedingLines(Document doc) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        int exceedingLines = root.getElementCount() - AWPrefs.getConsoleMaxLines();
+        if(exceedingLines > 0) {
+            doc.remove(0, root.getElement(exceedingLines-1).getEndOffset());
         }
     }
 
-    public synchronized void print(Throwable e) {
-        print(XJUtils.stackTrace(e), Console.LEVEL_ERROR);
+    protected static class Message {
+
+        public final String text;
+        public final int level;
+        public final boolean verbose;
+        public final Date date = new Date();
+
+        public Message(String text, int level, boolean verbose) {
+            this.text = text;
+            this.level = level;
+            this.verbose = verbose;
+        }
     }
 
     public String getTabName() {
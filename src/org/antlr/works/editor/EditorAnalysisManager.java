@@ -51,6 +51,10 @@ public class EditorAnalysisManager extends ATEAnalysisManager {
     protected int numberOfErrors;
     protected int numberOfWarnings;
 
+    protected boolean analyzed;
+    protected long queueTime;
+    protected long analysisTime;
+
     public EditorAnalysisManager(GrammarWindow window) {
         this.window = window;
     }
@@ -59,6 +63,16 @@ public class EditorAnalysisManager extends ATEAnalysisManager {
         window = null;
     }
 
+    /** Called by the GrammarAnalysisScheduler when the background analysis of the grammar
+     * has completed. The errors and warnings are read from the inspector which has already
+     * been updated by the analysis.
+     */
+    public void analysisDidComplete(long queueTime, long analysisTime) {
+        this.analyzed = true;
+        this.queueTime = queueTime;
+        this.analysisTime = analysisTime;
+    }
+
     public int[] getAvailableTypes() {
         return new int[] { ANALYSIS_ITEM_WARNING, ANALYSIS_ITEM_ERROR, ANALYSIS_ITEM_OTHER };
     }
@@ -107,6 +121,10 @@ public class EditorAnalysisManager extends ATEAnalysisManager {
             else
                 sb.append(" warning found");
         }
+        if(analyzed) {
+            sb.append("\n");
+            sb.append("Analyzed in ").append(analysisTime).append(" ms (queued ").append(queueTime).append(" ms)");
+        }
         return sb.toString();
     }
 
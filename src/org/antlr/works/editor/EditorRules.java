@@ -374,40 +374,15 @@ public class EditorRules implements XJTreeDelegate {
     }
 
     public List<String> getRulesStartingWith(String match) {
-        List<String> matches = new ArrayList<String>();
-        if(getGrammarEngine().getRules() == null)
-            return matches;
-
-        List<ElementRule> rules = getGrammarEngine().getRules();
-        for (ElementRule r : rules) {
-            String rname = r.name.toLowerCase();
-            if (rname.startsWith(match) && !matches.contains(r.name))
-                matches.add(r.name);
-        }
-        return matches;
+        return getGrammarEngine().getRuleNamesStartingWith(match);
     }
 
     public List<ElementReference> getReferencesInRule(ElementRule rule) {
-        if(getGrammarEngine().getRules() == null)
-            return null;
-
-        List<ElementReference> refs = new ArrayList<ElementReference>();
-        for (ElementReference r : getGrammarEngine().getReferences()) {
-            if (r.rule == rule)
-                refs.add(r);
-        }
-        return refs;
+        return getGrammarEngine().getReferencesInRule(rule);
     }
 
     public ElementRule getEnclosingRuleAtPosition(int pos) {
-        if(getGrammarEngine().getRules() == null)
-            return null;
-
-        for (ElementRule r : getGrammarEngine().getRules()) {
-            if (r.containsIndex(pos))
-                return r;
-        }
-        return null;
+        return getGrammarEngine().getEnclosingRuleAtPosition(pos);
     }
 
     public ElementRule selectRuleInTreeAtPosition(int pos) {
@@ -439,14 +414,7 @@ public class EditorRules implements XJTreeDelegate {
     }
 
     public ElementRule getRuleAtIndex(int index) {
-        if(getGrammarEngine().getRules() == null)
-            return null;
-
-        for (ElementRule r : getGrammarEngine().getRules()) {
-            if (index >= r.getStartIndex() && index <= r.getEndIndex())
-                return r;
-        }
-        return null;
+        return getGrammarEngine().getEnclosingRuleAtPosition(index);
     }
 
     public boolean isRuleAtIndex(int index) {
@@ -44,6 +44,7 @@ import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.List;
 
 public class Usages extends GrammarWindowTab {
 
@@ -109,7 +110,16 @@ public class Usages extends GrammarWindowTab {
         return panel;
     }
 
-    public void addMatch(ElementRule rule, ATEToken token) {
+    /** Adds the matches to the tree and updates the tree model only once */
+    public void addMatches(List<UsageMatch> matches) {
+        for(UsageMatch match : matches) {
+            addMatchNode(match);
+        }
+        model.reload();
+    }
+
+    private void addMatchNode(UsageMatch match) {
+        ElementRule rule = match.rule;
         if(lastRule == null || !lastRule.equals(rule.name)) {
             node = new DefaultMutableTreeNode();
             node.setUserObject(rule.name);
@@ -119,10 +129,8 @@ public class Usages extends GrammarWindowTab {
         }
 
         DefaultMutableTreeNode matchNode = new DefaultMutableTreeNode();
-        matchNode.setUserObject(new UsageMatch(rule, token));
+        matchNode.setUserObject(match);
         node.add(matchNode);
-
-        model.reload();
     }
 
     public void selectMatch(UsageMatch match) {
@@ -67,7 +67,11 @@ public class CheckGrammar implements Runnable {
         delegate.checkGrammarDidBegin(this);
         GrammarResult result;
         try {
-            result = window.getGrammarEngine().analyze();
+            result = window.getAnalysisScheduler().analyze();
+            if(result.reusedDecisions > 0) {
+                window.getConsoleTab().println("Analyzed "+result.analyzedDecisions+" decision(s), reused the analysis of "
+                        +result.reusedDecisions+" unchanged decision(s)");
+            }
         } catch (Exception e) {
             window.getConsoleTab().println(e);
             // Result cannot be null, so report the exception
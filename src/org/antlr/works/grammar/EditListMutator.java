@@ -0,0 +1,333 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar;
+
+import org.antlr.works.ate.ATEPanel;
+import org.antlr.xjlib.appkit.undo.XJUndo;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Refactoring mutator that never copies the text: each change is recorded as an edit
+ * of the original text, kept sorted by position and merged with the edits it touches.
+ * The positions passed to the mutator are always positions in the text as modified so far,
+ * exactly like when the changes are applied one after the other to a copy of the text.
+ * Once the refactoring is done, the edits are pushed into the document in one pass
+ * and can be undone as a list of small deltas instead of two copies of the whole text.
+ */
+public class EditListMutator implements RefactorMutator {
+
+    private final String original;
+    private final List<Edit> edits = new ArrayList<Edit>();
+
+    /** Difference between the length of the modified text and the length of the original text */
+    private int delta = 0;
+
+    public EditListMutator(String original) {
+        this.original = original;
+    }
+
+    public void replace(int start, int end, String s) {
+        addEdit(start, end, s);
+    }
+
+    public void insert(int index, String s) {
+        addEdit(index, index, s);
+    }
+
+    public void insertAtLinesBoundary(int index, String s) {
+        if(!(charAt(index) == '\n' && charAt(index-1) == '\n')) {
+            insert(index++, "\n");
+        }
+        insert(index, s);
+        int end = index+s.length();
+        if(!(charAt(end) == '\n' && end+1 < length() && charAt(end+1) == '\n'))
+        {
+            insert(end, "\n");
+        }
+    }
+
+    public void delete(int start, int end) {
+        addEdit(start, end, "");
+    }
+
+    public boolean hasEdits() {
+        return !edits.isEmpty();
+    }
+
+    /** Returns the length of the modified text */
+    public int length() {
+        return original.length()+delta;
+    }
+
+    /** Returns the character at the given position of the modified text */
+    public char charAt(int index) {
+        int d = 0;
+        for(Edit e : edits) {
+            int start = e.start+d;
+            if(index < start)
+                return original.charAt(index-d);
+            if(index < start+e.text.length())
+                return e.text.charAt(index-start);
+            d += e.delta();
+        }
+        return original.charAt(index-d);
+    }
+
+    /** Returns the modified text */
+    public String getText() {
+        StringBuilder sb = new StringBuilder(length());
+        int position = 0;
+        for(Edit e : edits) {
+            sb.append(original, position, e.start);
+            sb.append(e.text);
+            position = e.end;
+        }
+        sb.append(original, position, original.length());
+        return sb.toString();
+    }
+
+    private void addEdit(int start, int end, String s) {
+        if(start == end && s.length() == 0)
+            return;
+
+        // Fast path: the refactoring engine usually modifies the text from the end to the beginning
+        if(edits.isEmpty() || end < edits.get(0).start) {
+            edits.add(0, new Edit(start, end, s));
+            delta += s.length()-(end-start);
+            return;
+        }
+
+        // Find the edits touched by the new one (positions in the modified text)
+        int first = -1;
+        int last = -1;
+        int deltaBeforeFirst = 0;
+        int deltaAfterLast = 0;
+        int regionStart = start;
+        int regionEnd = end;
+        int insertionIndex = edits.size();
+        int d = 0;
+        for(int index=0; index<edits.size(); index++) {
+            Edit e = edits.get(index);
+            int editStart = e.start+d;
+            int editEnd = editStart+e.text.length();
+            if(editStart > end) {
+                if(first == -1) {
+                    insertionIndex = index;
+                }
+                break;
+            }
+            if(editEnd >= start) {
+                if(first == -1) {
+                    first = index;
+                    deltaBeforeFirst = d;
+                    regionStart = Math.min(start, editStart);
+                }
+                last = index;
+                deltaAfterLast = d+e.delta();
+                regionEnd = Math.max(end, editEnd);
+            }
+            d += e.delta();
+        }
+
+        if(first == -1) {
+            // The new edit does not touch any existing edit
+            edits.add(insertionIndex, new Edit(start-d, end-d, s));
+        } else {
+            // Merge the touched edits and the new one into a single edit of the original text
+            String region = getModifiedText(first, last, regionStart-deltaBeforeFirst, regionEnd-deltaAfterLast);
+            String text = region.substring(0, start-regionStart)+s+region.substring(end-regionStart);
+            Edit merged = new Edit(regionStart-deltaBeforeFirst, regionEnd-deltaAfterLast, text);
+            edits.subList(first, last+1).clear();
+            edits.add(first, merged);
+        }
+        delta += s.length()-(end-start);
+    }
+
+    /** Returns the modified text between the given positions of the original text,
+     * assuming only the edits first to last are in that range.
+     */
+    private String getModifiedText(int first, int last, int start, int end) {
+        StringBuilder sb = new StringBuilder();
+        int position = start;
+        for(int index=first; index<=last; index++) {
+            Edit e = edits.get(index);
+            sb.append(original, position, e.start);
+            sb.append(e.text);
+            position = e.end;
+        }
+        sb.append(original, position, end);
+        return sb.toString();
+    }
+
+    /** Applies the edits to the document, which must contain the original text,
+     * and returns an undoable edit holding only the modified regions.
+     */
+    public UndoableRefactoringEdit apply(Document doc, XJUndo undo) throws BadLocationException {
+        return apply(doc, null, undo);
+    }
+
+    /** Applies the edits to the text of the editor. The editor does not record the changes
+     * (auto-indentation, gutter, etc.) while the edits are applied: the caller parses the text
+     * and marks the document as changed once all the edits are applied. When the refactoring
+     * is undone or redone, the editor is parsed once at the end.
+     */
+    public UndoableRefactoringEdit apply(ATEPanel editor, XJUndo undo) throws BadLocationException {
+        return apply(editor.getTextPane().getDocument(), editor, undo);
+    }
+
+    private UndoableRefactoringEdit apply(Document doc, ATEPanel editor, XJUndo undo) throws BadLocationException {
+        List<Delta> deltas = new ArrayList<Delta>(edits.size());
+        int d = delta;
+        for(int index=edits.size()-1; index>=0; index--) {
+            Edit e = edits.get(index);
+            d -= e.delta();
+            deltas.add(new Delta(e.start, e.start+d, original.substring(e.start, e.end), e.text));
+        }
+        UndoableRefactoringEdit edit = new UndoableRefactoringEdit(doc, editor, undo, deltas);
+        edit.applyDeltas(false);
+        return edit;
+    }
+
+    private static class Edit {
+
+        /** Range of the original text replaced by the text */
+        public final int start;
+        public final int end;
+        public final String text;
+
+        public Edit(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+        public int delta() {
+            return text.length()-(end-start);
+        }
+    }
+
+    private static class Delta {
+
+        public final int originalStart;
+        public final int modifiedStart;
+        public final String oldText;
+        public final String newText;
+
+        public Delta(int originalStart, int modifiedStart, String oldText, String newText) {
+            this.originalStart = originalStart;
+            this.modifiedStart = modifiedStart;
+            this.oldText = oldText;
+            this.newText = newText;
+        }
+
+        public void apply(Document doc, int start, String from, String to) throws BadLocationException {
+            if(from.length() > 0)
+                doc.remove(start, from.length());
+            if(to.length() > 0)
+                doc.insertString(start, to, null);
+        }
+    }
+
+    /** Undoes or redoes the refactoring using only the modified regions. The deltas are stored
+     * from the end of the text to the beginning, so applying one never moves the next ones.
+     */
+    public static class UndoableRefactoringEdit extends AbstractUndoableEdit {
+
+        private final Document doc;
+        private final ATEPanel editor;
+        private final XJUndo undo;
+        private final List<Delta> deltas;
+
+        private UndoableRefactoringEdit(Document doc, ATEPanel editor, XJUndo undo, List<Delta> deltas) {
+            this.doc = doc;
+            this.editor = editor;
+            this.undo = undo;
+            this.deltas = deltas;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            try {
+                applyDeltas(true);
+            } catch (BadLocationException e) {
+                throw new CannotUndoException();
+            }
+            if(editor != null) editor.parse();
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            try {
+                applyDeltas(false);
+            } catch (BadLocationException e) {
+                throw new CannotRedoException();
+            }
+            if(editor != null) editor.parse();
+        }
+
+        private void applyDeltas(boolean reverse) throws BadLocationException {
+            if(undo != null) undo.disableUndo();
+            if(editor != null) editor.setEnableRecordChange(false);
+            int applied = 0;
+            try {
+                for(Delta delta : deltas) {
+                    if(reverse) {
+                        delta.apply(doc, delta.modifiedStart, delta.newText, delta.oldText);
+                    } else {
+                        delta.apply(doc, delta.originalStart, delta.oldText, delta.newText);
+                    }
+                    applied++;
+                }
+            } catch (BadLocationException e) {
+                if(!reverse) {
+                    // Restore the original text by reverting the applied deltas in the reverse order
+                    for(int index=applied-1; index>=0; index--) {
+                        Delta delta = deltas.get(index);
+                        delta.apply(doc, delta.originalStart, delta.newText, delta.oldText);
+                    }
+                }
+                throw e;
+            } finally {
+                if(editor != null) editor.setEnableRecordChange(true);
+                if(undo != null) undo.enableUndo();
+            }
+        }
+    }
+}
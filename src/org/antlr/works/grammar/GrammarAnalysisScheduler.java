@@ -0,0 +1,215 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar;
+
+import org.antlr.works.ate.syntax.misc.ATEThread;
+import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.grammar.antlr.GrammarResult;
+import org.antlr.works.utils.ErrorListener;
+
+import javax.swing.*;
+
+/** This class is the single entry point to run the ANTLR analysis of the grammar of a window.
+ * The analysis is scheduled automatically once the parsing has settled: bursts of edits are
+ * coalesced into one analysis and any analysis in progress is cancelled as soon as a newer
+ * version of the grammar is available. The explicit analysis (check grammar, interpreter, etc.)
+ * goes through the same scheduler so only one analysis runs at a time.
+ */
+public class GrammarAnalysisScheduler extends ATEThread {
+
+    /** Delay without any new request before the background analysis starts */
+    public static final int ANALYSIS_DELAY = 1000;
+
+    private final Object analysisLock = new Object();
+
+    private GrammarWindow window;
+
+    /** Generation of the grammar being analyzed or -1 if no analysis is in progress */
+    private volatile int analyzingGeneration = -1;
+    /** Generation of the grammar published by the last background analysis */
+    private volatile int analyzedGeneration = -1;
+
+    private volatile boolean pending = false;
+    private long firstRequestTime = 0;
+
+    private int requests;
+    private int analyses;
+    private int cancellations;
+    private long lastQueueTime;
+    private long lastAnalysisTime;
+    private long totalQueueTime;
+    private long totalAnalysisTime;
+
+    public GrammarAnalysisScheduler(GrammarWindow window) {
+        this.window = window;
+        setDefaultThreshold(ANALYSIS_DELAY);
+        start();
+    }
+
+    public void close() {
+        stop();
+        if(analyzingGeneration != -1) {
+            window.getGrammarEngine().cancelAnalyze();
+        }
+        window = null;
+    }
+
+    /** Schedules a background analysis of the current version of the grammar. Requests received
+     * before the analysis starts are coalesced into a single analysis.
+     */
+    public synchronized void schedule() {
+        requests++;
+        if(!pending) {
+            pending = true;
+            firstRequestTime = System.currentTimeMillis();
+        }
+        cancelOutdatedAnalysis();
+        awakeThread();
+    }
+
+    /** Cancels the analysis in progress if the grammar changed since it started.
+     */
+    public void cancelOutdatedAnalysis() {
+        int generation = analyzingGeneration;
+        if(window == null) return;
+        if(generation != -1 && generation != getGeneration(window)) {
+            synchronized(this) {
+                cancellations++;
+            }
+            window.getGrammarEngine().cancelAnalyze();
+        }
+    }
+
+    /** Analyzes the grammar in the current thread, waiting for any analysis in progress
+     * of the same version of the grammar to complete first.
+     */
+    public GrammarResult analyze() throws Exception {
+        cancelOutdatedAnalysis();
+        synchronized(analysisLock) {
+            return window.getGrammarEngine().analyze();
+        }
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    public synchronized int getAnalyses() {
+        return analyses;
+    }
+
+    public synchronized int getCancellations() {
+        return cancellations;
+    }
+
+    public synchronized long getLastQueueTime() {
+        return lastQueueTime;
+    }
+
+    public synchronized long getLastAnalysisTime() {
+        return lastAnalysisTime;
+    }
+
+    public synchronized long getAverageQueueTime() {
+        return analyses == 0 ? 0 : totalQueueTime/analyses;
+    }
+
+    public synchronized long getAverageAnalysisTime() {
+        return analyses == 0 ? 0 : totalAnalysisTime/analyses;
+    }
+
+    private static int getGeneration(GrammarWindow window) {
+        return window.getGrammarEngine().getANTLRGrammarEngine().getGeneration();
+    }
+
+    @Override
+    protected boolean isWorkPending() {
+        // A request was received while the previous analysis was running: don't wait
+        // for another request but only for the coalescing delay
+        return pending;
+    }
+
+    @Override
+    protected void threadRun() throws Exception {
+        final GrammarWindow window = this.window;
+        if(window == null) return;
+
+        long queueTime;
+        synchronized(this) {
+            if(!pending) return;
+            pending = false;
+            queueTime = System.currentTimeMillis()-firstRequestTime;
+        }
+
+        int generation = getGeneration(window);
+        if(generation == analyzedGeneration) return;
+
+        // The background analysis is silent: the messages are printed to the console
+        // only when the user explicitly analyzes the grammar (see ANTLRGrammarEngineImpl)
+        ErrorListener.getThreadInstance().setPrintToConsole(false);
+
+        long analysisTime;
+        synchronized(analysisLock) {
+            analyzingGeneration = generation;
+            long t = System.currentTimeMillis();
+            try {
+                window.getGrammarEngine().analyze();
+            } finally {
+                analyzingGeneration = -1;
+            }
+            analysisTime = System.currentTimeMillis()-t;
+        }
+
+        if(generation != getGeneration(window)) {
+            // A newer version of the grammar is available: its own request is pending
+            return;
+        }
+
+        synchronized(this) {
+            analyses++;
+            lastQueueTime = queueTime;
+            lastAnalysisTime = analysisTime;
+            totalQueueTime += queueTime;
+            totalAnalysisTime += analysisTime;
+        }
+        analyzedGeneration = generation;
+
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if(GrammarAnalysisScheduler.this.window != null) {
+                    window.analysisDidComplete();
+                }
+            }
+        });
+    }
+
+}
@@ -47,7 +47,7 @@ public class TokensDFA extends GrammarDOTTab {
     @Override
     public String getDOTString() throws Exception {
         ANTLRGrammarEngine eg = window.getGrammarEngine().getANTLRGrammarEngine();
-        eg.analyze();
+        window.getAnalysisScheduler().analyze();
 
         Grammar g = eg.getLexerGrammar();
         if(g == null) {
@@ -42,6 +42,9 @@ public interface ANTLRGrammarEngine {
     void close();
     void markDirty();
 
+    /** Changes each time the grammar is marked dirty */
+    int getGeneration();
+
     boolean hasGrammar();
 
     Grammar getDefaultGrammar();
@@ -44,22 +44,35 @@ import org.antlr.works.utils.ErrorListener;
 
 import javax.swing.*;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/** The grammars are created and analyzed by several threads (the background analysis, the syntax
+ * diagram, the explicit commands): the methods creating, analyzing or reading the grammars are
+ * synchronized on the engine. Only markDirty() and cancel() do not wait for the lock, so an
+ * analysis in progress can be cancelled while the grammar is being edited.
+ */
 public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
 
-    private Grammar parserGrammar;
-    private Grammar lexerGrammar;
+    private volatile Grammar parserGrammar;
+    private volatile Grammar lexerGrammar;
     private List<GrammarError> errors;
 
-    private boolean needsToCreateGrammar;
-    private boolean needsToAnalyzeGrammar;
+    /** Incremented each time the grammar is modified */
+    private final AtomicInteger generation = new AtomicInteger();
+    /** Generation the grammars have been created from and generation of the last complete
+     * analysis (or -1 if the grammars have to be created or analyzed again). Guarded by this.
+     */
+    private int createdGeneration = -1;
+    private int analyzedGeneration = -1;
 
     private final GrammarResult createGrammarResult = new GrammarResult();
     private final GrammarResult analyzeResult = new GrammarResult();
+    private final GrammarChangeTracker changeTracker = new GrammarChangeTracker();
 
     private GrammarEngine engine;
 
@@ -81,19 +94,22 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     public void markDirty() {
-        needsToCreateGrammar = true;
-        needsToAnalyzeGrammar = true;
+        generation.incrementAndGet();
     }
 
-    public Grammar getParserGrammar() {
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    public synchronized Grammar getParserGrammar() {
         return parserGrammar;
     }
 
-    public Grammar getLexerGrammar() {
+    public synchronized Grammar getLexerGrammar() {
         return lexerGrammar;
     }
 
-    public NFAState getRuleStartState(String name) throws Exception {
+    public synchronized NFAState getRuleStartState(String name) throws Exception {
         Grammar g;
         createGrammars();
         if(ATEToken.isLexerName(name))
@@ -104,7 +120,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         return g == null ? null:g.getRuleStartState(name);
     }
 
-    public Grammar getGrammarForRule(String name) throws Exception {
+    public synchronized Grammar getGrammarForRule(String name) throws Exception {
         createGrammars();
         if(ATEToken.isLexerName(name))
             return getLexerGrammar();
@@ -112,11 +128,11 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             return getParserGrammar();
     }
 
-    public List<GrammarError> getErrors() {
+    public synchronized List<GrammarError> getErrors() {
         return errors;
     }
 
-    public boolean hasGrammar() {
+    public synchronized boolean hasGrammar() {
         switch(engine.getType()) {
             case ElementGrammarName.COMBINED:
                 return parserGrammar != null;
@@ -129,7 +145,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         return false;
     }
 
-    public Grammar getDefaultGrammar() {
+    public synchronized Grammar getDefaultGrammar() {
         switch(engine.getType()) {
             case ElementGrammarName.COMBINED:
                 return parserGrammar;
@@ -142,14 +158,12 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         return null;
     }
 
-    public void createGrammars() throws Exception {
-        if(!needsToCreateGrammar) {
-            if(createGrammarResult.isSuccess()) {
-                return;
-            } else {
-                needsToCreateGrammar = true;
-            }
+    public synchronized void createGrammars() throws Exception {
+        int textGeneration = generation.get();
+        if(createdGeneration == textGeneration && createGrammarResult.isSuccess()) {
+            return;
         }
+        createdGeneration = -1;
 
         ErrorListener el = ErrorListener.getThreadInstance();
         ErrorManager.setErrorListener(el);
@@ -174,7 +188,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             }
 
             // if no exception, then assume create grammar was successful
-            needsToCreateGrammar = false;
+            createdGeneration = textGeneration;
         } finally {
             // store the result of creating the grammars
             createGrammarResult.setErrors(el.errors);
@@ -186,27 +200,64 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     private Grammar createNewGrammar() throws TokenStreamException, RecognitionException, IOException {
-        Grammar g = new Grammar();
+        Grammar g = parseNewGrammar();
+        createNFAs(g);
+        return g;
+    }
+
+    private Grammar parseNewGrammar() throws TokenStreamException, RecognitionException, IOException {
+        Grammar g = new IncrementalGrammar();
         g.setTool(engine.getANTLRTool());
         g.setFileName(engine.getGrammarFileName());
         g.setGrammarContent(engine.getGrammarText());
+        return g;
+    }
+
+    private void createNFAs(Grammar g) {
         g.composite.createNFAs();
 
         // don't want errors from a previous grammar to interfere with this new grammar.
         // must reset error state otherwise analysis will not proceed if
         // there were previous errors.
-        ErrorManager.resetErrorState();
-        return g;
+        ConcurrentGrammarTask.resetErrorState();
     }
 
+    /** Creates the parser grammar and the implicit lexer grammar. Once the parser grammar
+     * is parsed, the NFAs of the parser are created while the lexer grammar is created
+     * in another thread.
+     */
     private void createCombinedGrammar() throws Exception {
-        createParserGrammar();
-        lexerGrammar = createLexerGrammarFromCombinedGrammar(parserGrammar);
+        Grammar grammar = parseNewGrammar();
+        final Grammar lexer = createLexerGrammarFromCombinedGrammar(grammar);
+        final String lexerGrammarStr = grammar.getLexerGrammar();
+
+        ConcurrentGrammarTask lexerTask = null;
+        if(lexer != null) {
+            lexerTask = new ConcurrentGrammarTask() {
+                protected void run() throws Exception {
+                    lexer.setGrammarContent(lexerGrammarStr);
+                    lexer.composite.createNFAs();
+                }
+            };
+            lexerTask.start();
+        }
+
+        try {
+            createNFAs(grammar);
+            parserGrammar = grammar;
+        } finally {
+            // the lexer is generated from the combined grammar which has already been checked:
+            // don't report its messages again (the options of the combined grammar, like output,
+            // are also reported as illegal in the lexer)
+            if(lexerTask != null) {
+                lexerTask.complete(null);
+            }
+        }
+        lexerGrammar = lexer;
     }
 
     private Grammar createLexerGrammarFromCombinedGrammar(Grammar grammar) throws Exception {
-        String lexerGrammarStr = grammar.getLexerGrammar();
-        if(lexerGrammarStr == null)
+        if(grammar.getLexerGrammar() == null)
             return null;
 
         Grammar lexerGrammar = new Grammar();
@@ -215,9 +266,6 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         lexerGrammar.setFileName("<internally-generated-lexer>");
         lexerGrammar.importTokenVocabulary(grammar);
 
-        lexerGrammar.setGrammarContent(lexerGrammarStr);
-        lexerGrammar.composite.createNFAs();
-
         return lexerGrammar;
     }
 
@@ -254,14 +302,14 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         }
     }
 
-    public GrammarResult analyze() throws Exception {
+    public synchronized GrammarResult analyze() throws Exception {
         // if there is no need to analyze the grammar, return the previous result
-        if(!needsToAnalyzeGrammar) {
-            GrammarResult r = analyzeCompleted(null);
+        if(analyzedGeneration == generation.get()) {
+            GrammarResult r = analyzeCompleted(null, analyzedGeneration);
             if(r.isSuccess()) {
                 return r;
             } else {
-                needsToAnalyzeGrammar = true;
+                analyzedGeneration = -1;
             }
         }
 
@@ -269,33 +317,57 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         ErrorListener el = ErrorListener.getThreadInstance();
         ErrorManager.setErrorListener(el);
 
+        int textGeneration = generation.get();
         createGrammars();
 
+        // createGrammars() removes the error listener when it has to create the grammars:
+        // set it again so the analysis messages are collected
+        ErrorManager.setErrorListener(el);
+
         Grammar g = getDefaultGrammar();
         if(g == null) {
-            return analyzeCompleted(el);
+            return analyzeCompleted(el, textGeneration);
         }
 
-        List rules = g.checkAllRulesForLeftRecursion();
+        List<? extends Collection<? extends Rule>> rules = g.checkAllRulesForLeftRecursion();
         if(!rules.isEmpty()) {
-            printLeftRecursionToConsole(rules);
+            if(el.printToConsole) {
+                printLeftRecursionToConsole(rules);
+            }
             markLeftRecursiveRules(rules);
         }
 
         if(ErrorManager.doNotAttemptAnalysis()) {
-            return analyzeCompleted(el);
+            return analyzeCompleted(el, textGeneration);
         }
 
         try {
-            if ( g.nfa==null ) {
-                g.composite.createNFAs();
+            // If the grammar is combined, analyze also the lexer in another thread
+            ConcurrentGrammarTask lexerTask = null;
+            if(engine.isCombinedGrammar() && lexerGrammar != null) {
+                final Grammar lexer = lexerGrammar;
+                lexerTask = new ConcurrentGrammarTask() {
+                    protected void run() throws Exception {
+                        lexer.composite.createNFAs();
+                        lexer.createLookaheadDFAs();
+                    }
+                };
+                lexerTask.start();
             }
-            g.createLookaheadDFAs();
-            if(engine.isCombinedGrammar()) {
-                // If the grammar is combined, analyze also the lexer
-                if(lexerGrammar != null) {
-                    lexerGrammar.composite.createNFAs();
-                    lexerGrammar.createLookaheadDFAs();
+
+            try {
+                if ( g.nfa==null ) {
+                    g.composite.createNFAs();
+                }
+                if(g instanceof IncrementalGrammar) {
+                    createLookaheadDFAs((IncrementalGrammar)g, rules, el);
+                } else {
+                    g.createLookaheadDFAs();
+                }
+            } finally {
+                // the messages of the lexer are reported after the ones of the parser
+                if(lexerTask != null) {
+                    lexerTask.complete(el);
                 }
             }
 
@@ -305,23 +377,76 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             // ignore
         }
 
-        return analyzeCompleted(el);
+        return analyzeCompleted(el, textGeneration);
     }
 
-    private GrammarResult analyzeCompleted(ErrorListener el) throws InvocationTargetException, InterruptedException {
+    /** Creates the lookahead DFA of each decision like Grammar.createLookaheadDFAs() but
+     * defers the decisions whose previous analysis can be reused (see GrammarChangeTracker).
+     */
+    private void createLookaheadDFAs(IncrementalGrammar g, List<? extends Collection<? extends Rule>> leftRecursiveRules,
+                                     ErrorListener el) {
+        Set<Rule> leftRecursive = new HashSet<Rule>();
+        for (Collection<? extends Rule> rules : leftRecursiveRules) {
+            leftRecursive.addAll(rules);
+        }
+
+        changeTracker.beginAnalysis(g);
+        for(int decision = 1; decision <= g.getNumberOfDecisions(); decision++) {
+            NFAState decisionStartState = g.getDecisionNFAStartState(decision);
+            if(leftRecursive.contains(decisionStartState.enclosingRule))
+                continue;
+
+            if(decisionStartState.getNumberOfTransitions() <= 1)
+                continue;
+
+            Rule r = decisionStartState.enclosingRule;
+            if(r.isSynPred && !g.synPredNamesUsedInDFA.contains(r.name))
+                continue;
+
+            if(changeTracker.canReuseDecision(g, decision)) {
+                g.synPredNamesUsedInDFA.addAll(changeTracker.decisionReused(decision));
+                g.deferDecision(decision);
+                continue;
+            }
+
+            int messages = el.errors.size()+el.warnings.size();
+            Set<String> synPreds = new HashSet<String>(g.synPredNamesUsedInDFA);
+            g.analyzeDecision(decision);
+            if(g.NFAToDFAConversionExternallyAborted())
+                break;
+
+            Set<String> usedSynPreds = new HashSet<String>(g.synPredNamesUsedInDFA);
+            usedSynPreds.removeAll(synPreds);
+            changeTracker.decisionAnalyzed(decision, messages == el.errors.size()+el.warnings.size(), usedSynPreds);
+        }
+        changeTracker.endAnalysis();
+        g.setAllDecisionDFACreated();
+    }
+
+    private GrammarResult analyzeCompleted(ErrorListener el, int textGeneration) {
         if(SwingUtilities.isEventDispatchThread()) {
             engine.antlrGrammarEngineAnalyzeCompleted();
         } else {
-            SwingUtilities.invokeAndWait(new Runnable() {
+            // Don't wait for the event thread: it may itself be waiting for this analysis
+            // to complete (see GrammarAnalysisScheduler)
+            SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
-                    engine.antlrGrammarEngineAnalyzeCompleted();
+                    if(errors != null) {
+                        engine.antlrGrammarEngineAnalyzeCompleted();
+                    }
                 }
             });
         }
 
         if(el != null) {
-            // no need to analyze the grammar
-            needsToAnalyzeGrammar = false;
+            // no need to analyze the grammar unless it changed or the analysis was cancelled
+            // in the meantime: a cancelled grammar cannot be analyzed again so create it again
+            if(isAnalysisAborted()) {
+                createdGeneration = -1;
+                analyzedGeneration = -1;
+            } else {
+                analyzedGeneration = textGeneration;
+            }
 
             // store the analyze result
             analyzeResult.clear();
@@ -331,8 +456,8 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             if(el.hasErrors() || el.hasWarnings()) {
                 // in order to get the same error and warnings messages in the console
                 // next time the grammar is checked (if it is not touched), we need to
-                // turn this flag on again (see AW-182).
-                needsToAnalyzeGrammar = true;
+                // analyze it again (see AW-182).
+                analyzedGeneration = -1;
             }
 
             // clear the error listener
@@ -353,13 +478,23 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         result.warnings.addAll(createGrammarResult.warnings);
         result.warnings.addAll(analyzeResult.warnings);
 
+        result.analyzedDecisions = changeTracker.getAnalyzedDecisions();
+        result.reusedDecisions = changeTracker.getReusedDecisions();
+
         return result;
     }
 
     public void cancel() {
-        Grammar g = getDefaultGrammar();
-        if(g != null)
-            g.externallyAbortNFAToDFAConversion();
+        // Abort the implicit lexer grammar of a combined grammar as well
+        if(parserGrammar != null)
+            parserGrammar.externallyAbortNFAToDFAConversion();
+        if(lexerGrammar != null)
+            lexerGrammar.externallyAbortNFAToDFAConversion();
+    }
+
+    private boolean isAnalysisAborted() {
+        return parserGrammar != null && parserGrammar.NFAToDFAConversionExternallyAborted()
+                || lexerGrammar != null && lexerGrammar.NFAToDFAConversionExternallyAborted();
     }
 
     private void buildNonDeterministicErrors(ErrorListener el) {
@@ -435,7 +570,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         return errors;
     }
 
-    public void computeRuleErrors(ElementRule rule) {
+    public synchronized void computeRuleErrors(ElementRule rule) {
         List<GrammarError> errors = rule.getErrors();
         for (GrammarError error : errors) {
             Object o = error.getMessage();
@@ -0,0 +1,189 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.misc.BitSet;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Message;
+import org.antlr.tool.ToolMessage;
+import org.antlr.works.utils.ErrorListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/** This class runs a part of the creation or the analysis of a grammar in another thread so the
+ * parser and the lexer grammars of a combined grammar can be processed concurrently.
+ *
+ * ANTLR reports its messages to the listener and the error state of the current thread: the task
+ * records them in its own thread and replays them in the calling thread once it has completed,
+ * so they are reported in the same order as if the grammars were processed one after the other.
+ */
+abstract class ConcurrentGrammarTask implements Callable<Object> {
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ANTLR Grammar Task");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final MessageRecorder recorder = new MessageRecorder();
+    private ErrorManager.ErrorState errorState;
+    private Future<Object> future;
+
+    /** Resets the error state of the current thread. ErrorManager.resetErrorState() cannot be
+     * used while another thread is processing a grammar because it also removes the error
+     * listener of every thread.
+     */
+    public static void resetErrorState() {
+        ErrorManager.ErrorState state = ErrorManager.getErrorState();
+        state.errors = 0;
+        state.warnings = 0;
+        state.infos = 0;
+        state.errorMsgIDs = new BitSet();
+        state.warningMsgIDs = new BitSet();
+    }
+
+    protected abstract void run() throws Exception;
+
+    public void start() {
+        future = executor.submit(this);
+    }
+
+    public Object call() throws Exception {
+        // Note: the listener of the task thread is replaced but never removed so the
+        // ANTLR per-thread maps are not modified structurally while other threads use them
+        ErrorManager.setErrorListener(recorder);
+        resetErrorState();
+        try {
+            run();
+        } finally {
+            errorState = ErrorManager.getErrorState();
+        }
+        return null;
+    }
+
+    /** Waits for the task to complete and reports its messages to the listener and the
+     * error state of the calling thread. The messages are discarded if the listener is null.
+     */
+    public void complete(ErrorListener el) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof Exception) {
+                throw (Exception)e.getCause();
+            } else {
+                throw e;
+            }
+        } finally {
+            // merge the error state first: ANTLR checks it when a message is converted to a string
+            if(errorState != null) {
+                ErrorManager.ErrorState state = ErrorManager.getErrorState();
+                state.errors += errorState.errors;
+                state.warnings += errorState.warnings;
+                state.infos += errorState.infos;
+                state.errorMsgIDs.orInPlace(errorState.errorMsgIDs);
+                state.warningMsgIDs.orInPlace(errorState.warningMsgIDs);
+            }
+            if(el != null) {
+                recorder.replay(el);
+            }
+        }
+    }
+
+    private static class MessageRecorder extends ErrorListener {
+
+        /* Method of the listener that received each message */
+        private static final int INFO = 0;
+        private static final int ERROR = 1;
+        private static final int WARNING = 2;
+        private static final int TOOL_ERROR = 3;
+
+        private final List<Object> messages = new ArrayList<Object>();
+        private final List<Integer> kinds = new ArrayList<Integer>();
+
+        public MessageRecorder() {
+            setPrintToConsole(false);
+        }
+
+        @Override
+        public void info(String msg) {
+            record(msg, INFO);
+        }
+
+        @Override
+        public void error(Message msg) {
+            record(msg, ERROR);
+        }
+
+        @Override
+        public void warning(Message msg) {
+            record(msg, WARNING);
+        }
+
+        @Override
+        public void error(ToolMessage msg) {
+            record(msg, TOOL_ERROR);
+        }
+
+        private synchronized void record(Object msg, int kind) {
+            messages.add(msg);
+            kinds.add(kind);
+        }
+
+        /** Reports the messages to the listener using the same methods the recorder received them with */
+        public synchronized void replay(ErrorListener el) {
+            for(int index = 0; index < messages.size(); index++) {
+                Object msg = messages.get(index);
+                switch(kinds.get(index)) {
+                    case INFO:
+                        el.info((String)msg);
+                        break;
+                    case ERROR:
+                        el.error((Message)msg);
+                        break;
+                    case WARNING:
+                        el.warning((Message)msg);
+                        break;
+                    case TOOL_ERROR:
+                        el.error((ToolMessage)msg);
+                        break;
+                }
+            }
+            messages.clear();
+            kinds.clear();
+        }
+    }
+
+}
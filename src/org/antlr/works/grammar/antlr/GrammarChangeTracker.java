@@ -0,0 +1,265 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.analysis.NFAState;
+import org.antlr.analysis.RuleClosureTransition;
+import org.antlr.analysis.Transition;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Rule;
+
+import java.util.*;
+
+/** This class tracks the changes of a grammar between two analysis in order to know which
+ * decisions do not need to be analyzed again.
+ *
+ * Each rule is identified by a signature built from its NFA: two rules with the same signature
+ * have the same states, numbered the same way, with the same transitions and lookahead options
+ * (only the text of the actions is ignored). Because the LL(*) analysis of a decision can
+ * follow any rule invocation and any rule return, a decision is reused only if no rule
+ * connected to its rule by a chain of rule references has changed, and only if its previous
+ * analysis was clean (it did not produce any warning or error).
+ */
+
+public class GrammarChangeTracker {
+
+    /** Vocabulary and rule list of the grammar at the last analysis */
+    private String vocabulary;
+
+    /** Signature of each rule at the last analysis */
+    private Map<String,String> signatures = new HashMap<String, String>();
+
+    /** Decisions analyzed without any message, with the name of the syntactic
+     * predicates their DFA uses */
+    private Map<Integer,Set<String>> cleanDecisions = new HashMap<Integer, Set<String>>();
+
+    /* State of the current analysis */
+    private String currentVocabulary;
+    private Map<String,String> currentSignatures;
+    private Set<String> affectedRules;
+    private Map<Integer,Set<String>> currentCleanDecisions;
+
+    private int analyzedDecisions;
+    private int reusedDecisions;
+
+    public void reset() {
+        vocabulary = null;
+        signatures.clear();
+        cleanDecisions.clear();
+    }
+
+    /** Computes the signature of each rule and the set of rules whose decisions have to be
+     * analyzed again.
+     */
+    public void beginAnalysis(Grammar g) {
+        currentVocabulary = computeVocabulary(g);
+        currentSignatures = new HashMap<String, String>();
+        currentCleanDecisions = new HashMap<Integer, Set<String>>();
+        analyzedDecisions = 0;
+        reusedDecisions = 0;
+
+        Map<String,Set<String>> references = new HashMap<String, Set<String>>();
+        for (Rule rule : g.getRules()) {
+            Set<String> ruleReferences = new HashSet<String>();
+            currentSignatures.put(rule.name, computeSignature(g, rule, ruleReferences));
+            references.put(rule.name, ruleReferences);
+        }
+
+        affectedRules = new HashSet<String>();
+        if(!currentVocabulary.equals(vocabulary)) {
+            affectedRules.addAll(currentSignatures.keySet());
+            return;
+        }
+
+        // Build the undirected graph of rule references
+        Map<String,Set<String>> neighbors = new HashMap<String, Set<String>>();
+        for (Map.Entry<String,Set<String>> entry : references.entrySet()) {
+            for (String reference : entry.getValue()) {
+                getNeighbors(neighbors, entry.getKey()).add(reference);
+                getNeighbors(neighbors, reference).add(entry.getKey());
+            }
+        }
+
+        // Mark the changed rules and every rule connected to them
+        LinkedList<String> queue = new LinkedList<String>();
+        for (Map.Entry<String,String> entry : currentSignatures.entrySet()) {
+            if(!entry.getValue().equals(signatures.get(entry.getKey()))) {
+                queue.add(entry.getKey());
+            }
+        }
+        while(!queue.isEmpty()) {
+            String name = queue.removeFirst();
+            if(affectedRules.add(name)) {
+                queue.addAll(getNeighbors(neighbors, name));
+            }
+        }
+    }
+
+    /** Returns true if the analysis of the decision can be reused.
+     */
+    public boolean canReuseDecision(Grammar g, int decision) {
+        if(!cleanDecisions.containsKey(decision))
+            return false;
+
+        NFAState state = g.getDecisionNFAStartState(decision);
+        if(state == null || state.enclosingRule == null)
+            return false;
+
+        String name = state.enclosingRule.name;
+        return currentSignatures.containsKey(name) && !affectedRules.contains(name);
+    }
+
+    /** Returns the syntactic predicates used by the DFA of a reused decision.
+     */
+    public Set<String> decisionReused(int decision) {
+        Set<String> synPreds = cleanDecisions.get(decision);
+        currentCleanDecisions.put(decision, synPreds);
+        reusedDecisions++;
+        return synPreds;
+    }
+
+    public void decisionAnalyzed(int decision, boolean clean, Set<String> synPreds) {
+        if(clean) {
+            currentCleanDecisions.put(decision, synPreds);
+        }
+        analyzedDecisions++;
+    }
+
+    /** Records the state of the grammar once the analysis is done. Decisions that were not
+     * analyzed (i.e. because the analysis was cancelled) are analyzed next time.
+     */
+    public void endAnalysis() {
+        vocabulary = currentVocabulary;
+        signatures = currentSignatures;
+        cleanDecisions = currentCleanDecisions;
+
+        currentVocabulary = null;
+        currentSignatures = null;
+        currentCleanDecisions = null;
+        affectedRules = null;
+    }
+
+    public int getAnalyzedDecisions() {
+        return analyzedDecisions;
+    }
+
+    public int getReusedDecisions() {
+        return reusedDecisions;
+    }
+
+    private static Set<String> getNeighbors(Map<String,Set<String>> neighbors, String name) {
+        Set<String> set = neighbors.get(name);
+        if(set == null) {
+            set = new HashSet<String>();
+            neighbors.put(name, set);
+        }
+        return set;
+    }
+
+    private static String computeVocabulary(Grammar g) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(g.type).append('\n');
+        for(int t = 1; t <= g.getMaxTokenType(); t++) {
+            sb.append(g.getTokenDisplayName(t)).append(' ');
+        }
+        sb.append('\n');
+        for (Rule rule : g.getRules()) {
+            sb.append(rule.name).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String computeSignature(Grammar g, Rule rule, Set<String> references) {
+        // Collect the states of the rule (without following the rule invocations and returns)
+        SortedMap<Integer,NFAState> states = new TreeMap<Integer, NFAState>();
+        LinkedList<NFAState> stack = new LinkedList<NFAState>();
+        if(rule.startState != null) {
+            stack.add(rule.startState);
+        }
+        while(!stack.isEmpty()) {
+            NFAState state = stack.removeLast();
+            if(states.containsKey(state.stateNumber))
+                continue;
+
+            states.put(state.stateNumber, state);
+            if(state == rule.stopState)
+                continue;
+
+            for(int t=0; t<state.getNumberOfTransitions(); t++) {
+                Transition transition = state.transition(t);
+                if(transition instanceof RuleClosureTransition) {
+                    RuleClosureTransition rct = (RuleClosureTransition)transition;
+                    references.add(rct.rule.name);
+                    stack.add(rct.followState);
+                } else {
+                    stack.add((NFAState)transition.target);
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (NFAState state : states.values()) {
+            sb.append(state.stateNumber);
+            sb.append(':').append(state.getDecisionNumber());
+            sb.append(',').append(state.decisionStateType);
+            sb.append(',').append(state.endOfBlockStateNumber);
+            if(state.isAcceptState()) {
+                sb.append(",accept");
+            }
+            if(state.getDecisionNumber() > 0) {
+                sb.append(",k=").append(g.getUserMaxLookahead(state.getDecisionNumber()));
+                sb.append(",bt=").append(g.getAutoBacktrackMode(state.getDecisionNumber()));
+            }
+            if(state == rule.stopState) {
+                sb.append('\n');
+                continue;
+            }
+            for(int t=0; t<state.getNumberOfTransitions(); t++) {
+                Transition transition = state.transition(t);
+                sb.append(" -> ").append(transition.target.stateNumber);
+                if(transition.label.isAction()) {
+                    // The text of an action does not change the analysis
+                    sb.append(" {}");
+                } else {
+                    sb.append(' ').append(transition.label.toString(g));
+                }
+                if(transition instanceof RuleClosureTransition) {
+                    sb.append(" @").append(((RuleClosureTransition)transition).followState.stateNumber);
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+}
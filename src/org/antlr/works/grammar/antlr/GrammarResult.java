@@ -42,6 +42,10 @@ public class GrammarResult {
     public final List<Message> errors = new LinkedList<Message>();
     public final List<Message> warnings = new LinkedList<Message>();
 
+    /** Number of decisions analyzed and number of decisions whose previous analysis was reused */
+    public int analyzedDecisions;
+    public int reusedDecisions;
+
     public GrammarResult(Exception e) {
         this.e = e;
     }
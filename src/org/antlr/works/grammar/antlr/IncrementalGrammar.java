@@ -0,0 +1,141 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.analysis.DFA;
+import org.antlr.tool.Grammar;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Grammar whose lookahead DFA of some decisions are only created when they are requested.
+ * The engine defers the decisions whose analysis did not change since the previous
+ * analysis of the grammar (see GrammarChangeTracker).
+ */
+
+public class IncrementalGrammar extends Grammar {
+
+    private final Set<Integer> deferredDecisions = new HashSet<Integer>();
+
+    public IncrementalGrammar() {
+        super();
+    }
+
+    /** Creates the lookahead DFA of the decision the same way Grammar.createLookaheadDFAs() does.
+     */
+    public synchronized DFA analyzeDecision(int decision) {
+        DFA dfa = null;
+        int k = getUserMaxLookahead(decision);
+        if(k == 0 || k == 1) {
+            dfa = createLL_1_LookaheadDFA(decision);
+        }
+        if(dfa == null) {
+            dfa = createLookaheadDFA(decision, true);
+        }
+        if(dfa.startState == null) {
+            // something went wrong; wipe out DFA
+            setLookaheadDFA(decision, null);
+        }
+        return dfa;
+    }
+
+    public synchronized void deferDecision(int decision) {
+        // The DFA already exists if the grammar is analyzed again without being modified
+        if(super.getLookaheadDFA(decision) == null) {
+            deferredDecisions.add(decision);
+        }
+    }
+
+    public synchronized int getNumberOfDeferredDecisions() {
+        return deferredDecisions.size();
+    }
+
+    /** Returns true if the DFA of the decision is reused from the previous analysis and not created yet */
+    public synchronized boolean isDeferredDecision(int decision) {
+        return deferredDecisions.contains(decision);
+    }
+
+    /** Tells the ANTLR tools (i.e. the interpreter) that the analysis is done: the deferred
+     * DFA are then created when they are requested.
+     */
+    public void setAllDecisionDFACreated() {
+        allDecisionDFACreated = true;
+    }
+
+    public synchronized void createDeferredLookaheadDFAs() {
+        List<Integer> decisions = new ArrayList<Integer>(deferredDecisions);
+        for (Integer decision : decisions) {
+            createDeferredLookaheadDFA(decision);
+        }
+    }
+
+    private synchronized void createDeferredLookaheadDFA(int decision) {
+        if(deferredDecisions.remove(decision)) {
+            analyzeDecision(decision);
+        }
+    }
+
+    @Override
+    public DFA getLookaheadDFA(int decision) {
+        createDeferredLookaheadDFA(decision);
+        return super.getLookaheadDFA(decision);
+    }
+
+    @Override
+    public DFA getLookaheadDFAFromPositionInFile(int line, int col) {
+        createDeferredLookaheadDFAs();
+        return super.getLookaheadDFAFromPositionInFile(line, col);
+    }
+
+    @Override
+    public List<Integer> getLookaheadDFAColumnsForLineInFile(int line) {
+        createDeferredLookaheadDFAs();
+        return super.getLookaheadDFAColumnsForLineInFile(line);
+    }
+
+    @Override
+    public Map<String, DFA> getLineColumnToLookaheadDFAMap() {
+        createDeferredLookaheadDFAs();
+        return super.getLineColumnToLookaheadDFAMap();
+    }
+
+    @Override
+    public int getNumberOfCyclicDecisions() {
+        createDeferredLookaheadDFAs();
+        return super.getNumberOfCyclicDecisions();
+    }
+
+}
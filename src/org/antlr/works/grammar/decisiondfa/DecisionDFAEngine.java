@@ -50,7 +50,12 @@ public class DecisionDFAEngine {
     private Set<Integer> usesSemPreds = new HashSet<Integer>();
     private Set<Integer> usesSynPreds = new HashSet<Integer>();
 
-    private Map<Integer,List<Integer>> decisionDFA = new HashMap<Integer, List<Integer>>();
+    /** Decisions currently displayed in the editor */
+    private Map<Integer,List<Integer>> decisionDFA = Collections.emptyMap();
+
+    /** Decisions discovered during the last analysis, keyed by line (ANTLR 1-based line numbers) */
+    private Map<Integer,List<Integer>> discoveredDecisionDFA = new HashMap<Integer, List<Integer>>();
+    private int discoveredGeneration = -1;
 
     private Grammar discoveredLexerGrammar;
     private Grammar discoveredParserGrammar;
@@ -64,7 +69,7 @@ public class DecisionDFAEngine {
     }
 
     public void reset() {
-        decisionDFA.clear();
+        decisionDFA = Collections.emptyMap();
     }
 
     public int getDecisionDFACount() {
@@ -84,27 +89,47 @@ public class DecisionDFAEngine {
     }
 
     private void discover(int start, int end) throws Exception {
-        Set<Integer> lineIndexes = new HashSet<Integer>();
-        for(int index = start; index < end; index++) {
-            lineIndexes.add(window.getTextEditor().getLineIndexAtTextPosition(index));
-        }
-
         ANTLRGrammarEngine antlrEngineGrammar = window.getGrammarEngine().getANTLRGrammarEngine();
-        antlrEngineGrammar.analyze();
-        discoveredLexerGrammar = antlrEngineGrammar.getLexerGrammar();
-        discoveredParserGrammar = antlrEngineGrammar.getParserGrammar();
+        int generation = antlrEngineGrammar.getGeneration();
+        if(generation != discoveredGeneration) {
+            // The grammar changed since the last discovery: analyze it again
+            window.getAnalysisScheduler().analyze();
+            discoveredLexerGrammar = antlrEngineGrammar.getLexerGrammar();
+            discoveredParserGrammar = antlrEngineGrammar.getParserGrammar();
+
+            discoveredDecisionDFA.clear();
+            usesSynPreds.clear();
+            usesSemPreds.clear();
 
-        decisionDFA.clear();
-        usesSynPreds.clear();
-        usesSemPreds.clear();
+            discover(discoveredLexerGrammar, usesSemPreds, usesSynPreds);
+            discover(discoveredParserGrammar, usesSemPreds, usesSynPreds);
+
+            discoveredGeneration = generation;
+        }
+
+        if(start <= 0 && end >= window.getTextEditor().getText().length()) {
+            decisionDFA = discoveredDecisionDFA;
+            return;
+        }
 
-        discover(discoveredLexerGrammar, lineIndexes, usesSemPreds, usesSynPreds);
-        discover(discoveredParserGrammar, lineIndexes, usesSemPreds, usesSynPreds);
+        // Lines are 0-based in the editor but 1-based in ANTLR
+        int firstLine = window.getTextEditor().getLineIndexAtTextPosition(start) + 1;
+        int lastLine = window.getTextEditor().getLineIndexAtTextPosition(Math.max(start, end - 1)) + 1;
+        decisionDFA = new HashMap<Integer, List<Integer>>();
+        for(Map.Entry<Integer,List<Integer>> entry : discoveredDecisionDFA.entrySet()) {
+            int line = entry.getKey();
+            if(line >= firstLine && line <= lastLine) {
+                decisionDFA.put(line, entry.getValue());
+            }
+        }
     }
 
-    private void discover(Grammar g, Set<Integer> lineIndexes, Set<Integer> usesSemPreds, Set<Integer> usesSynPreds) {
+    private void discover(Grammar g, Set<Integer> usesSemPreds, Set<Integer> usesSynPreds) {
         if(g == null) return;
 
+        // Get the map first: it creates the DFA whose analysis was deferred
+        Map<String,DFA> lineColumnToLookaheadDFA = g.getLineColumnToLookaheadDFAMap();
+
         if(g.decisionsWhoseDFAsUsesSemPreds != null) {
             for(DFA dfa : g.decisionsWhoseDFAsUsesSemPreds) {
                 usesSemPreds.add(dfa.getDecisionNumber());
@@ -117,16 +142,29 @@ public class DecisionDFAEngine {
             }
         }
 
-        // Get the position information about each DFA decision
-        for(Integer lineIndex : lineIndexes) {
-            addPositions(lineIndex, g.getLookaheadDFAColumnsForLineInFile(lineIndex));
+        // Get the position information about each DFA decision in one pass over
+        // the "line:column" keys instead of scanning all the keys for each line
+        for(String position : lineColumnToLookaheadDFA.keySet()) {
+            int colon = position.indexOf(':');
+            if(colon == -1) continue;
+            try {
+                addPosition(Integer.parseInt(position.substring(0, colon)),
+                        Integer.parseInt(position.substring(colon + 1)));
+            } catch(NumberFormatException e) {
+                // ignore malformed position
+            }
         }
     }
 
-    public void addPositions(Integer line, List<Integer> columnsForLineInFile) {
-        if(columnsForLineInFile.isEmpty()) return;
-
-        decisionDFA.put(line, columnsForLineInFile);
+    private void addPosition(int line, int column) {
+        List<Integer> columns = discoveredDecisionDFA.get(line);
+        if(columns == null) {
+            columns = new ArrayList<Integer>();
+            discoveredDecisionDFA.put(line, columns);
+        }
+        if(!columns.contains(column)) {
+            columns.add(column);
+        }
     }
 
     public boolean isDecisionPointAroundLocation(int line, int column) {
@@ -62,6 +62,7 @@ public interface GrammarEngine {
     List<ElementRule> getDuplicateRules();
     ElementRule getRuleWithName(String name);
     ElementRule getRuleAtIndex(int index);
+    ElementRule getEnclosingRuleAtPosition(int position);
     List<String> getRuleNames();
 
     List<ElementReference> getReferences();
@@ -84,7 +85,12 @@ public interface GrammarEngine {
     String getGeneratedClassName(int type) throws Exception;
 
     int getFirstDeclarationPosition(String name);
+    List<ATEToken> getOccurrences(String name);
+    List<ElementReference> getReferencesInRule(ElementRule rule);
+    List<String> getRuleNamesStartingWith(String prefix);
     List<String> getGrammarsOverriddenByRule(String name);
+    Map<String, List<String>> getOverriddenRules();
+    void resetOverriddenRules();
     List<String> getGrammarsOverridingRule(String name);
 
     List<ATEToken> getTokens();
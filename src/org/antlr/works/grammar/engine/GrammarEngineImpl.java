@@ -9,10 +9,7 @@ import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.*;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /*
 
@@ -52,6 +49,9 @@ public class GrammarEngineImpl implements GrammarEngine {
     private GrammarEngine parent;
     private final List<GrammarEngine> importedEngines = new ArrayList<GrammarEngine>();
 
+    // Rule name -> grammars overriding it, computed once per parse of the hierarchy
+    private volatile Map<String, List<String>> overriddenRules;
+
     private final GrammarProperties properties = new GrammarPropertiesImpl();
     private final ANTLRGrammarEngine antlrEngine = new ANTLRGrammarEngineImpl();
     private final GrammarSyntaxEngine syntaxEngine = new GrammarSyntaxEngine();
@@ -142,6 +142,10 @@ public class GrammarEngineImpl implements GrammarEngine {
         return properties.getRuleAtIndex(index);
     }
 
+    public ElementRule getEnclosingRuleAtPosition(int position) {
+        return properties.getEnclosingRuleAtPosition(position);
+    }
+
     public List<String> getRuleNames() {
         return properties.getRuleNames();
     }
@@ -258,36 +262,89 @@ public class GrammarEngineImpl implements GrammarEngine {
         return properties.getFirstDeclarationPosition(name);
     }
 
+    /**
+     * Returns the tokens of the grammar having the same text as the specified name.
+     */
+    public List<ATEToken> getOccurrences(String name) {
+        return properties.getOccurrences(name);
+    }
+
+    public List<ElementReference> getReferencesInRule(ElementRule rule) {
+        return properties.getReferencesInRule(rule);
+    }
+
+    public List<String> getRuleNamesStartingWith(String prefix) {
+        return properties.getRuleNamesStartingWith(prefix);
+    }
+
     /**
      * Returns the list of grammars that overrides the rule specified
      * in parameter. Overrides has the same meaning than in Java: the rule
      * of a parent grammar is declared again in one or more child grammar.
      */
     public List<String> getGrammarsOverriddenByRule(String name) {
-        List<String> grammars = new ArrayList<String>();
+        List<String> grammars = getOverriddenRules().get(name);
+        if(grammars == null) {
+            return new ArrayList<String>();
+        } else {
+            return new ArrayList<String>(grammars);
+        }
+    }
+
+    /**
+     * Returns a map of each rule name declared in the imported grammars
+     * to the list of grammars declaring it, in the same order
+     * as they are returned by getGrammarsOverriddenByRule().
+     */
+    public Map<String, List<String>> getOverriddenRules() {
+        Map<String, List<String>> map = overriddenRules;
+        if(map == null) {
+            map = buildOverriddenRules();
+            overriddenRules = map;
+        }
+        return map;
+    }
+
+    private Map<String, List<String>> buildOverriddenRules() {
+        Map<String, List<String>> map = new HashMap<String, List<String>>();
         for(GrammarEngine child : importedEngines) {
+            Set<String> names = new HashSet<String>();
             for(ATEToken decl : child.getDecls()) {
-                if(decl.getAttribute().equals(name)) {
-                    grammars.add(child.getGrammarName());
-                    break;
+                if(names.add(decl.getAttribute())) {
+                    getGrammars(map, decl.getAttribute()).add(child.getGrammarName());
                 }
             }
-            grammars.addAll(child.getGrammarsOverriddenByRule(name));
+            for(Map.Entry<String, List<String>> entry : child.getOverriddenRules().entrySet()) {
+                getGrammars(map, entry.getKey()).addAll(entry.getValue());
+            }
+        }
+        return map;
+    }
+
+    private static List<String> getGrammars(Map<String, List<String>> map, String name) {
+        List<String> grammars = map.get(name);
+        if(grammars == null) {
+            grammars = new ArrayList<String>();
+            map.put(name, grammars);
         }
         return grammars;
     }
 
+    public void resetOverriddenRules() {
+        overriddenRules = null;
+        if(parent != null) {
+            parent.resetOverriddenRules();
+        }
+    }
+
     /**
      * Returns the list of grammars that this rule overrides.
      */
     public List<String> getGrammarsOverridingRule(String name) {
         List<String> grammars = new ArrayList<String>();
         if(parent != null) {
-            for(ATEToken decl : parent.getDecls()) {
-                if(decl.getAttribute().equals(name)) {
-                    grammars.add(parent.getGrammarName());
-                    break;
-                }
+            if(parent.getFirstDeclarationPosition(name) != -1) {
+                grammars.add(parent.getGrammarName());
             }
             grammars.addAll(parent.getGrammarsOverridingRule(name));
         }
@@ -318,6 +375,7 @@ public class GrammarEngineImpl implements GrammarEngine {
             // of the tree is checked separately
             alreadyVisitedEngines.remove(d);
         }
+        resetOverriddenRules();
         resetRules();
     }
 
@@ -335,6 +393,8 @@ public class GrammarEngineImpl implements GrammarEngine {
 
     public void parserCompleted() {
         properties.parserCompleted();
+        // the declarations changed
+        resetOverriddenRules();
     }
 
     public void updateAll() {
@@ -47,6 +47,7 @@ public interface GrammarProperties {
     List<ElementRule> getDuplicateRules();
     ElementRule getRuleWithName(String name);
     ElementRule getRuleAtIndex(int index);
+    ElementRule getEnclosingRuleAtPosition(int position);
     List<String> getRuleNames();
 
     List<ElementReference> getUndefinedReferences();
@@ -69,6 +70,9 @@ public interface GrammarProperties {
     int getNumberOfErrors();
 
     int getFirstDeclarationPosition(String name);
+    List<ATEToken> getOccurrences(String name);
+    List<ElementReference> getReferencesInRule(ElementRule rule);
+    List<String> getRuleNamesStartingWith(String prefix);
 
     int getType();
 
@@ -48,13 +48,22 @@ public class GrammarPropertiesImpl implements GrammarProperties {
 
     private ElementGrammarName name;
 
-    private final List<ElementRule> rules = new ArrayList<ElementRule>();
-    private final List<ElementGroup> groups = new ArrayList<ElementGroup>();
-    private final List<ElementBlock> blocks = new ArrayList<ElementBlock>();
-    private final List<ElementAction> actions = new ArrayList<ElementAction>();
-    private final List<ElementReference> references = new ArrayList<ElementReference>();
-    private final List<ElementImport> imports = new ArrayList<ElementImport>();
-    private final List<ATEToken> decls = new ArrayList<ATEToken>();
+    // These lists are replaced (and never modified) after each parsing so the
+    // readers in other threads always see a complete list
+    private volatile List<ElementRule> rules = new ArrayList<ElementRule>();
+    private volatile List<ElementGroup> groups = new ArrayList<ElementGroup>();
+    private volatile List<ElementBlock> blocks = new ArrayList<ElementBlock>();
+    private volatile List<ElementAction> actions = new ArrayList<ElementAction>();
+    private volatile List<ElementReference> references = new ArrayList<ElementReference>();
+    private volatile List<ElementImport> imports = new ArrayList<ElementImport>();
+    private volatile List<ATEToken> decls = new ArrayList<ATEToken>();
+    private volatile RulePositionIndex rulePositionIndex = new RulePositionIndex(rules);
+    private volatile SymbolIndex symbolIndex = new SymbolIndex(null, decls, rules, references);
+
+    // Symbol table built after each parsing: the rules by name (first declaration wins)
+    // and every name that can be referenced (rules, declared tokens and predefined references)
+    private volatile Map<String, ElementRule> rulesByName = new HashMap<String, ElementRule>();
+    private volatile Set<String> symbols = new HashSet<String>();
 
     private final List<ElementRule> duplicateRules = new ArrayList<ElementRule>();
     private final List<ElementReference> undefinedReferences = new ArrayList<ElementReference>();
@@ -86,12 +95,7 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     public ElementRule getRuleWithName(String name) {
-        List<ElementRule> rules = getRules();
-        for (ElementRule r : rules) {
-            if (r.name.equals(name))
-                return r;
-        }
-        return null;
+        return rulesByName.get(name);
     }
 
     public List<ElementGroup> getGroups() {
@@ -154,7 +158,7 @@ public class GrammarPropertiesImpl implements GrammarProperties {
         return getType() == ElementGrammarName.TREEPARSER;
     }
 
-    private List<String> getDeclaredTokenNames() {
+    private List<String> getDeclaredTokenNames(List<ElementBlock> blocks) {
         List<String> names = new ArrayList<String>();
         if(blocks != null) {
             for (ElementBlock block : blocks) {
@@ -191,6 +195,10 @@ public class GrammarPropertiesImpl implements GrammarProperties {
         return names;
     }
 
+    public ElementRule getEnclosingRuleAtPosition(int position) {
+        return rulePositionIndex.getRuleAtPosition(position);
+    }
+
     public synchronized ElementRule getRuleAtIndex(int index) {
         if(index < 0 || index >= rules.size())
             return null;
@@ -333,24 +341,24 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     private void rebuildUndefinedReferencesList() {
-        List<String> existingReferences = getRuleNames();
-        existingReferences.addAll(getDeclaredTokenNames());
-        existingReferences.addAll(getPredefinedReferences());
+        Set<String> symbols = this.symbols;
 
         Set<String> tokenVocabNames = getTokenVocabNames();
-        existingReferences.addAll(tokenVocabNames);
         syntaxEngine.resolveReferencesWithExternalNames(tokenVocabNames);
 
+        Map<String, List<String>> overriddenRules = engine.getOverriddenRules();
+        // also check from the root grammar
+        Map<String, List<String>> rootOverriddenRules = engine.getRootEngine().getOverriddenRules();
+
         undefinedReferences.clear();
         List<ElementReference> references = getReferences();
         if(references == null)
             return;
 
         for (ElementReference ref : references) {
-            if (existingReferences.contains(ref.token.getAttribute())) continue;
-            if (!engine.getGrammarsOverriddenByRule(ref.token.getAttribute()).isEmpty()) continue;
-            // also check from the root grammar
-            if (!engine.getRootEngine().getGrammarsOverriddenByRule(ref.token.getAttribute()).isEmpty()) continue;
+            String name = ref.token.getAttribute();
+            if (symbols.contains(name) || tokenVocabNames.contains(name)) continue;
+            if (overriddenRules.containsKey(name) || rootOverriddenRules.containsKey(name)) continue;
             undefinedReferences.add(ref);
         }
     }
@@ -367,32 +375,36 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     private void update(GrammarSyntaxParser parser) {
-        rules.clear();
-        rules.addAll(parser.rules);
-
-        groups.clear();
-        groups.addAll(parser.groups);
-
-        blocks.clear();
-        blocks.addAll(parser.blocks);
-
-        actions.clear();
-        actions.addAll(parser.actions);
-
-        references.clear();
-        references.addAll(parser.references);
-
-        imports.clear();
-        imports.addAll(parser.imports);
-
-        decls.clear();
-        decls.addAll(parser.decls);
-
-        this.name = parser.getName();
-
+        List<ElementRule> rules = new ArrayList<ElementRule>(parser.rules);
         for(ElementRule r : rules) {
             r.setEngine(engine);
         }
+        this.rules = rules;
+        this.rulePositionIndex = new RulePositionIndex(rules);
+
+        List<ElementBlock> blocks = new ArrayList<ElementBlock>(parser.blocks);
+        Map<String, ElementRule> rulesByName = new HashMap<String, ElementRule>();
+        Set<String> symbols = new HashSet<String>();
+        for(ElementRule r : rules) {
+            if(!rulesByName.containsKey(r.name)) {
+                rulesByName.put(r.name, r);
+            }
+            symbols.add(r.name);
+        }
+        symbols.addAll(getDeclaredTokenNames(blocks));
+        symbols.addAll(getPredefinedReferences());
+        this.rulesByName = rulesByName;
+        this.symbols = symbols;
+
+        groups = new ArrayList<ElementGroup>(parser.groups);
+        this.blocks = blocks;
+        actions = new ArrayList<ElementAction>(parser.actions);
+        references = new ArrayList<ElementReference>(parser.references);
+        imports = new ArrayList<ElementImport>(parser.imports);
+        decls = new ArrayList<ATEToken>(parser.decls);
+        symbolIndex = new SymbolIndex(parser.getTokens(), decls, rules, references);
+
+        this.name = parser.getName();
     }
 
     public List<String> getAllGeneratedNames() throws Exception {
@@ -416,7 +428,7 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     public int getFirstDeclarationPosition(String name) {
-        ATEToken token = getFirstDeclaration(name);
+        ATEToken token = symbolIndex.getFirstDeclaration(name);
         if(token != null) {
             return token.start;
         } else {
@@ -424,13 +436,16 @@ public class GrammarPropertiesImpl implements GrammarProperties {
         }
     }
 
-    private ATEToken getFirstDeclaration(String name) {
-        for(ATEToken decl : getDecls()) {
-            if(decl.getAttribute().equals(name)) {
-                return decl;
-            }
-        }
-        return null;
+    public List<ATEToken> getOccurrences(String name) {
+        return symbolIndex.getOccurrences(name);
+    }
+
+    public List<ElementReference> getReferencesInRule(ElementRule rule) {
+        return symbolIndex.getReferencesInRule(rule);
+    }
+
+    public List<String> getRuleNamesStartingWith(String prefix) {
+        return symbolIndex.getRuleNamesStartingWith(prefix);
     }
 
 }
\ No newline at end of file
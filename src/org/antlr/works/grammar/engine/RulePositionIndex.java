@@ -0,0 +1,104 @@
+package org.antlr.works.grammar.engine;
+
+import org.antlr.works.grammar.element.ElementRule;
+
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Index of the rules by position in the text. The rules produced by the parser
+ * do not overlap, so the enclosing rule of a position is found by a binary search
+ * over the start index of the rules. The index is rebuilt after each parsing.
+ */
+class RulePositionIndex {
+
+    private final ElementRule[] rules;
+    private final int[] starts;
+    private final int[] ends;
+
+    public RulePositionIndex(List<ElementRule> rules) {
+        this.rules = rules.toArray(new ElementRule[rules.size()]);
+        this.starts = new int[this.rules.length];
+        this.ends = new int[this.rules.length];
+
+        int previousStart = Integer.MIN_VALUE;
+        boolean sorted = true;
+        for(int i=0; i<this.rules.length; i++) {
+            starts[i] = this.rules[i].getStartIndex();
+            ends[i] = this.rules[i].getEndIndex();
+            sorted &= starts[i] >= previousStart;
+            previousStart = starts[i];
+        }
+        if(!sorted) {
+            sort();
+        }
+    }
+
+    /** Returns the rule containing the position (inclusive of its end index) or null */
+    public ElementRule getRuleAtPosition(int position) {
+        int low = 0;
+        int high = starts.length - 1;
+        int candidate = -1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(starts[mid] <= position) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if(candidate != -1 && position <= ends[candidate]) {
+            return rules[candidate];
+        } else {
+            return null;
+        }
+    }
+
+    private void sort() {
+        // Insertion sort: the rules are almost always already sorted
+        for(int i=1; i<rules.length; i++) {
+            ElementRule rule = rules[i];
+            int start = starts[i];
+            int end = ends[i];
+            int j = i - 1;
+            while(j >= 0 && starts[j] > start) {
+                rules[j+1] = rules[j];
+                starts[j+1] = starts[j];
+                ends[j+1] = ends[j];
+                j--;
+            }
+            rules[j+1] = rule;
+            starts[j+1] = start;
+            ends[j+1] = end;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.antlr.works.grammar.engine;
+
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.element.ElementReference;
+import org.antlr.works.grammar.element.ElementRule;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Index of the symbols of the grammar by name: the declarations, the tokens having the
+ * same text (used by Find Usages), the references of each rule and the rule names sorted
+ * for a prefix search. Like RulePositionIndex, the index is rebuilt after each parsing and
+ * never modified, so it can be read from any thread.
+ */
+class SymbolIndex {
+
+    private final Map<String, ATEToken> declarations = new HashMap<String, ATEToken>();
+    private final Map<String, List<ATEToken>> occurrences = new HashMap<String, List<ATEToken>>();
+    private final Map<ElementRule, List<ElementReference>> references = new IdentityHashMap<ElementRule, List<ElementReference>>();
+
+    /** The rule names by lower case name and the position of the first declaration of each name */
+    private final SortedMap<String, List<String>> ruleNames = new TreeMap<String, List<String>>();
+    private final Map<String, Integer> ruleOrder = new HashMap<String, Integer>();
+
+    public SymbolIndex(List<ATEToken> tokens, List<ATEToken> decls, List<ElementRule> rules, List<ElementReference> refs) {
+        for(ATEToken decl : decls) {
+            // The first declaration wins
+            if(!declarations.containsKey(decl.getAttribute())) {
+                declarations.put(decl.getAttribute(), decl);
+            }
+        }
+
+        if(tokens != null) {
+            for(ATEToken token : tokens) {
+                get(occurrences, token.getAttribute()).add(token);
+            }
+        }
+
+        for(ElementReference ref : refs) {
+            get(references, ref.rule).add(ref);
+        }
+
+        for(ElementRule rule : rules) {
+            if(ruleOrder.containsKey(rule.name)) continue;
+
+            ruleOrder.put(rule.name, ruleOrder.size());
+            get(ruleNames, rule.name.toLowerCase()).add(rule.name);
+        }
+    }
+
+    public ATEToken getFirstDeclaration(String name) {
+        return declarations.get(name);
+    }
+
+    /** Returns the tokens having the specified text, in the order of the text */
+    public List<ATEToken> getOccurrences(String name) {
+        List<ATEToken> tokens = occurrences.get(name);
+        if(tokens == null) {
+            return Collections.emptyList();
+        } else {
+            return Collections.unmodifiableList(tokens);
+        }
+    }
+
+    public List<ElementReference> getReferencesInRule(ElementRule rule) {
+        List<ElementReference> refs = references.get(rule);
+        if(refs == null) {
+            return new ArrayList<ElementReference>();
+        } else {
+            return new ArrayList<ElementReference>(refs);
+        }
+    }
+
+    /** Returns the name of the rules starting with the specified lower case prefix,
+     * in the order of their declaration.
+     */
+    public List<String> getRuleNamesStartingWith(String prefix) {
+        List<String> names = new ArrayList<String>();
+        for(List<String> sameNames : ruleNames.subMap(prefix, prefix+Character.MAX_VALUE).values()) {
+            names.addAll(sameNames);
+        }
+        Collections.sort(names, new Comparator<String>() {
+            public int compare(String n1, String n2) {
+                return ruleOrder.get(n1) - ruleOrder.get(n2);
+            }
+        });
+        return names;
+    }
+
+    private static <K,V> List<V> get(Map<K, List<V>> map, K key) {
+        List<V> list = map.get(key);
+        if(list == null) {
+            list = new ArrayList<V>();
+            map.put(key, list);
+        }
+        return list;
+    }
+}
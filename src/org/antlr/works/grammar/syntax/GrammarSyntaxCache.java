@@ -0,0 +1,318 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.syntax;
+
+import org.antlr.Tool;
+import org.antlr.works.IDE;
+import org.antlr.works.grammar.antlr.GrammarError;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.stats.StatisticsManager;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * This class caches on disk the warnings and errors of the last analysis of a grammar with the name
+ * and range of its rules. An entry is identified by the content of the grammar and the version of
+ * ANTLRWorks and ANTLR: a grammar that is opened again without modification displays its warnings
+ * as soon as it is parsed, without waiting for the analysis.
+ *
+ * The methods load() and store() access the disk: they must not be invoked from the event dispatch thread.
+ */
+public class GrammarSyntaxCache {
+
+    public static final String CACHE_DIR = "cache";
+    public static final String CACHE_EXTENSION = ".syntax";
+
+    /** Maximum number of entries kept on disk (the least recently used are removed first) */
+    public static final int MAX_ENTRIES = 50;
+
+    private static final int MAGIC = 0x41574353;
+    private static final int FORMAT_VERSION = 1;
+
+    private static String antlrVersion;
+
+    /** Returns the cached entry of the text or null if the text is not in the cache */
+    public static Entry load(String text) {
+        File file = getFile(text);
+        if(file == null || !file.exists())
+            return null;
+
+        Entry entry = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                entry = Entry.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // The entry is corrupted or has been written by an incompatible version
+        }
+
+        if(entry == null) {
+            file.delete();
+            return null;
+        }
+
+        file.setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    /** Stores the entry of the text. An entry without warnings is not stored. */
+    public static void store(String text, Entry entry) {
+        if(entry.warnings.isEmpty())
+            return;
+
+        File file = getFile(text);
+        if(file == null)
+            return;
+
+        if(file.exists()) {
+            // The content is already cached and its analysis is always the same
+            file.setLastModified(System.currentTimeMillis());
+            return;
+        }
+
+        File dir = file.getParentFile();
+        if(!dir.exists() && !dir.mkdirs())
+            return;
+
+        // Write the entry in a temporary file first so a partial entry is never read
+        File temp = new File(dir, file.getName()+"~");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                entry.write(out);
+            } finally {
+                out.close();
+            }
+            if(!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization: the grammar is analyzed again the next time it is opened
+            temp.delete();
+        }
+
+        purge(dir);
+    }
+
+    private static void purge(File dir) {
+        File[] files = dir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(CACHE_EXTENSION);
+            }
+        });
+        if(files == null || files.length <= MAX_ENTRIES)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for(int i=0; i<files.length-MAX_ENTRIES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static File getFile(String text) {
+        String key = getKey(text);
+        if(key == null)
+            return null;
+        return new File(StatisticsManager.getAbsoluteFileName(CACHE_DIR), key+CACHE_EXTENSION);
+    }
+
+    private static String getKey(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(IDE.VERSION.getBytes("UTF-8"));
+            digest.update(getAntlrVersion().getBytes("UTF-8"));
+            digest.update(text.getBytes("UTF-8"));
+
+            StringBuilder key = new StringBuilder();
+            for(byte b : digest.digest()) {
+                key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+
+    private static synchronized String getAntlrVersion() {
+        if(antlrVersion == null) {
+            antlrVersion = new Tool().VERSION;
+        }
+        return antlrVersion;
+    }
+
+    public static class Entry {
+
+        private final List<Range> rules = new ArrayList<Range>();
+        private final List<Warning> warnings = new ArrayList<Warning>();
+
+        private Entry() {
+        }
+
+        /** Creates an entry with the warnings and errors currently set on the rules. Must be invoked
+         * from the thread that updates the rules.
+         */
+        public static Entry create(List<ElementRule> rules) {
+            Entry entry = new Entry();
+            for(int index=0; index<rules.size(); index++) {
+                ElementRule rule = rules.get(index);
+                entry.rules.add(new Range(rule.name, rule.start.start, rule.end.end));
+                if(!rule.hasErrors()) continue;
+
+                for(GrammarError error : rule.getErrors()) {
+                    entry.warnings.add(new Warning(index, error.line, error.messageText));
+                }
+            }
+            return entry;
+        }
+
+        public boolean hasWarnings() {
+            return !warnings.isEmpty();
+        }
+
+        /** Sets the cached warnings on the rules, unless the rules are not the cached ones or
+         * they have already been analyzed. Returns true if the warnings have been set.
+         */
+        public boolean restore(List<ElementRule> rules) {
+            if(rules.size() != this.rules.size())
+                return false;
+
+            for(int index=0; index<rules.size(); index++) {
+                ElementRule rule = rules.get(index);
+                if(!this.rules.get(index).matches(rule) || rule.getErrors() != null)
+                    return false;
+            }
+
+            Map<ElementRule,List<GrammarError>> errors = new HashMap<ElementRule, List<GrammarError>>();
+            for(Warning warning : warnings) {
+                ElementRule rule = rules.get(warning.rule);
+                List<GrammarError> ruleErrors = errors.get(rule);
+                if(ruleErrors == null) {
+                    ruleErrors = new ArrayList<GrammarError>();
+                    errors.put(rule, ruleErrors);
+                }
+                GrammarError error = new GrammarError();
+                error.setLine(warning.line);
+                error.setMessageText(warning.messageText);
+                ruleErrors.add(error);
+            }
+            for(ElementRule rule : errors.keySet()) {
+                rule.setErrors(errors.get(rule));
+                // The paths of the errors can only be computed by the next analysis
+                rule.setNeedsToBuildErrors(false);
+            }
+            return true;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(rules.size());
+            for(Range range : rules) {
+                out.writeUTF(range.name);
+                out.writeInt(range.start);
+                out.writeInt(range.end);
+            }
+            out.writeInt(warnings.size());
+            for(Warning warning : warnings) {
+                out.writeInt(warning.rule);
+                out.writeInt(warning.line);
+                out.writeUTF(warning.messageText);
+            }
+        }
+
+        private static Entry read(DataInputStream in) throws IOException {
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+                return null;
+
+            Entry entry = new Entry();
+            int count = in.readInt();
+            for(int index=0; index<count; index++) {
+                entry.rules.add(new Range(in.readUTF(), in.readInt(), in.readInt()));
+            }
+            count = in.readInt();
+            for(int index=0; index<count; index++) {
+                Warning warning = new Warning(in.readInt(), in.readInt(), in.readUTF());
+                if(warning.rule < 0 || warning.rule >= entry.rules.size())
+                    return null;
+                entry.warnings.add(warning);
+            }
+            if(in.read() != -1)
+                return null;
+
+            return entry;
+        }
+    }
+
+    private static class Range {
+
+        public final String name;
+        public final int start;
+        public final int end;
+
+        public Range(String name, int start, int end) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean matches(ElementRule rule) {
+            return name.equals(rule.name) && start == rule.start.start && end == rule.end.end;
+        }
+    }
+
+    private static class Warning {
+
+        public final int rule;
+        public final int line;
+        public final String messageText;
+
+        public Warning(int rule, int line, String messageText) {
+            this.rule = rule;
+            this.line = line;
+            this.messageText = messageText;
+        }
+    }
+}
@@ -268,7 +268,7 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
 
     public void run() {
         try {
-            window.getGrammarEngine().analyze();
+            window.getAnalysisScheduler().analyze();
             process();
         } catch(Exception e) {
             window.consoleTab.println(e);
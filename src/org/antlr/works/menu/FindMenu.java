@@ -3,7 +3,11 @@ package org.antlr.works.menu;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.find.Usages;
 import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.stats.StatisticsAW;
+
+import java.util.ArrayList;
+import java.util.List;
 /*
 
 [The "BSD licence"]
@@ -73,13 +77,14 @@ public class FindMenu {
         Usages usage = new Usages(delegate, token);
         delegate.addUsagesTab(usage);
 
-        for (ATEToken ateToken : delegate.getTokens()) {
-            if (ateToken.getAttribute().equals(token.getAttribute())) {
-                ElementRule matchedRule = delegate.getEditorRules().getEnclosingRuleAtPosition(ateToken.getStartIndex());
-                if (matchedRule != null)
-                    usage.addMatch(matchedRule, ateToken);
-            }
+        List<Usages.UsageMatch> matches = new ArrayList<Usages.UsageMatch>();
+        GrammarEngine engine = delegate.getEditorRules().getGrammarEngine();
+        for (ATEToken ateToken : engine.getOccurrences(token.getAttribute())) {
+            ElementRule matchedRule = engine.getEnclosingRuleAtPosition(ateToken.getStartIndex());
+            if (matchedRule != null)
+                matches.add(new Usages.UsageMatch(matchedRule, ateToken));
         }
+        usage.addMatches(matches);
     }
 
 }
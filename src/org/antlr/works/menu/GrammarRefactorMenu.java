@@ -3,8 +3,8 @@ package org.antlr.works.menu;
 import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.grammar.EditListMutator;
 import org.antlr.works.grammar.RefactorEngine;
-import org.antlr.works.grammar.RefactorMutator;
 import org.antlr.works.grammar.element.ElementReference;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.prefs.AWPrefs;
@@ -14,7 +14,7 @@ import org.antlr.xjlib.appkit.undo.XJUndo;
 import org.antlr.xjlib.appkit.utils.XJAlert;
 
 import javax.swing.*;
-import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.text.BadLocationException;
 import java.awt.*;
 import java.util.List;
 /*
@@ -442,76 +442,25 @@ public class GrammarRefactorMenu implements ActionRefactor {
         window.endGroupChange();
     }
 
-    protected void refactorReplaceEditorText(String text) {
-        int oldCaretPosition = window.getCaretPosition();
-        window.disableTextPaneUndo();
-        window.setText(text);
-        window.enableTextPaneUndo();
-        window.getTextEditor().setCaretPosition(Math.min(oldCaretPosition, text.length()), false, false);
-    }
-
-    public class EditorTextMutator implements RefactorMutator {
-
-        public StringBuilder mutableText;
+    public class EditorTextMutator extends EditListMutator {
 
         public EditorTextMutator() {
-            mutableText = new StringBuilder(window.getText());
-        }
-
-        public void replace(int start, int end, String s) {
-            mutableText.replace(start, end, s);
-        }
-
-        public void insert(int index, String s) {
-            mutableText.insert(index, s);
-        }
-
-        public void insertAtLinesBoundary(int index, String s) {
-            if(!(mutableText.charAt(index) == '\n' && mutableText.charAt(index-1) == '\n')) {
-                mutableText.insert(index++, '\n');
-            }
-            mutableText.insert(index, s);
-            int end = index+s.length();
-            if(!(mutableText.charAt(end) == '\n' && end+1 < mutableText.length() && mutableText.charAt(end+1) == '\n'))
-            {
-                mutableText.insert(end, '\n');
-            }
-        }
-
-        public void delete(int start, int end) {
-            mutableText.delete(start, end);
+            super(window.getText());
         }
 
         public void apply() {
-            String text = mutableText.toString();
-            String oldContent = window.getText();
-
-            refactorReplaceEditorText(text);
+            if(!hasEdits())
+                return;
 
             XJUndo undo = window.getUndo(window.getTextPane());
-            undo.addEditEvent(new UndoableRefactoringEdit(oldContent, text));
-        }
-
-    }
-
-    protected class UndoableRefactoringEdit extends AbstractUndoableEdit {
-
-        public String oldContent;
-        public String newContent;
-
-        public UndoableRefactoringEdit(String oldContent, String newContent) {
-            this.oldContent = oldContent;
-            this.newContent = newContent;
-        }
-
-        public void redo() {
-            super.redo();
-            refactorReplaceEditorText(newContent);
-        }
-
-        public void undo() {
-            super.undo();
-            refactorReplaceEditorText(oldContent);
+            window.disableTextPaneUndo();
+            try {
+                undo.addEditEvent(apply(window.getTextEditor(), undo));
+            } catch (BadLocationException e) {
+                XJAlert.display(window.getJavaContainer(), "Cannot Refactor", "The refactoring cannot be applied to the text: "+e.getMessage());
+            } finally {
+                window.enableTextPaneUndo();
+            }
         }
     }
 
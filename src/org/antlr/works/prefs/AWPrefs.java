@@ -153,15 +153,15 @@ public class AWPrefs {
     }
 
     public static Color getSyntaxColor(String identifier) {
-        return getPreferences().getColor(getSyntaxColorKey(identifier), getSyntaxDefaultColor(identifier));
+        return getSnapshot().getSyntaxColor(identifier);
     }
 
     public static boolean getSyntaxBold(String identifier) {
-        return getPreferences().getBoolean(getSyntaxBoldKey(identifier), getSyntaxDefaultBold(identifier));
+        return getSnapshot().getSyntaxBold(identifier);
     }
 
     public static boolean getSyntaxItalic(String identifier) {
-        return getPreferences().getBoolean(getSyntaxItalicKey(identifier), getSyntaxDefaultItalic(identifier));
+        return getSnapshot().getSyntaxItalic(identifier);
     }
 
     // Compiler
@@ -236,6 +236,9 @@ public class AWPrefs {
 
     public static final String PREF_CLEAR_CONSOLE_BEFORE_CHECK = "PREF_CLEAR_CONSOLE_BEFORE_CHECK";
 
+    public static final String PREF_CONSOLE_MAX_LINES = "PREF_CONSOLE_MAX_LINES";
+    public static final int DEFAULT_CONSOLE_MAX_LINES = 10000;
+
     // Test Rig
     public static final String PREF_TEST_RIG_TEXT = "PREF_TEST_RIG_TEXT";
     public static final String PREF_TEST_RIG_CLASS = "PREF_TEST_RIG_CLASS";
@@ -294,19 +297,19 @@ public class AWPrefs {
     }
 
     public static boolean getDebugVerbose() {
-        return getPreferences().getBoolean(PREF_DEBUG_VERBOSE, false);
+        return getSnapshot().getDebugVerbose();
     }
 
     public static boolean getDebugDontOptimizeNFA() {
-        return getPreferences().getBoolean(PREF_DEBUG_DONT_OPTIMIZE_NFA, false);
+        return getSnapshot().getDebugDontOptimizeNFA();
     }
 
     public static int getDebugDefaultLocalPort() {
-        return getPreferences().getInt(PREF_DEBUG_LOCALPORT, DEFAULT_DEBUG_LOCALPORT);
+        return getSnapshot().getDebugDefaultLocalPort();
     }
 
     public static int getDebugLaunchTimeout() {
-        return getPreferences().getInt(PREF_DEBUG_LAUNCHTIMEOUT, DEFAULT_DEBUG_LAUNCHTIMEOUT);
+        return getSnapshot().getDebugLaunchTimeout();
     }
 
     public static void setOutputPath(String path) {
@@ -346,47 +349,47 @@ public class AWPrefs {
     }
 
     public static boolean getHighlightCursorEnabled() {
-        return getPreferences().getBoolean(PREF_HIGHLIGHTCURSORLINE, true);
+        return getSnapshot().getHighlightCursorEnabled();
     }
 
     public static int getEditorTabSize() {
-        return getPreferences().getInt(PREF_TAB_WIDTH, DEFAULT_TAB_WIDTH);
+        return getSnapshot().getEditorTabSize();
     }
 
     public static String getEditorFont() {
-        return getPreferences().getString(PREF_EDITOR_FONT, DEFAULT_EDITOR_FONT);
+        return getSnapshot().getEditorFont();
     }
 
     public static int getEditorFontSize() {
-        return getPreferences().getInt(PREF_EDITOR_FONT_SIZE, DEFAULT_EDITOR_FONT_SIZE);
+        return getSnapshot().getEditorFontSize();
     }
 
     public static boolean getSmoothScrolling() {
-        return getPreferences().getBoolean(PREF_SMOOTH_SCROLLING, DEFAULT_SMOOTH_SCROLLING);
+        return getSnapshot().getSmoothScrolling();
     }
 
     public static boolean getFoldingEnabled() {
-        return getPreferences().getBoolean(PREF_EDITOR_FOLDING, DEFAULT_EDITOR_FOLDING);
+        return getSnapshot().getFoldingEnabled();
     }
 
     public static boolean getDisplayActionsAnchorsFolding() {
-        return getPreferences().getBoolean(PREF_ACTIONS_ANCHORS_FOLDING, DEFAULT_ACTIONS_ANCHORS_FOLDING);
+        return getSnapshot().getDisplayActionsAnchorsFolding();
     }
 
     public static boolean autoIndentColonInRule() {
-        return getPreferences().getBoolean(PREF_AUTO_IDENT_COLON_RULE, true);
+        return getSnapshot().autoIndentColonInRule();
     }
 
     public static boolean getLineNumberEnabled() {
-        return getPreferences().getBoolean(PREF_LINE_NUMBER, false);
+        return getSnapshot().getLineNumberEnabled();
     }
 
     public static boolean isVStyleAutoCompletion() {
-        return getPreferences().getBoolean(PREF_VSTYLE_AUTOCOMPLETION, false);
+        return getSnapshot().isVStyleAutoCompletion();
     }
 
     public static int getParserDelay() {
-        return getPreferences().getInt(PREF_PARSER_DELAY, DEFAULT_PARSER_DELAY);
+        return getSnapshot().getParserDelay();
     }
 
     public static void setLookAndFeel(String name) {
@@ -511,37 +514,71 @@ public class AWPrefs {
     }
 
     public static Color getNonConsumedTokenColor() {
-        return getPreferences().getColor(PREF_NONCONSUMED_TOKEN_COLOR, DEFAULT_NONCONSUMED_TOKEN_COLOR);
+        return getSnapshot().getNonConsumedTokenColor();
     }
 
     public static Color getConsumedTokenColor() {
-        return getPreferences().getColor(PREF_CONSUMED_TOKEN_COLOR, DEFAULT_CONSUMED_TOKEN_COLOR);
+        return getSnapshot().getConsumedTokenColor();
     }
 
     public static Color getHiddenTokenColor() {
-        return getPreferences().getColor(PREF_HIDDEN_TOKEN_COLOR, DEFAULT_HIDDEN_TOKEN_COLOR);
+        return getSnapshot().getHiddenTokenColor();
     }
 
     public static Color getDeadTokenColor() {
-        return getPreferences().getColor(PREF_DEAD_TOKEN_COLOR, DEFAULT_DEAD_TOKEN_COLOR);
+        return getSnapshot().getDeadTokenColor();
     }
 
     public static Color getLookaheadTokenColor() {
-        return getPreferences().getColor(PREF_LOOKAHEAD_TOKEN_COLOR, DEFAULT_LOOKAHEAD_TOKEN_COLOR);
+        return getSnapshot().getLookaheadTokenColor();
     }
 
     public static boolean getDetachableChildren() {
-        return getPreferences().getBoolean(PREF_DETACHABLE_CHILDREN, DEFAULT_DETACHABLE_CHILDREN);
+        return getSnapshot().getDetachableChildren();
     }
 
     public static boolean getDebuggerAskGen() {
-        return getPreferences().getBoolean(PREF_DEBUGGER_ASK_GEN, DEFAULT_DEBUGGER_ASK_GEN);
+        return getSnapshot().getDebuggerAskGen();
     }
 
     public static XJPreferences getPreferences() {
         return XJApplication.shared().getPreferences();
     }
 
+    private static final Object snapshotLock = new Object();
+    private static volatile AWPrefsSnapshot snapshot;
+
+    /** Returns the preferences used while rendering, parsing or debugging. The snapshot
+     * is only created again when the preferences are applied (see refreshSnapshot).
+     */
+    public static AWPrefsSnapshot getSnapshot() {
+        AWPrefsSnapshot s = snapshot;
+        if(s == null) {
+            synchronized(snapshotLock) {
+                s = snapshot;
+                if(s == null) {
+                    snapshot = s = new AWPrefsSnapshot(getPreferences(), 0);
+                }
+            }
+        }
+        return s;
+    }
+
+    /** Called by the preferences dialog before posting NOTIF_PREFS_APPLIED, so the observers
+     * of the notification already see the new values.
+     */
+    public static void refreshSnapshot() {
+        synchronized(snapshotLock) {
+            AWPrefsSnapshot s = snapshot;
+            snapshot = new AWPrefsSnapshot(getPreferences(), s == null ? 0 : s.getVersion()+1);
+        }
+    }
+
+    /** Returns the number of values read from the backing store so far */
+    public static long getBackingStoreReadCount() {
+        return getPreferences().getReadCount();
+    }
+
     public static void setLastSavedDocument(String filePath) {
         if(filePath != null)
             getPreferences().setString(PREF_LAST_SAVED_DOCUMENT, filePath);
@@ -651,4 +688,9 @@ public class AWPrefs {
     public static boolean isClearConsoleBeforeCheckGrammar() {
         return getPreferences().getBoolean(PREF_CLEAR_CONSOLE_BEFORE_CHECK, false);
     }
+
+    /** Maximum number of lines kept in the console: the oldest lines are discarded */
+    public static int getConsoleMaxLines() {
+        return getPreferences().getInt(PREF_CONSOLE_MAX_LINES, DEFAULT_CONSOLE_MAX_LINES);
+    }
 }
@@ -0,0 +1,218 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.prefs;
+
+import org.antlr.xjlib.appkit.app.XJPreferences;
+
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Immutable copy of the preferences read while rendering, parsing or debugging.
+ * A new snapshot is created each time the preferences are applied, so these
+ * values never have to be read again from the backing store in between.
+ */
+public class AWPrefsSnapshot {
+
+    private final int version;
+
+    private final boolean highlightCursorEnabled;
+    private final int editorTabSize;
+    private final String editorFont;
+    private final int editorFontSize;
+    private final boolean smoothScrolling;
+    private final boolean foldingEnabled;
+    private final boolean displayActionsAnchorsFolding;
+    private final boolean autoIndentColonInRule;
+    private final boolean lineNumberEnabled;
+    private final boolean vstyleAutoCompletion;
+    private final int parserDelay;
+
+    private final Map<String,Color> syntaxColor = new HashMap<String, Color>();
+    private final Map<String,Boolean> syntaxBold = new HashMap<String, Boolean>();
+    private final Map<String,Boolean> syntaxItalic = new HashMap<String, Boolean>();
+
+    private final boolean debugVerbose;
+    private final boolean debugDontOptimizeNFA;
+    private final int debugDefaultLocalPort;
+    private final int debugLaunchTimeout;
+    private final Color nonConsumedTokenColor;
+    private final Color consumedTokenColor;
+    private final Color hiddenTokenColor;
+    private final Color deadTokenColor;
+    private final Color lookaheadTokenColor;
+    private final boolean detachableChildren;
+    private final boolean debuggerAskGen;
+
+    public AWPrefsSnapshot(XJPreferences prefs, int version) {
+        this.version = version;
+
+        highlightCursorEnabled = prefs.getBoolean(AWPrefs.PREF_HIGHLIGHTCURSORLINE, true);
+        editorTabSize = prefs.getInt(AWPrefs.PREF_TAB_WIDTH, AWPrefs.DEFAULT_TAB_WIDTH);
+        editorFont = prefs.getString(AWPrefs.PREF_EDITOR_FONT, AWPrefs.DEFAULT_EDITOR_FONT);
+        editorFontSize = prefs.getInt(AWPrefs.PREF_EDITOR_FONT_SIZE, AWPrefs.DEFAULT_EDITOR_FONT_SIZE);
+        smoothScrolling = prefs.getBoolean(AWPrefs.PREF_SMOOTH_SCROLLING, AWPrefs.DEFAULT_SMOOTH_SCROLLING);
+        foldingEnabled = prefs.getBoolean(AWPrefs.PREF_EDITOR_FOLDING, AWPrefs.DEFAULT_EDITOR_FOLDING);
+        displayActionsAnchorsFolding = prefs.getBoolean(AWPrefs.PREF_ACTIONS_ANCHORS_FOLDING, AWPrefs.DEFAULT_ACTIONS_ANCHORS_FOLDING);
+        autoIndentColonInRule = prefs.getBoolean(AWPrefs.PREF_AUTO_IDENT_COLON_RULE, true);
+        lineNumberEnabled = prefs.getBoolean(AWPrefs.PREF_LINE_NUMBER, false);
+        vstyleAutoCompletion = prefs.getBoolean(AWPrefs.PREF_VSTYLE_AUTOCOMPLETION, false);
+        parserDelay = prefs.getInt(AWPrefs.PREF_PARSER_DELAY, AWPrefs.DEFAULT_PARSER_DELAY);
+
+        for(String identifier : AWPrefs.color.keySet()) {
+            syntaxColor.put(identifier, prefs.getColor(AWPrefs.getSyntaxColorKey(identifier), AWPrefs.getSyntaxDefaultColor(identifier)));
+            syntaxBold.put(identifier, prefs.getBoolean(AWPrefs.getSyntaxBoldKey(identifier), AWPrefs.getSyntaxDefaultBold(identifier)));
+            syntaxItalic.put(identifier, prefs.getBoolean(AWPrefs.getSyntaxItalicKey(identifier), AWPrefs.getSyntaxDefaultItalic(identifier)));
+        }
+
+        debugVerbose = prefs.getBoolean(AWPrefs.PREF_DEBUG_VERBOSE, false);
+        debugDontOptimizeNFA = prefs.getBoolean(AWPrefs.PREF_DEBUG_DONT_OPTIMIZE_NFA, false);
+        debugDefaultLocalPort = prefs.getInt(AWPrefs.PREF_DEBUG_LOCALPORT, AWPrefs.DEFAULT_DEBUG_LOCALPORT);
+        debugLaunchTimeout = prefs.getInt(AWPrefs.PREF_DEBUG_LAUNCHTIMEOUT, AWPrefs.DEFAULT_DEBUG_LAUNCHTIMEOUT);
+        nonConsumedTokenColor = prefs.getColor(AWPrefs.PREF_NONCONSUMED_TOKEN_COLOR, AWPrefs.DEFAULT_NONCONSUMED_TOKEN_COLOR);
+        consumedTokenColor = prefs.getColor(AWPrefs.PREF_CONSUMED_TOKEN_COLOR, AWPrefs.DEFAULT_CONSUMED_TOKEN_COLOR);
+        hiddenTokenColor = prefs.getColor(AWPrefs.PREF_HIDDEN_TOKEN_COLOR, AWPrefs.DEFAULT_HIDDEN_TOKEN_COLOR);
+        deadTokenColor = prefs.getColor(AWPrefs.PREF_DEAD_TOKEN_COLOR, AWPrefs.DEFAULT_DEAD_TOKEN_COLOR);
+        lookaheadTokenColor = prefs.getColor(AWPrefs.PREF_LOOKAHEAD_TOKEN_COLOR, AWPrefs.DEFAULT_LOOKAHEAD_TOKEN_COLOR);
+        detachableChildren = prefs.getBoolean(AWPrefs.PREF_DETACHABLE_CHILDREN, AWPrefs.DEFAULT_DETACHABLE_CHILDREN);
+        debuggerAskGen = prefs.getBoolean(AWPrefs.PREF_DEBUGGER_ASK_GEN, AWPrefs.DEFAULT_DEBUGGER_ASK_GEN);
+    }
+
+    /** Returns the version of this snapshot: it changes each time the preferences are applied */
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean getHighlightCursorEnabled() {
+        return highlightCursorEnabled;
+    }
+
+    public int getEditorTabSize() {
+        return editorTabSize;
+    }
+
+    public String getEditorFont() {
+        return editorFont;
+    }
+
+    public int getEditorFontSize() {
+        return editorFontSize;
+    }
+
+    public boolean getSmoothScrolling() {
+        return smoothScrolling;
+    }
+
+    public boolean getFoldingEnabled() {
+        return foldingEnabled;
+    }
+
+    public boolean getDisplayActionsAnchorsFolding() {
+        return displayActionsAnchorsFolding;
+    }
+
+    public boolean autoIndentColonInRule() {
+        return autoIndentColonInRule;
+    }
+
+    public boolean getLineNumberEnabled() {
+        return lineNumberEnabled;
+    }
+
+    public boolean isVStyleAutoCompletion() {
+        return vstyleAutoCompletion;
+    }
+
+    public int getParserDelay() {
+        return parserDelay;
+    }
+
+    /** The syntax getters fall back to the default of an identifier registered after this snapshot was taken */
+    public Color getSyntaxColor(String identifier) {
+        Color c = syntaxColor.get(identifier);
+        return c == null ? AWPrefs.getSyntaxDefaultColor(identifier) : c;
+    }
+
+    public boolean getSyntaxBold(String identifier) {
+        Boolean b = syntaxBold.get(identifier);
+        return b == null ? AWPrefs.getSyntaxDefaultBold(identifier) : b;
+    }
+
+    public boolean getSyntaxItalic(String identifier) {
+        Boolean b = syntaxItalic.get(identifier);
+        return b == null ? AWPrefs.getSyntaxDefaultItalic(identifier) : b;
+    }
+
+    public boolean getDebugVerbose() {
+        return debugVerbose;
+    }
+
+    public boolean getDebugDontOptimizeNFA() {
+        return debugDontOptimizeNFA;
+    }
+
+    public int getDebugDefaultLocalPort() {
+        return debugDefaultLocalPort;
+    }
+
+    public int getDebugLaunchTimeout() {
+        return debugLaunchTimeout;
+    }
+
+    public Color getNonConsumedTokenColor() {
+        return nonConsumedTokenColor;
+    }
+
+    public Color getConsumedTokenColor() {
+        return consumedTokenColor;
+    }
+
+    public Color getHiddenTokenColor() {
+        return hiddenTokenColor;
+    }
+
+    public Color getDeadTokenColor() {
+        return deadTokenColor;
+    }
+
+    public Color getLookaheadTokenColor() {
+        return lookaheadTokenColor;
+    }
+
+    public boolean getDetachableChildren() {
+        return detachableChildren;
+    }
+
+    public boolean getDebuggerAskGen() {
+        return debuggerAskGen;
+    }
+}
@@ -9,12 +9,13 @@ import org.antlr.xjlib.appkit.gview.object.GElement;
 import org.antlr.xjlib.appkit.gview.object.GElementRect;
 import org.antlr.xjlib.appkit.gview.object.GLink;
 import org.antlr.xjlib.appkit.gview.shape.SLinkElbow;
+import org.antlr.xjlib.appkit.gview.utils.GSpatialIndex;
 
 import javax.swing.*;
 import javax.swing.tree.TreeNode;
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.List;
 
 /*
 
@@ -73,6 +74,11 @@ public class AWTreeGraphView extends GView {
 
     protected boolean dirty = true;
 
+    /** Index of the elements bounds used to paint and hit-test only the visible elements.
+     * It is created again when the tree is rebuilt.
+     */
+    protected GSpatialIndex spatialIndex;
+
     public AWTreeGraphView(AWTreePanel panel) {
         this.panel = panel;
         setPreferredSize(new Dimension(0, 0));
@@ -116,6 +122,7 @@ public class AWTreeGraphView extends GView {
 
         if(dirty) {
             dirty = false;
+            spatialIndex = null;
             if(model == null)
                 rebuildNoModel();
             else
@@ -123,6 +130,18 @@ public class AWTreeGraphView extends GView {
         }
     }
 
+    @Override
+    public void setRootElement(GElement element) {
+        spatialIndex = null;
+        super.setRootElement(element);
+    }
+
+    public GSpatialIndex getSpatialIndex() {
+        if(spatialIndex == null)
+            spatialIndex = new GSpatialIndex(rootElement);
+        return spatialIndex;
+    }
+
     public void clearMaps() {
         treeNodeToGElementMap.clear();
         gelementToTreeNodeMap.clear();
@@ -186,9 +205,13 @@ public class AWTreeGraphView extends GView {
     /** This method rebuild the tree incrementally using the information provided
      * by the tree model. This method is faster than rebuildNoModel() for large tree.
      *
-     * Note: actually it is slower because of the adjustElement...() method which is called too often
+     * The position of a node depends only on its children, so each node affected by the
+     * new nodes is adjusted once, after all its new descendants have been added. Because
+     * a new child is laid out to the right of its previous sibling, the pending nodes below
+     * a parent are adjusted before a child is added to it.
      */
     public void rebuildWithModel() {
+        List<TreeNode> pendingNodes = new ArrayList<TreeNode>();
         for(int n=0; n<model.getNewNodesCount(); n++) {
             TreeNode parent = model.getNewNodeParentAtIndex(n);
             TreeNode child = model.getNewNodeAtIndex(n);
@@ -201,16 +224,72 @@ public class AWTreeGraphView extends GView {
                 setRootElement(parentElement);
             }
 
+            adjustPendingNodes(pendingNodes, parent);
+
             GElementNode childElement = createGElement(child);
             addChildElement(parentElement, childElement);
-            adjustElementPositionRelativeToItsChildren(parent, true);
+            if(pendingNodes.isEmpty() || pendingNodes.get(pendingNodes.size()-1) != parent)
+                pendingNodes.add(parent);
         }
 
+        adjustPendingNodes(pendingNodes, null);
+
         autoAdjustSize();
 
         model.clearNewNodes();
     }
 
+    /** Adjusts the pending nodes located below the specified ancestor (or all of them if
+     * the ancestor is null), children before parents, and marks their parents as pending.
+     */
+    protected void adjustPendingNodes(List<TreeNode> pendingNodes, TreeNode ancestor) {
+        if(pendingNodes.isEmpty())
+            return;
+
+        Set<TreeNode> adjusted = new HashSet<TreeNode>();
+        while(!pendingNodes.isEmpty()) {
+            // Adjust the deepest pending node first
+            int deepest = 0;
+            int deepestLevel = -1;
+            for(int i=0; i<pendingNodes.size(); i++) {
+                int level = getLevel(pendingNodes.get(i));
+                if(level > deepestLevel) {
+                    deepest = i;
+                    deepestLevel = level;
+                }
+            }
+
+            TreeNode node = pendingNodes.get(deepest);
+            if(node == ancestor || (ancestor != null && !isDescendant(node, ancestor)))
+                break;
+
+            pendingNodes.remove(deepest);
+            if(!adjusted.add(node))
+                continue;
+
+            adjustElementPositionRelativeToItsChildren(node, false);
+            TreeNode parent = node.getParent();
+            if(parent != null && !pendingNodes.contains(parent))
+                pendingNodes.add(parent);
+        }
+    }
+
+    private static int getLevel(TreeNode node) {
+        int level = 0;
+        for(TreeNode n = node.getParent(); n != null; n = n.getParent()) {
+            level++;
+        }
+        return level;
+    }
+
+    private static boolean isDescendant(TreeNode node, TreeNode ancestor) {
+        for(TreeNode n = node.getParent(); n != null; n = n.getParent()) {
+            if(n == ancestor)
+                return true;
+        }
+        return false;
+    }
+
     public void paintComponent(Graphics g) {
         if(g2d != g) {
             g2d = (Graphics2D)g;
@@ -222,6 +301,27 @@ public class AWTreeGraphView extends GView {
         super.paintComponent(g);
     }
 
+    @Override
+    protected void drawElements(Graphics2D g2d) {
+        Rectangle clip = g2d.getClipBounds();
+        if(clip == null) {
+            super.drawElements(g2d);
+            return;
+        }
+
+        for(GElement element : getSpatialIndex().getElementsInRect(clip)) {
+            element.drawElement(g2d);
+        }
+    }
+
+    @Override
+    public GElement getElementAtPoint(Point p) {
+        if(rootElement == null)
+            return null;
+        else
+            return getSpatialIndex().getElementAtPoint(p);
+    }
+
     public void addChildElement(GElementNode parent, GElementNode child) {
         /** Get the far right position of the last child */
         double x = parent.getLastChildRightSpan();
@@ -0,0 +1,126 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.visualization;
+
+import org.antlr.works.visualization.graphics.graph.GGraph;
+import org.antlr.works.visualization.graphics.graph.GGraphAbstract;
+import org.antlr.works.visualization.graphics.graph.GGraphGroup;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of the graphs of the syntax diagram, keyed by the signature
+ * of the rule content. The size of the cache is bounded by the total number of nodes
+ * of the cached graphs.
+ */
+public class GraphCache {
+
+    public static final int DEFAULT_MAX_NODES = 50000;
+
+    private final Map<String,Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final int maxNodes;
+    private int nodes;
+
+    public GraphCache() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    public GraphCache(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    public synchronized List<GGraphAbstract> get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.graphs;
+    }
+
+    public synchronized void put(String key, List<GGraphAbstract> graphs) {
+        Entry entry = new Entry(graphs);
+        Entry previous = entries.put(key, entry);
+        if(previous != null) {
+            nodes -= previous.nodes;
+        }
+        nodes += entry.nodes;
+
+        // Evict the least recently used graphs but always keep the last one
+        for(Iterator<Entry> iter = entries.values().iterator(); nodes > maxNodes && entries.size() > 1; ) {
+            Entry eldest = iter.next();
+            iter.remove();
+            nodes -= eldest.nodes;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        nodes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getNodes() {
+        return nodes;
+    }
+
+    private static int countNodes(List<GGraphAbstract> graphs) {
+        int count = 0;
+        for(GGraphAbstract graph : graphs) {
+            if(graph instanceof GGraph) {
+                count += countNodes((GGraph)graph);
+            } else if(graph instanceof GGraphGroup) {
+                for(GGraph subgraph : ((GGraphGroup)graph).getGraphs()) {
+                    count += countNodes(subgraph);
+                }
+            }
+        }
+        return Math.max(1, count);
+    }
+
+    private static int countNodes(GGraph graph) {
+        return graph.nodes == null ? 0 : graph.nodes.size();
+    }
+
+    private static class Entry {
+
+        public final List<GGraphAbstract> graphs;
+        public final int nodes;
+
+        public Entry(List<GGraphAbstract> graphs) {
+            this.graphs = graphs;
+            this.nodes = countNodes(graphs);
+        }
+    }
+}
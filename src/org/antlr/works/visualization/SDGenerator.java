@@ -1,5 +1,6 @@
 package org.antlr.works.visualization;
 
+import org.antlr.tool.Grammar;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
@@ -51,6 +52,11 @@ public class SDGenerator implements GContextProvider {
     public GrammarEngine engine;
     public GContext context;
 
+    private GFactory factory = new GFactory();
+    private boolean useGrammars;
+    private Grammar parserGrammar;
+    private Grammar lexerGrammar;
+
     public SDGenerator(GrammarEngine engine) {
         this.engine = engine;
 
@@ -59,6 +65,17 @@ public class SDGenerator implements GContextProvider {
         context.setProvider(this);
     }
 
+    /**
+     * Builds the graphs from these grammars instead of asking the engine for each rule.
+     * The engine creates its grammars again on each request when they have errors, which
+     * prevents several generators from building graphs concurrently.
+     */
+    public void setGrammars(Grammar parserGrammar, Grammar lexerGrammar) {
+        this.parserGrammar = parserGrammar;
+        this.lexerGrammar = lexerGrammar;
+        this.useGrammars = true;
+    }
+
     public void serializeRule(String name, SEncoder encoder) throws Exception {
         GGraph graph = createGraph(name);
         encoder.write(graph);
@@ -96,7 +113,12 @@ public class SDGenerator implements GContextProvider {
     }
 
     private GGraph createGraph(String ruleName) throws Exception {
-        GGraph graph = new GFactory().buildGraphsForRule(engine.getANTLRGrammarEngine(), ruleName);
+        GGraph graph;
+        if(useGrammars) {
+            graph = factory.buildGraphForRule(ATEToken.isLexerName(ruleName) ? lexerGrammar : parserGrammar, ruleName);
+        } else {
+            graph = factory.buildGraphsForRule(engine.getANTLRGrammarEngine(), ruleName);
+        }
         graph.setContext(context);
         graph.render(0,0);
         return graph;
@@ -33,13 +33,21 @@ package org.antlr.works.visualization;
 
 import org.antlr.analysis.NFAState;
 import org.antlr.works.ate.syntax.misc.ATEThread;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.element.ElementReference;
 import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.ErrorListener;
 import org.antlr.works.visualization.graphics.GFactory;
+import org.antlr.works.visualization.graphics.graph.GGraphAbstract;
 
 import javax.swing.*;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +65,13 @@ public class VisualDrawing extends ATEThread {
     protected ElementRule threadRule;
     protected ElementRule threadLastProcessedRule;
 
-    protected Map<ElementRule,List> cacheGraphs = new HashMap<ElementRule, List>();
+    /** Graphs of the rules without error, keyed by the signature of their content.
+     * These graphs remain valid as long as the content of the rule does not change. */
+    protected GraphCache cacheGraphs = new GraphCache();
+
+    /** Graphs of the rules with errors (or without content): they depend on the result
+     * of the analysis and are flushed each time the grammar changes or is analyzed */
+    protected Map<ElementRule,List<GGraphAbstract>> cacheErrorGraphs = new HashMap<ElementRule, List<GGraphAbstract>>();
 
     public VisualDrawing(SyntaxDiagramTab syntaxDiagramTab) {
         this.syntaxDiagramTab = syntaxDiagramTab;
@@ -71,8 +85,8 @@ public class VisualDrawing extends ATEThread {
     }
 
     public void toggleNFAOptimization() {
+        // the optimization flag is part of the signature of the cached graphs
         factory.toggleNFAOptimization();
-        clearCacheGraphs();
     }
 
     public synchronized void setText(String text) {
@@ -86,14 +100,14 @@ public class VisualDrawing extends ATEThread {
     }
 
     public synchronized void clearCacheGraphs() {
-        cacheGraphs.clear();
+        cacheErrorGraphs.clear();
     }
 
     /**
      * Tries to refresh the current graph in cache. If the graphs are not in cache, return false.
      */
     public synchronized boolean refresh() {
-        final List graphs = cacheGraphs.get(threadLastProcessedRule);
+        final List<GGraphAbstract> graphs = getCachedGraphs(threadLastProcessedRule);
         if(graphs == null || graphs.isEmpty()) {
             return false;
         } else {
@@ -111,7 +125,7 @@ public class VisualDrawing extends ATEThread {
         }
     }
 
-    private void refreshVisualPanel(List graphs) {
+    private void refreshVisualPanel(List<GGraphAbstract> graphs) {
         syntaxDiagramTab.panel.setRule(threadLastProcessedRule);
         syntaxDiagramTab.panel.setGraphs(graphs);
         syntaxDiagramTab.panel.update();
@@ -140,7 +154,8 @@ public class VisualDrawing extends ATEThread {
         } catch (Exception e) {
             // ignore
         } finally {
-            // Flush all caches in cache because the grammar has changed
+            // Flush the graphs that depend on the previous analysis. The other graphs
+            // are cached by content and remain valid for the rules that did not change.
             clearCacheGraphs();
         }
     }
@@ -183,13 +198,66 @@ public class VisualDrawing extends ATEThread {
     }
 
     protected synchronized void createGraphsForRule(ElementRule rule) throws Exception {
-        List graphs = cacheGraphs.get(rule);
+        factory.setOptimize(!AWPrefs.getDebugDontOptimizeNFA());
+        List<GGraphAbstract> graphs = getCachedGraphs(rule);
         if(graphs == null) {
-            factory.setOptimize(!AWPrefs.getDebugDontOptimizeNFA());
             factory.setConsole(syntaxDiagramTab.getConsole());
             graphs = factory.buildGraphsForRule(syntaxDiagramTab.getEngineGrammar(), rule.name, rule.errors);
-            if(graphs != null)
-                cacheGraphs.put(rule, graphs);
+            if(graphs != null) {
+                if(isCachedByContent(rule)) {
+                    cacheGraphs.put(getSignature(rule, factory.isOptimize()), graphs);
+                } else {
+                    cacheErrorGraphs.put(rule, graphs);
+                }
+            }
+        }
+    }
+
+    private synchronized List<GGraphAbstract> getCachedGraphs(ElementRule rule) {
+        if(rule == null) {
+            return null;
+        } else if(isCachedByContent(rule)) {
+            return cacheGraphs.get(getSignature(rule, factory.isOptimize()));
+        } else {
+            return cacheErrorGraphs.get(rule);
+        }
+    }
+
+    /**
+     * Returns true if the graphs of the rule depend only on its content. This is not the case
+     * of the rules with errors or of the artificial rules that are not in the text.
+     */
+    private static boolean isCachedByContent(ElementRule rule) {
+        return !rule.hasErrors() && rule.start != null && rule.end != null;
+    }
+
+    /**
+     * Returns the signature of the graphs of a rule: a hash of the text of its tokens,
+     * of the NFA optimization flag and of the kind of each name it references.
+     */
+    public static String getSignature(ElementRule rule, boolean optimize) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(optimize).append('\n');
+        for(ATEToken token : rule.getTokens()) {
+            sb.append(token.getAttribute()).append('\n');
+        }
+        List<ElementReference> references = rule.getReferences();
+        GrammarEngine engine = rule.getEngine();
+        if(references != null && engine != null) {
+            for(ElementReference reference : references) {
+                sb.append(reference.getName());
+                sb.append(engine.getRuleWithName(reference.getName()) == null ? '?' : '!');
+                sb.append('\n');
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            return new BigInteger(1, digest.digest(sb.toString().getBytes("UTF-8"))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            return sb.toString();
+        } catch (UnsupportedEncodingException e) {
+            return sb.toString();
         }
     }
 
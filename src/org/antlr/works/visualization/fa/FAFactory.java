@@ -45,12 +45,25 @@ import java.util.*;
 
 public class FAFactory {
 
+    /** Converted rules of each grammar, shared by all the factories. The FA of a rule
+     * depends only on its grammar so it is built once for each grammar.
+     */
+    protected static final Map<Grammar,GrammarMemo> memos = new WeakHashMap<Grammar, GrammarMemo>();
+
     protected Grammar g;
     protected boolean optimize;
     protected FAAnalysis analysis = new FAAnalysis();
     protected Map<NFAState,FAState> processedStates = new HashMap<NFAState, FAState>();
     protected Map<Integer,FAState> skippedStatesMap = new HashMap<Integer, FAState>();
 
+    /** States of the rule being built that are on the current path of the
+     * depth-first traversal, indexed by NFA state number.
+     */
+    protected BitSet currentPath = new BitSet();
+
+    /** Skipped states along the current epsilon transition */
+    protected List<Integer> skippedStates = new ArrayList<Integer>();
+
     protected int newStateNumber = State.INVALID_STATE_NUMBER-1;
 
     public FAFactory(Grammar g) {
@@ -59,7 +72,40 @@ public class FAFactory {
 
     public FAState buildNFA(NFAState state, boolean optimize) {
         this.optimize = optimize;
-        return build(state);
+
+        GrammarMemo memo = getMemo(g);
+        Map<Integer,MemoEntry> entries = optimize ? memo.optimized : memo.unoptimized;
+        MemoEntry entry;
+        synchronized(memo) {
+            entry = entries.get(state.stateNumber);
+        }
+
+        if(entry == null) {
+            Map<Integer,FAState> skippedStatesMapOfFactory = skippedStatesMap;
+            skippedStatesMap = new HashMap<Integer, FAState>();
+            try {
+                entry = new MemoEntry(build(state), skippedStatesMap);
+            } finally {
+                skippedStatesMap = skippedStatesMapOfFactory;
+            }
+            synchronized(memo) {
+                entries.put(state.stateNumber, entry);
+            }
+        }
+
+        skippedStatesMap.putAll(entry.skippedStatesMap);
+        return entry.state;
+    }
+
+    protected static GrammarMemo getMemo(Grammar g) {
+        synchronized(memos) {
+            GrammarMemo memo = memos.get(g);
+            if(memo == null) {
+                memo = new GrammarMemo();
+                memos.put(g, memo);
+            }
+            return memo;
+        }
     }
 
     public Map<Integer,FAState> getSkippedStatesMap() {
@@ -72,13 +118,14 @@ public class FAFactory {
         // First compute the incoming transition for each state. This will be used later to
         // know if a state can be simplified or not.
         analysis.analyze(state);
-        return buildRecursiveState(state, new HashSet<NFAState>());
+        currentPath.clear();
+        return buildRecursiveState(state);
     }
 
-    public FAState buildRecursiveState(NFAState state, Set<NFAState> currentPath) {
-        if(processedStates.get(state) != null) {
-            FAState js = processedStates.get(state);
-            if(currentPath.contains(state)) {
+    public FAState buildRecursiveState(NFAState state) {
+        FAState js = processedStates.get(state);
+        if(js != null) {
+            if(currentPath.get(state.stateNumber)) {
                 // Set this temporary flag to indicate to the parent method that
                 // the transition to be created has to be flagged as "loop".
                 js.loop = true;
@@ -86,15 +133,16 @@ public class FAFactory {
             return js;
         }
 
-        FAState js = new FAState(state);
+        js = new FAState(state);
         processedStates.put(state, js);
-        currentPath.add(state);
 
         if(state.isAcceptState()) {
             // Stop as soon as we reach an accepted state
             return js;
         }
 
+        currentPath.set(state.stateNumber);
+
         for(int t=0; t<state.getNumberOfTransitions(); t++) {
             FAState parentState = js;
 
@@ -106,9 +154,12 @@ public class FAFactory {
             }
 
             if(transition.isEpsilon()) {
-                buildRecursiveSkipState(parentState, target, new HashSet<NFAState>(currentPath), new ArrayList<Integer>());
+                List<Integer> skippedStatesOfParent = skippedStates;
+                skippedStates = new ArrayList<Integer>();
+                buildRecursiveSkipState(parentState, target);
+                skippedStates = skippedStatesOfParent;
             } else {
-                FAState targetState = buildRecursiveState(target, new HashSet<NFAState>(currentPath));
+                FAState targetState = buildRecursiveState(target);
                 if(targetState.loop) {
                     // Handle "loop" transition by creating a "normal" transition and assigning a flag
                     // to this transition so when drawing it, we can draw the arrow at the right place
@@ -119,6 +170,8 @@ public class FAFactory {
                     parentState.addTransition(new FATransition(transition.label.toString(g), targetState));
             }
         }
+
+        currentPath.clear(state.stateNumber);
         return js;
     }
 
@@ -126,12 +179,13 @@ public class FAFactory {
      *
      */
 
-    public void buildRecursiveSkipState(FAState parentState, NFAState state, Set<NFAState> currentPath, List<Integer> skippedStates) {
+    public void buildRecursiveSkipState(FAState parentState, NFAState state) {
         if(canBeSkipped(state)) {
             // If the state can be skipped, apply recursively the same method for each transition(s)
             // providing the parent state.
 
             // Record each skipped state. They will be added later to the transition that replace them
+            // (the list is shared by the whole traversal: the state is removed once its branches are built)
             Integer skippedState = state.stateNumber;
             skippedStates.add(skippedState);
             skippedStatesMap.put(skippedState, parentState);
@@ -140,22 +194,24 @@ public class FAFactory {
                 Transition transition = state.transition(t);
                 if(targetStateIsInAnotherRule(transition)) {
                     NFAState target = targetStateOfTransition(transition);
-                    FAState ruleRefState = createRuleReferenceState(parentState, transition, skippedStates);
-                    buildRecursiveSkipState(ruleRefState, target, currentPath, new ArrayList<Integer>(skippedStates));
+                    FAState ruleRefState = createRuleReferenceState(parentState, transition, new ArrayList<Integer>(skippedStates));
+                    buildRecursiveSkipState(ruleRefState, target);
                 } else
-                    buildRecursiveSkipState(parentState, (NFAState)transition.target, currentPath, new ArrayList<Integer>(skippedStates));
+                    buildRecursiveSkipState(parentState, (NFAState)transition.target);
             }
+
+            skippedStates.remove(skippedStates.size()-1);
         } else {
             // The state cannot be skipped. Build the remaining of the NFA...
-            FAState targetState = buildRecursiveState(state, currentPath);
+            FAState targetState = buildRecursiveState(state);
             // and then create the transition from the parentState to this current state
             // (this is the simplification ;-))
             if(targetState.loop) {
                 // See comment above (in the previous method)
-                targetState.addTransition(new FATransition(parentState, skippedStates), true);
+                targetState.addTransition(new FATransition(parentState, new ArrayList<Integer>(skippedStates)), true);
                 targetState.loop = false;
             } else
-                parentState.addTransition(new FATransition(targetState, skippedStates));
+                parentState.addTransition(new FATransition(targetState, new ArrayList<Integer>(skippedStates)));
         }
     }
 
@@ -272,4 +328,22 @@ public class FAFactory {
         }
         return state;
     }
+
+    protected static class GrammarMemo {
+
+        public final Map<Integer,MemoEntry> optimized = new HashMap<Integer, MemoEntry>();
+        public final Map<Integer,MemoEntry> unoptimized = new HashMap<Integer, MemoEntry>();
+
+    }
+
+    protected static class MemoEntry {
+
+        public final FAState state;
+        public final Map<Integer,FAState> skippedStatesMap;
+
+        public MemoEntry(FAState state, Map<Integer,FAState> skippedStatesMap) {
+            this.state = state;
+            this.skippedStatesMap = skippedStatesMap;
+        }
+    }
 }
@@ -39,6 +39,7 @@ import org.antlr.works.utils.Console;
 import org.antlr.works.visualization.fa.FAFactory;
 import org.antlr.works.visualization.fa.FAState;
 import org.antlr.works.visualization.graphics.graph.GGraph;
+import org.antlr.works.visualization.graphics.graph.GGraphAbstract;
 import org.antlr.works.visualization.graphics.graph.GGraphGroup;
 
 import java.util.ArrayList;
@@ -58,6 +59,10 @@ public class GFactory {
         this.optimize = flag;
     }
 
+    public boolean isOptimize() {
+        return optimize;
+    }
+
     public void toggleNFAOptimization() {
         optimize = !optimize;
     }
@@ -66,30 +71,34 @@ public class GFactory {
         this.console = console;
     }
 
-    public List buildGraphsForRule(ANTLRGrammarEngine antlrEngineGrammar, String rule, List<GrammarError> errors) throws Exception {
+    public List<GGraphAbstract> buildGraphsForRule(ANTLRGrammarEngine antlrEngineGrammar, String rule, List<GrammarError> errors) throws Exception {
         if(antlrEngineGrammar == null)
             return null;
         
         if(errors == null || errors.size() == 0)
-            return Collections.singletonList(buildGraphsForRule(antlrEngineGrammar, rule));
+            return Collections.<GGraphAbstract>singletonList(buildGraphsForRule(antlrEngineGrammar, rule));
         else
             return buildGraphsForErrors(antlrEngineGrammar, rule, errors);
     }
 
     public GGraph buildGraphsForRule(ANTLRGrammarEngine antlrEngineGrammar, String rule) throws Exception {
-        NFAState startState = antlrEngineGrammar.getRuleStartState(rule);
+        return buildGraphForRule(antlrEngineGrammar.getGrammarForRule(rule), rule);
+    }
+
+    public GGraph buildGraphForRule(Grammar grammar, String rule) {
+        NFAState startState = grammar == null ? null : grammar.getRuleStartState(rule);
         if(startState == null)
             return null;
 
-        FAState state = new FAFactory(antlrEngineGrammar.getGrammarForRule(rule)).buildNFA(startState, optimize);
+        FAState state = new FAFactory(grammar).buildNFA(startState, optimize);
         GGraph graph = renderer.render(state);
         graph.setName(rule);
 
         return graph;
     }
 
-    public List<GGraphGroup> buildGraphsForErrors(ANTLRGrammarEngine antlrEngineGrammar, String rule, List<GrammarError> errors) throws Exception {
-        List<GGraphGroup> graphs = new ArrayList<GGraphGroup>();
+    public List<GGraphAbstract> buildGraphsForErrors(ANTLRGrammarEngine antlrEngineGrammar, String rule, List<GrammarError> errors) throws Exception {
+        List<GGraphAbstract> graphs = new ArrayList<GGraphAbstract>();
 
         for (GrammarError error : errors) {
             graphs.add(buildGraphGroup(antlrEngineGrammar.getGrammarForRule(rule), error));
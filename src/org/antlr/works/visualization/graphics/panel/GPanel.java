@@ -266,9 +266,15 @@ public class GPanel implements XJNotificationObserver {
             public void actionPerformed(ActionEvent event) {
                 JCheckBox button = (JCheckBox)event.getSource();
                 GGraphGroup gg = (GGraphGroup)view.getCurrentGraph();
-                gg.getPathGroup().setPathVisible(Integer.parseInt(button.getName()), button.isSelected());
-                gg.getPathGroup().makeSureCurrentPathIsVisible();
-                view.cacheRerender();
+                GPathGroup pathGroup = gg.getPathGroup();
+                int pathIndex = Integer.parseInt(button.getName());
+                // Only the tiles covered by the toggled path and the current path
+                // (which is drawn on top of the others) have to be rendered again
+                Rectangle area = union(pathGroup.getPath(pathIndex).getDrawingBounds(),
+                        pathGroup.getCurrentPath().getDrawingBounds());
+                pathGroup.setPathVisible(pathIndex, button.isSelected());
+                pathGroup.makeSureCurrentPathIsVisible();
+                view.cacheRerender(union(area, pathGroup.getCurrentPath().getDrawingBounds()));
                 view.repaint();
             }
         });
@@ -279,6 +285,13 @@ public class GPanel implements XJNotificationObserver {
         return button;
     }
 
+    private static Rectangle union(Rectangle a, Rectangle b) {
+        if(a == null || b == null)
+            return null;
+        else
+            return a.union(b);
+    }
+
     private JToggleButton createShowCrossLinksButton() {
         XJRollOverButtonToggle button = XJRollOverButtonToggle.createMediumButton(IconManager.shared().getIconShowLinks());
         button.setSelected(true);
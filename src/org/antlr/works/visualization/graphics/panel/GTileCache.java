@@ -0,0 +1,193 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.visualization.graphics.panel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of fixed-size tiles holding the rendered image of a graph.
+ * The tiles are only valid for the graph, zoom factor and paint size they
+ * were rendered with: a request for another key discards them. The cache
+ * holds at most MAX_TILES tiles and evicts the least recently drawn first.
+ */
+public class GTileCache {
+
+    public static final int TILE_SIZE = 256;
+    public static final int MAX_TILES = 128;
+
+    protected Map<Long,BufferedImage> tiles = new LinkedHashMap<Long,BufferedImage>(MAX_TILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long,BufferedImage> eldest) {
+            if(size() > MAX_TILES) {
+                eldest.getValue().flush();
+                return true;
+            } else
+                return false;
+        }
+    };
+
+    protected Object graph;
+    protected float factor;
+    protected int width;
+    protected int height;
+
+    public boolean isEmpty() {
+        return tiles.isEmpty();
+    }
+
+    public boolean isValidFor(Object graph, float factor, int width, int height) {
+        return this.graph == graph && this.factor == factor && this.width == width && this.height == height;
+    }
+
+    /**
+     * Discards all the tiles and binds the cache to a new key.
+     */
+    public void reset(Object graph, float factor, int width, int height) {
+        clear();
+        this.graph = graph;
+        this.factor = factor;
+        this.width = width;
+        this.height = height;
+    }
+
+    public void clear() {
+        for (BufferedImage tile : tiles.values()) {
+            tile.flush();
+        }
+        tiles.clear();
+    }
+
+    /**
+     * Discards the tiles intersecting the specified area (in view coordinates).
+     */
+    public void invalidate(Rectangle area) {
+        for (Iterator<Map.Entry<Long,BufferedImage>> iterator = tiles.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<Long,BufferedImage> entry = iterator.next();
+            if(area.intersects(getTileRect(getTileX(entry.getKey()), getTileY(entry.getKey())))) {
+                entry.getValue().flush();
+                iterator.remove();
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the tiles covering the specified area that are not yet rendered.
+     */
+    public List<Point> getMissingTiles(Rectangle area) {
+        List<Point> missing = new ArrayList<Point>();
+        if(area.isEmpty())
+            return missing;
+
+        for(int ty = area.y/TILE_SIZE; ty <= (area.y+area.height-1)/TILE_SIZE; ty++) {
+            for(int tx = area.x/TILE_SIZE; tx <= (area.x+area.width-1)/TILE_SIZE; tx++) {
+                if(!tiles.containsKey(getKey(tx, ty)))
+                    missing.add(new Point(tx, ty));
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Returns the union of the rectangles of the specified tiles.
+     */
+    public Rectangle getTilesRect(List<Point> tiles) {
+        Rectangle r = null;
+        for (Point tile : tiles) {
+            if(r == null)
+                r = getTileRect(tile.x, tile.y);
+            else
+                r.add(getTileRect(tile.x, tile.y));
+        }
+        return r;
+    }
+
+    /**
+     * Copies the specified tiles out of an image rendered for the area <code>imageRect</code>.
+     */
+    public void storeTiles(List<Point> tiles, BufferedImage image, Rectangle imageRect) {
+        for (Point tile : tiles) {
+            BufferedImage tileImage = new BufferedImage(TILE_SIZE, TILE_SIZE, image.getType());
+            Graphics g = tileImage.getGraphics();
+            g.drawImage(image, imageRect.x-tile.x*TILE_SIZE, imageRect.y-tile.y*TILE_SIZE, null);
+            g.dispose();
+            this.tiles.put(getKey(tile.x, tile.y), tileImage);
+        }
+    }
+
+    /**
+     * Draws the cached tiles intersecting the specified area (in cache coordinates).
+     */
+    public void drawTiles(Graphics g, Rectangle area) {
+        if(area.isEmpty())
+            return;
+
+        for(int ty = Math.max(0, area.y/TILE_SIZE); ty <= (area.y+area.height-1)/TILE_SIZE; ty++) {
+            for(int tx = Math.max(0, area.x/TILE_SIZE); tx <= (area.x+area.width-1)/TILE_SIZE; tx++) {
+                BufferedImage tile = tiles.get(getKey(tx, ty));
+                if(tile != null)
+                    g.drawImage(tile, tx*TILE_SIZE, ty*TILE_SIZE, null);
+            }
+        }
+    }
+
+    protected Rectangle getTileRect(int tx, int ty) {
+        return new Rectangle(tx*TILE_SIZE, ty*TILE_SIZE, TILE_SIZE, TILE_SIZE);
+    }
+
+    protected static Long getKey(int tx, int ty) {
+        return ((long)tx << 32) | (ty & 0xffffffffL);
+    }
+
+    protected static int getTileX(long key) {
+        return (int)(key >> 32);
+    }
+
+    protected static int getTileY(long key) {
+        return (int)key;
+    }
+
+}
@@ -52,11 +52,10 @@ import java.util.List;
 public class GView extends JPanel implements XJMenuItemDelegate {
 
     protected boolean useCachedImage = true;
-    protected boolean cachedImageRerender = false;
     protected boolean cachedImageResize = false;
 
     protected String placeholder;
-    protected BufferedImage cachedImage = null;
+    protected GTileCache tileCache = new GTileCache();
 
     protected List graphs = new ArrayList();
     protected int currentGraphIndex = 0;
@@ -140,11 +139,24 @@ public class GView extends JPanel implements XJMenuItemDelegate {
     }
 
     public void cacheInvalidate() {
-        cachedImage = null;
+        tileCache.clear();
     }
 
     public void cacheRerender() {
-        cachedImageRerender = true;
+        tileCache.clear();
+    }
+
+    /**
+     * Re-renders only the cached tiles intersecting the specified area (in graph coordinates).
+     */
+    public void cacheRerender(Rectangle area) {
+        if(area == null) {
+            cacheRerender();
+        } else {
+            Rectangle r = new Rectangle(area);
+            r.translate(offset_x, offset_y);
+            tileCache.invalidate(r);
+        }
     }
 
     public void setCacheResizeImage(boolean flag) {
@@ -323,44 +335,10 @@ public class GView extends JPanel implements XJMenuItemDelegate {
         int width = getPaintWidth();
         int height = getPaintHeight();
 
-        if(useCachedImage) {
-            boolean sizeChanged = cachedImage != null && (cachedImage.getWidth() != width || cachedImage.getHeight() != height);
-
-            if(sizeChanged) {
-                // Discard the cache image only if it already exists and if the cachedImageResize flag is false.
-                // The cachedImageResize flag indicates, if true, that we should use the cachedImage
-                // instead of re-creating a new one (useful for fast live resize).
-                if(!cachedImageResize && cachedImage != null) {
-                    cachedImage.flush();
-                    cachedImage = null;
-                }
-            }
-
-            if(cachedImage == null) {
-                // Create a new cache image.
-                cachedImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-                Graphics2D gCache = (Graphics2D)cachedImage.getGraphics();
-                ATEUtilities.prepareForText(gCache);
-                gCache.setColor(Color.white);
-                gCache.fillRect(0, 0, width, height);
-                render(gCache);
-                gCache.dispose();
-            } else if(cachedImageRerender) {
-                // Only render the cachedImage without re-creating it again
-                Graphics2D gCache = (Graphics2D)cachedImage.getGraphics();
-                ATEUtilities.prepareForText(gCache);
-                gCache.setColor(Color.white);
-                gCache.fillRect(0, 0, width, height);
-                render(gCache);
-                gCache.dispose();
-                cachedImageRerender = false;
-            }
-        }
-
-        if(cachedImage == null)
-            render((Graphics2D)g);
+        if(useCachedImage)
+            paintTiles((Graphics2D)g, width, height);
         else
-            g.drawImage(cachedImage, 0, 0, width, height, null);
+            render((Graphics2D)g);
 
         if(!cachedImageResize && getCurrentGraph() instanceof GGraphGroup) {
             // Draw the selected segment of a path (and only if we are not resizing using only the cached image)
@@ -375,6 +353,57 @@ public class GView extends JPanel implements XJMenuItemDelegate {
         }
     }
 
+    /**
+     * Paints the graph using the tile cache: only the visible tiles that are not
+     * cached yet are rendered, in a single pass over the graph.
+     */
+    protected void paintTiles(Graphics2D g, int width, int height) {
+        Rectangle clip = g.getClipBounds();
+        if(clip == null)
+            clip = new Rectangle(0, 0, width, height);
+
+        if(cachedImageResize && !tileCache.isEmpty()) {
+            // The cachedImageResize flag indicates, if true, that we should stretch the cached tiles
+            // instead of rendering new ones (useful for fast live resize). Tiles not yet
+            // rendered are simply left blank until the resize ends.
+            double sx = (double)width/tileCache.getWidth();
+            double sy = (double)height/tileCache.getHeight();
+            Graphics2D gs = (Graphics2D)g.create();
+            gs.scale(sx, sy);
+            tileCache.drawTiles(gs, new Rectangle((int)(clip.x/sx), (int)(clip.y/sy),
+                    (int)Math.ceil(clip.width/sx)+1, (int)Math.ceil(clip.height/sy)+1).intersection(
+                    new Rectangle(0, 0, tileCache.getWidth(), tileCache.getHeight())));
+            gs.dispose();
+            return;
+        }
+
+        if(!tileCache.isValidFor(getCurrentGraph(), context.getFactor(), width, height))
+            tileCache.reset(getCurrentGraph(), context.getFactor(), width, height);
+
+        Rectangle area = clip.intersection(new Rectangle(0, 0, width, height));
+        List<Point> missing = tileCache.getMissingTiles(area);
+        if(!missing.isEmpty()) {
+            Rectangle r = tileCache.getTilesRect(missing);
+            BufferedImage image = new BufferedImage(r.width, r.height, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D gImage = image.createGraphics();
+            ATEUtilities.prepareForText(gImage);
+            gImage.setColor(Color.white);
+            gImage.fillRect(0, 0, r.width, r.height);
+            gImage.translate(-r.x, -r.y);
+            render(gImage);
+            gImage.dispose();
+            tileCache.storeTiles(missing, image, r);
+            tileCache.drawTiles(g, area);
+            if(missing.size() > GTileCache.MAX_TILES) {
+                // Some of the new tiles were already evicted: draw them from the rendered image
+                g.drawImage(image, r.x, r.y, null);
+            }
+            image.flush();
+        } else {
+            tileCache.drawTiles(g, area);
+        }
+    }
+
     public void paintPlaceholder(Graphics g) {
         if(placeholder == null)
             return;
@@ -157,6 +157,26 @@ public class GPath extends GObject {
         return element.getBounds();
     }
 
+    /**
+     * Returns the area covered by the path when drawn, or null if the path is empty.
+     */
+    public Rectangle getDrawingBounds() {
+        Rectangle bounds = null;
+        for (GPathElement element : elements) {
+            Rectangle r = element.getDrawingBounds();
+            if(bounds == null)
+                bounds = r;
+            else
+                bounds.add(r);
+        }
+        if(bounds != null) {
+            // Make room for the boxes, nodes, arrows and splines around the anchor points
+            int margin = (int)Math.ceil(context.getPixelBoxUp()+context.getPixelBoxDown()+context.getPixelNodeWidth());
+            bounds.grow(margin, margin);
+        }
+        return bounds;
+    }
+
     public boolean containsPoint(Point p) {
         for (GPathElement element : elements) {
             if (element.containsPoint(p))
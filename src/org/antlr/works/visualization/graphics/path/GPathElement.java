@@ -138,6 +138,31 @@ public class GPathElement extends GObject {
         }
     }
 
+    /**
+     * Returns the rectangle enclosing the anchor points of this element as drawn
+     * (without the stroke or node extents). Unlike getBounds(), the rectangle
+     * is always normalized.
+     */
+    public Rectangle getDrawingBounds() {
+        Rectangle r = new Rectangle();
+        if(nodeOrLink instanceof GLink) {
+            GLink link = (GLink)nodeOrLink;
+            r.setLocation((int)link.source.getX(), (int)link.source.getY());
+            r.add(link.source.getX()+link.source.linkDimension.getPixelWidth(context), link.source.getY());
+            r.add(link.target.getX(), link.target.getY());
+            if(link.virtualPosition != null)
+                r.add(link.source.getX(), link.getVirtualY());
+        } else if(nodeOrLink instanceof GNode) {
+            GNode node = (GNode)nodeOrLink;
+            r.setLocation((int)node.getX(), (int)node.getY());
+        } else {
+            Point2D a = getBeginPoint();
+            r.setLocation((int)a.getX(), (int)a.getY());
+            r.add(target.getCenterX(), target.getCenterY());
+        }
+        return r;
+    }
+
     public void draw() {
         if(nodeOrLink != null)
             nodeOrLink.draw();
@@ -33,6 +33,7 @@ package org.antlr.xjlib.appkit.app;
 
 import org.antlr.xjlib.appkit.document.XJDocument;
 import org.antlr.xjlib.appkit.document.XJDocumentFactory;
+import org.antlr.xjlib.appkit.document.XJDocumentWriter;
 import org.antlr.xjlib.appkit.frame.XJFrame;
 import org.antlr.xjlib.appkit.frame.XJFrameDelegate;
 import org.antlr.xjlib.appkit.frame.XJPanel;
@@ -186,6 +187,7 @@ public class XJApplication extends XJObject implements XJApplicationInterface, X
 
     protected void shutdown() {
         updateRecentFilesPrefs();
+        XJDocumentWriter.flush(10);
         System.exit(0);
     }
 
@@ -608,9 +610,15 @@ public class XJApplication extends XJObject implements XJApplicationInterface, X
 
     public static class AutoSaveTimer implements XJScheduledTimerDelegate {
         public void scheduledTimerFired(boolean startup) {
-            for(XJWindow window : windows) {
-                window.saveAll();
-            }
+            // The timer runs in its own thread: capture the content of the documents in the
+            // event thread, they are then written in background by XJDocumentWriter
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    for(XJWindow window : windows) {
+                        window.autoSaveAll();
+                    }
+                }
+            });
         }
     }
 
@@ -42,6 +42,7 @@ import java.awt.event.*;
 import java.io.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
@@ -50,6 +51,9 @@ public class XJPreferences {
     protected Preferences prefs = null;
     protected Map<String,EventListener> bindings = new HashMap<String, EventListener>();
 
+    /** Number of values read from the backing store, for diagnostics */
+    protected final AtomicLong readCount = new AtomicLong();
+
     public XJPreferences(Class c) {
         this.prefs = Preferences.userNodeForPackage(c);
     }
@@ -67,6 +71,7 @@ public class XJPreferences {
     }
 
     public String getString(String key, String def) {
+        readCount.incrementAndGet();
         return prefs.get(key, def);
     }
 
@@ -79,6 +84,7 @@ public class XJPreferences {
     }
 
     public int getInt(String key, int def) {
+        readCount.incrementAndGet();
         return prefs.getInt(key, def);
     }
 
@@ -87,6 +93,7 @@ public class XJPreferences {
     }
 
     public boolean getBoolean(String key, boolean def) {
+        readCount.incrementAndGet();
         return prefs.getBoolean(key, def);
     }
 
@@ -119,6 +126,7 @@ public class XJPreferences {
     }
 
     public Object getObject(String key, Object defaultObject) {
+        readCount.incrementAndGet();
         try {
             byte[] bytes = prefs.getByteArray(key, null);
             if(bytes == null)
@@ -151,6 +159,10 @@ public class XJPreferences {
         return prefs;
     }
 
+    public long getReadCount() {
+        return readCount.get();
+    }
+
     // *** Bindings
 
     public void bindToPreferences(JComboBox component, String key, int defaultValue) {
@@ -31,14 +31,24 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.xjlib.appkit.document;
 
-import org.antlr.xjlib.foundation.XJUtils;
-
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class XJDataPlainText extends XJData {
 
+    public static final String ENCODING = "UTF-8";
+
+    /** State of each file as last read or written, used to skip writing the same content again */
+    private static final Map<String,DiskState> diskStates = Collections.synchronizedMap(new HashMap<String, DiskState>());
+
     public String text;
 
     @Override
@@ -48,14 +58,15 @@ public class XJDataPlainText extends XJData {
 
     @Override
     public void readData() throws IOException {
-        text = XJUtils.getStringFromFile(getFile());
+        File file = new File(getFile());
+        byte[] bytes = readBytes(file);
+        text = decode(bytes);
+        diskStates.put(file.getAbsolutePath(), new DiskState(file, bytes));
     }
 
     @Override
     public void writeData() throws IOException {
-        OutputStream os = new FileOutputStream(getFile());
-        os.write(text.getBytes());
-        os.close();
+        write(getFile(), text);
     }
 
     public void setText(String text) {
@@ -66,4 +77,117 @@ public class XJDataPlainText extends XJData {
         return text;
     }
 
+    /** Writes the text in the file unless the file already contains it (and has not been modified
+     * since it was read or written). Returns true if the file has been written.
+     */
+    public static boolean writeIfChanged(String file, String text) throws IOException {
+        File f = new File(file);
+        byte[] bytes = text.getBytes(ENCODING);
+        DiskState state = diskStates.get(f.getAbsolutePath());
+        if(state != null && state.matches(f, bytes))
+            return false;
+
+        write(f, bytes);
+        return true;
+    }
+
+    /** Releases the state of the file kept since it was last read or written */
+    public static void forgetDiskState(String file) {
+        diskStates.remove(new File(file).getAbsolutePath());
+    }
+
+    public static void write(String file, String text) throws IOException {
+        write(new File(file), text.getBytes(ENCODING));
+    }
+
+    /** Writes the bytes in a temporary file flushed to the disk and then moves it over the file,
+     * so the file contains either its previous content or the new one, even after a crash.
+     */
+    private static void write(File file, byte[] bytes) throws IOException {
+        // Replace the target of the link and not the link itself
+        File target = file.getCanonicalFile();
+        // A unique temporary file: two writes of the same file never share it
+        File temp = File.createTempFile("."+target.getName()+"-", ".tmp", target.getParentFile());
+
+        FileOutputStream os = new FileOutputStream(temp);
+        try {
+            os.write(bytes);
+            os.flush();
+            os.getFD().sync();
+        } catch(IOException e) {
+            os.close();
+            temp.delete();
+            throw e;
+        }
+        os.close();
+
+        if(!temp.renameTo(target)) {
+            // Some platforms (Windows) cannot rename a file over an existing one
+            if(!target.delete() || !temp.renameTo(target)) {
+                temp.delete();
+                throw new IOException("Cannot replace "+target);
+            }
+        }
+        diskStates.put(file.getAbsolutePath(), new DiskState(target, bytes));
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream((int)file.length());
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while((count = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, count);
+            }
+        } finally {
+            is.close();
+        }
+        return bos.toByteArray();
+    }
+
+    /** Decodes the bytes as UTF-8 or, for the files written with the encoding of the platform
+     * by previous versions, with the encoding of the platform.
+     */
+    private static String decode(byte[] bytes) {
+        try {
+            return Charset.forName(ENCODING).newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return new String(bytes);
+        }
+    }
+
+    private static class DiskState {
+
+        public final String digest;
+        public final long lastModified;
+        public final long length;
+
+        public DiskState(File file, byte[] bytes) {
+            this.digest = digest(bytes);
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        public boolean matches(File file, byte[] bytes) {
+            return digest != null && file.lastModified() == lastModified && file.length() == length
+                    && digest.equals(digest(bytes));
+        }
+
+        private static String digest(byte[] bytes) {
+            try {
+                StringBuilder sb = new StringBuilder();
+                for(byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+                    sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+                }
+                return sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            }
+        }
+    }
+
 }
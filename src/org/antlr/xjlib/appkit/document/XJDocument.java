@@ -39,9 +39,11 @@ import org.antlr.xjlib.appkit.utils.XJLocalizable;
 import org.antlr.xjlib.foundation.XJObject;
 import org.antlr.xjlib.foundation.XJUtils;
 
+import javax.swing.*;
 import java.awt.*;
 import java.io.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A document always has data and a window to display the data.
@@ -61,6 +63,15 @@ public class XJDocument extends XJObject {
     protected boolean firstDocument = false;
     protected boolean writing = false;
 
+    /** Number of changes done to the document, used to know if it changed while it was saved in background */
+    protected int changeCount = 0;
+    /** Number of background saves not yet completed */
+    protected final AtomicInteger pendingWrites = new AtomicInteger();
+    /** Incremented by each save: a background save whose number is not the last one is obsolete */
+    protected final AtomicInteger writeSequence = new AtomicInteger();
+    /** Held while the document is written, so a background save never overlaps another save */
+    private final Object writeLock = new Object();
+
     protected Component javaContainer;
 
     protected static int absoluteCounter = 0;
@@ -101,6 +112,7 @@ public class XJDocument extends XJObject {
     }
 
     public void changeDone() {
+        changeCount++;
         if(isDirty())
             return;
 
@@ -218,7 +230,11 @@ public class XJDocument extends XJObject {
         }
 
         try {
-            writeDocument(documentPath);
+            synchronized(writeLock) {
+                // The background saves not yet written contain an older content
+                writeSequence.incrementAndGet();
+                writeDocument(documentPath);
+            }
         } catch(Exception e) {
             e.printStackTrace();
             XJAlert.display(getSwingComponent(), XJLocalizable.getXJString("DocError"), XJLocalizable.getXJString("DocSaveError")+" "+e.toString());
@@ -230,11 +246,95 @@ public class XJDocument extends XJObject {
         return XJApplication.YES;
     }
 
+    /**
+     * Saves the document without blocking the event thread: the content is captured now and
+     * written by XJDocumentWriter. Only plain text documents can be saved this way, the other
+     * ones are saved immediately. Used by the auto-save.
+     */
+    public void saveInBackground() {
+        if(documentPath == null || !isDirty())
+            return;
+
+        if(!(documentData instanceof XJDataPlainText)) {
+            save(false);
+            return;
+        }
+
+        final String file = documentPath;
+        final int count = changeCount;
+        final String text;
+        beginWrite();
+        try {
+            documentWillWriteData();
+            text = ((XJDataPlainText)documentData).getText();
+        } finally {
+            endWrite();
+        }
+
+        final int sequence = writeSequence.incrementAndGet();
+        pendingWrites.incrementAndGet();
+        XJDocumentWriter.execute(new Runnable() {
+            public void run() {
+                IOException error = null;
+                try {
+                    writeInBackground(file, text, sequence);
+                } catch (IOException e) {
+                    error = e;
+                }
+                final IOException writeError = error;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        pendingWrites.decrementAndGet();
+                        // Otherwise the document has been saved again since and that save is the one that counts
+                        if(sequence == writeSequence.get()) {
+                            documentDidSaveInBackground(file, count, writeError);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void writeInBackground(String file, String text, int sequence) throws IOException {
+        synchronized(writeLock) {
+            // Do not overwrite a more recent content saved or queued in the meantime
+            if(sequence == writeSequence.get()) {
+                XJDataPlainText.writeIfChanged(file, text);
+            }
+        }
+    }
+
+    protected void documentDidSaveInBackground(String file, int count, IOException error) {
+        if(error != null) {
+            // The document stays dirty and will be saved again
+            documentDidFailToSaveInBackground(file, error);
+            return;
+        }
+
+        if(!file.equals(documentPath))
+            return;
+
+        synchronizeLastModifiedDate();
+        if(count == changeCount) {
+            changeReset();
+        }
+        documentDidSave(count == changeCount);
+    }
+
     public boolean close(boolean force) {
         if(performClose(force)) {
             if(!isInternalOnly()) {
                 XJApplication.shared().addRecentFile(getDocumentPath());
             }
+            if(documentPath != null) {
+                // Once the pending writes are done, the state of the file is not needed anymore
+                final String file = documentPath;
+                XJDocumentWriter.execute(new Runnable() {
+                    public void run() {
+                        XJDataPlainText.forgetDiskState(file);
+                    }
+                });
+            }
             return true;
         } else {
             return false;
@@ -242,6 +342,9 @@ public class XJDocument extends XJObject {
     }
 
     public boolean isModifiedOnDisk() {
+        // The file is being written by the document itself
+        if(pendingWrites.get() > 0)
+            return false;
         return fileMonitor.isModifiedOnDisk(getDocumentPath());
     }
 
@@ -357,6 +460,18 @@ public class XJDocument extends XJObject {
 
     }
 
+    /** Called after the document has been saved in background: the content on disk is the
+     * current content if upToDate is true, otherwise the document changed in the meantime.
+     */
+    public void documentDidSave(boolean upToDate) {
+
+    }
+
+    /** Called when a background save could not write the file. By default, the error is displayed. */
+    public void documentDidFailToSaveInBackground(String file, IOException error) {
+        XJAlert.display(getSwingComponent(), XJLocalizable.getXJString("DocError"), XJLocalizable.getXJString("DocSaveError")+" "+error.toString());
+    }
+
     public void documentWillReadData() {
 
     }
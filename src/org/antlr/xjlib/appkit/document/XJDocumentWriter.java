@@ -0,0 +1,70 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.xjlib.appkit.document;
+
+import java.util.concurrent.*;
+
+/** Dedicated thread used to write the documents and their related files on disk, so a slow
+ * disk or a network volume never blocks the event thread. The tasks are executed one after
+ * the other in the order they are submitted.
+ */
+public class XJDocumentWriter {
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Document Writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public static void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    public static void schedule(Runnable task, long delayInMilliseconds) {
+        executor.schedule(task, delayInMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /** Waits for the tasks already submitted to complete. Called before the application exits. */
+    public static void flush(long timeoutInSeconds) {
+        Future<?> future = executor.submit(new Runnable() {
+            public void run() {
+            }
+        });
+        try {
+            future.get(timeoutInSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // The pending writes will not complete
+        }
+    }
+}
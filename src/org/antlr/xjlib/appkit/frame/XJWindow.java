@@ -142,6 +142,13 @@ public class XJWindow extends XJFrame {
         }
     }
 
+    /** Saves the modified documents without blocking the event thread */
+    public void autoSaveAll() {
+        for (XJDocument document : documents) {
+            document.saveInBackground();
+        }
+    }
+
     public boolean closeDocuments(boolean force) {
         for(XJDocument doc : new ArrayList<XJDocument>(documents)) {
             if(!doc.close(force)) {
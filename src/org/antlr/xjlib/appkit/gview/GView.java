@@ -393,11 +393,16 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
 
         drawMagnetics(g2d);
         if(rootElement != null)
-            rootElement.drawRecursive(g2d);
+            drawElements(g2d);
 
         eventManager.performEventObjects(GEventManager.EVENT_DRAW, null, null, g);
     }
 
+    /** Draws the elements of the view. The graphics are already scaled to the zoom factor. */
+    protected void drawElements(Graphics2D g2d) {
+        rootElement.drawRecursive(g2d);
+    }
+
     public void addMenuItem(JPopupMenu menu, String title, int tag, Object object) {
         XJMenuItem item = new XJMenuItem();
         item.setTitle(title);
@@ -382,6 +382,11 @@ public abstract class GElement implements XJXMLSerializable {
             }
         }
 
+        drawElement(g);
+    }
+
+    /** Draws only this element (not its children) */
+    public void drawElement(Graphics2D g) {
         draw(g);
         if(isSelected())
             drawSelected(g);
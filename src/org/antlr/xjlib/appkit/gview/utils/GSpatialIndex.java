@@ -0,0 +1,199 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.xjlib.appkit.gview.utils;
+
+import org.antlr.xjlib.appkit.gview.base.Rect;
+import org.antlr.xjlib.appkit.gview.object.GElement;
+import org.antlr.xjlib.appkit.gview.object.GLink;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Uniform grid of the bounds of all the elements of a tree of GElement. It is used
+ * to draw and hit-test only the elements intersecting a rectangle or containing a point.
+ * The index does not follow the elements: it must be created again when they move.
+ */
+public class GSpatialIndex {
+
+    public static final int DEFAULT_CELL_SIZE = 256;
+
+    private final int cellSize;
+    private final Map<Long,List<Entry>> cells = new HashMap<Long, List<Entry>>();
+    private int entryCount = 0;
+    private int queryStamp = 0;
+
+    public GSpatialIndex(GElement root) {
+        this(root, DEFAULT_CELL_SIZE);
+    }
+
+    public GSpatialIndex(GElement root, int cellSize) {
+        this.cellSize = cellSize;
+        if(root != null)
+            addRecursive(root);
+    }
+
+    /** Returns the elements intersecting the rectangle, in the order they would be drawn
+     * by GElement.drawRecursive (children before their parent).
+     */
+    public List<GElement> getElementsInRect(Rectangle rect) {
+        queryStamp++;
+        List<Entry> found = new ArrayList<Entry>();
+        int x1 = cell(rect.x);
+        int x2 = cell(rect.x+rect.width);
+        int y1 = cell(rect.y);
+        int y2 = cell(rect.y+rect.height);
+        for(int cx=x1; cx<=x2; cx++) {
+            for(int cy=y1; cy<=y2; cy++) {
+                List<Entry> entries = cells.get(key(cx, cy));
+                if(entries == null) continue;
+
+                for(Entry entry : entries) {
+                    if(entry.stamp != queryStamp && entry.bounds.intersects(rect)) {
+                        entry.stamp = queryStamp;
+                        found.add(entry);
+                    }
+                }
+            }
+        }
+        Collections.sort(found);
+
+        List<GElement> elements = new ArrayList<GElement>(found.size());
+        for(Entry entry : found) {
+            elements.add(entry.element);
+        }
+        return elements;
+    }
+
+    /** Returns the element at the point with the same priority as GElement.match() */
+    public GElement getElementAtPoint(Point p) {
+        List<GElement> elements = getElementsInRect(new Rectangle(p.x, p.y, 1, 1));
+        for(GElement element : elements) {
+            if(element.isInside(p))
+                return element;
+        }
+        return null;
+    }
+
+    private void addRecursive(GElement root) {
+        // Iterative post-order traversal (children first) to match the drawing order
+        // without recursing on deep trees
+        Stack<GElement> stack = new Stack<GElement>();
+        Stack<GElement> output = new Stack<GElement>();
+        stack.push(root);
+        while(!stack.isEmpty()) {
+            GElement element = stack.pop();
+            output.push(element);
+            List<GElement> children = element.getElements();
+            if(children != null) {
+                for(GElement child : children) {
+                    stack.push(child);
+                }
+            }
+        }
+        while(!output.isEmpty()) {
+            add(output.pop());
+        }
+    }
+
+    private void add(GElement element) {
+        Rectangle bounds = getBounds(element);
+        if(bounds == null)
+            return;
+
+        Entry entry = new Entry(element, bounds, entryCount++);
+        int x1 = cell(bounds.x);
+        int x2 = cell(bounds.x+bounds.width);
+        int y1 = cell(bounds.y);
+        int y2 = cell(bounds.y+bounds.height);
+        for(int cx=x1; cx<=x2; cx++) {
+            for(int cy=y1; cy<=y2; cy++) {
+                Long key = key(cx, cy);
+                List<Entry> entries = cells.get(key);
+                if(entries == null) {
+                    entries = new ArrayList<Entry>();
+                    cells.put(key, entries);
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    private static Rectangle getBounds(GElement element) {
+        Rect frame;
+        if(element instanceof GLink) {
+            // A link is always drawn between its source and its target: use their frame
+            // instead of computing the geometry of the link
+            GLink link = (GLink)element;
+            Rect source = link.source == null ? null : link.source.getFrame();
+            Rect target = link.target == null ? null : link.target.getFrame();
+            frame = source == null || target == null ? link.getFrame() : source.union(target);
+        } else {
+            frame = element.getFrame();
+        }
+        if(frame == null)
+            return null;
+
+        Rectangle r = new Rectangle(frame.rectangle());
+        // some margin like GElement.isVisibleInClip()
+        r.width++;
+        r.height++;
+        return r;
+    }
+
+    private int cell(int coordinate) {
+        return (int)Math.floor((double)coordinate/cellSize);
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        public final GElement element;
+        public final Rectangle bounds;
+        public final int order;
+        public int stamp;
+
+        public Entry(GElement element, Rectangle bounds, int order) {
+            this.element = element;
+            this.bounds = bounds;
+            this.order = order;
+        }
+
+        public int compareTo(Entry other) {
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+}
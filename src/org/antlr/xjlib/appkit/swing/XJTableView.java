@@ -45,6 +45,7 @@ public class XJTableView extends JScrollPane {
 
     private XJTable table = new XJTable();
     private boolean alternateBackground = true;
+    private int maxMeasuredRows = -1;
 
     public XJTableView() {
         setViewportView(table);
@@ -80,9 +81,36 @@ public class XJTableView extends JScrollPane {
         }
     }
 
+    /** Limits the number of rows (the last ones) measured when the columns are resized.
+     * Use it for large tables where rendering every row would be too slow.
+     */
+    public void setMaxMeasuredRows(int maxMeasuredRows) {
+        this.maxMeasuredRows = maxMeasuredRows;
+    }
+
     public void autoresizeColumns() {
-        resizeTableColumnsToFitContent(table, 20);
+        int rowCount = table.getRowCount();
+        int fromRow = maxMeasuredRows == -1 ? 0 : Math.max(0, rowCount - maxMeasuredRows);
+        for(int c = 0; c < table.getColumnCount(); c++) {
+            resizeColumnToFitContent(table, c, 20, fromRow, rowCount, false);
+        }
+        fillLastColumn();
+    }
+
+    /** Widens the columns (if needed) to fit the specified rows, for example
+     * the rows that have just been appended to the table.
+     */
+    public void growColumnsToFitRows(int fromRow, int toRow) {
+        if(maxMeasuredRows != -1) {
+            fromRow = Math.max(fromRow, toRow - maxMeasuredRows);
+        }
+        for(int c = 0; c < table.getColumnCount(); c++) {
+            resizeColumnToFitContent(table, c, 20, fromRow, toRow, true);
+        }
+        fillLastColumn();
+    }
 
+    private void fillLastColumn() {
         TableColumnModel model = table.getColumnModel();
         int columnTotalWidth = 0;
         for(int i=0; i<model.getColumnCount()-1; i++) {
@@ -124,6 +152,11 @@ public class XJTableView extends JScrollPane {
     }
 
     public static void resizeColumnToFitContent(JTable table, int columnIndex, int margin) {
+        resizeColumnToFitContent(table, columnIndex, margin, 0, table.getRowCount(), false);
+    }
+
+    private static void resizeColumnToFitContent(JTable table, int columnIndex, int margin,
+                                                 int fromRow, int toRow, boolean growOnly) {
         TableColumn column = table.getColumnModel().getColumn(columnIndex);
         TableCellRenderer renderer = column.getHeaderRenderer();
         if (renderer == null) {
@@ -135,7 +168,7 @@ public class XJTableView extends JScrollPane {
                 0, 0);
         int maxWidth = c.getPreferredSize().width;
 
-        for(int row=0; row<table.getRowCount(); row++) {
+        for(int row=fromRow; row<toRow; row++) {
             renderer = table.getCellRenderer(row, columnIndex);
             c = renderer.getTableCellRendererComponent(table,
                     table.getValueAt(row, columnIndex),
@@ -144,7 +177,11 @@ public class XJTableView extends JScrollPane {
             maxWidth = Math.max(maxWidth, c.getPreferredSize().width);
         }
 
-        column.setPreferredWidth(maxWidth+margin);
+        if(growOnly) {
+            column.setPreferredWidth(Math.max(column.getPreferredWidth(), maxWidth+margin));
+        } else {
+            column.setPreferredWidth(maxWidth+margin);
+        }
     }
 
     public void scrollToLastRow() {
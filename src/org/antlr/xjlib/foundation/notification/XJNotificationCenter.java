@@ -31,48 +31,135 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.xjlib.foundation.notification;
 
-import java.util.*;
+import javax.swing.*;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/** Notifications can be posted and observers added or removed from any thread: the list of
+ * observers of a notification is copied each time it is modified. The observers are only
+ * weakly referenced so an observer that is never removed does not leak.
+ */
 public class XJNotificationCenter {
 
     private static XJNotificationCenter defaultCenter = new XJNotificationCenter();
 
-    private Map<String,List<XJNotificationObserver>> observers = new HashMap<String, List<XJNotificationObserver>>();
+    private final ConcurrentMap<String,List<ObserverReference>> observers = new ConcurrentHashMap<String, List<ObserverReference>>();
+
+    /** Notifications waiting to be delivered in the event thread */
+    private final Set<QueuedNotification> queue = new LinkedHashSet<QueuedNotification>();
+    private boolean deliveryScheduled = false;
 
     public static XJNotificationCenter defaultCenter() {
         return defaultCenter;
     }
 
     public void addObserver(XJNotificationObserver observer, String notifName) {
-        List<XJNotificationObserver> obs = observers.get(notifName);
+        List<ObserverReference> obs = observers.get(notifName);
         if(obs == null) {
-            obs = new ArrayList<XJNotificationObserver>();
-            observers.put(notifName, obs);
+            List<ObserverReference> newObs = new CopyOnWriteArrayList<ObserverReference>();
+            obs = observers.putIfAbsent(notifName, newObs);
+            if(obs == null) {
+                obs = newObs;
+            }
         }
-        obs.add(observer);
+        obs.add(new ObserverReference(observer));
     }
 
     public void removeObserver(XJNotificationObserver observer) {
-        for (Iterator<String> iterator = observers.keySet().iterator(); iterator.hasNext();) {
-            String notifName = iterator.next();
-            List<XJNotificationObserver> obs = observers.get(notifName);
-            for(int i=obs.size()-1; i>=0; i--) {
-                XJNotificationObserver candidate = obs.get(i);
-                if(candidate.equals(observer)) {
-                    obs.remove(i);
+        for(List<ObserverReference> obs : observers.values()) {
+            List<ObserverReference> removed = new ArrayList<ObserverReference>();
+            for(ObserverReference reference : obs) {
+                XJNotificationObserver candidate = reference.get();
+                if(candidate == null || candidate.equals(observer)) {
+                    removed.add(reference);
                 }
             }
+            obs.removeAll(removed);
         }
     }
 
+    /** Delivers the notification to the observers immediately, in the current thread */
     public void postNotification(Object source, String notifName) {
-        List<XJNotificationObserver> obs = observers.get(notifName);
+        List<ObserverReference> obs = observers.get(notifName);
         if(obs == null)
             return;
-        
-        for (Iterator<XJNotificationObserver> iterator = obs.iterator(); iterator.hasNext();) {
-            XJNotificationObserver observer = iterator.next();
-            observer.notificationFire(source, notifName);
+
+        for(ObserverReference reference : obs) {
+            XJNotificationObserver observer = reference.get();
+            if(observer == null) {
+                obs.remove(reference);
+            } else {
+                observer.notificationFire(source, notifName);
+            }
+        }
+    }
+
+    /** Delivers the notification later in the event thread. The same notification posted
+     * several times by the same source before it is delivered is only delivered once, after
+     * the notifications posted in between.
+     */
+    public void enqueueNotification(Object source, String notifName) {
+        QueuedNotification notification = new QueuedNotification(source, notifName);
+        synchronized(queue) {
+            queue.remove(notification);
+            queue.add(notification);
+            if(deliveryScheduled)
+                return;
+            deliveryScheduled = true;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                deliverQueuedNotifications();
+            }
+        });
+    }
+
+    private void deliverQueuedNotifications() {
+        List<QueuedNotification> notifications;
+        synchronized(queue) {
+            notifications = new ArrayList<QueuedNotification>(queue);
+            queue.clear();
+            deliveryScheduled = false;
+        }
+        for(QueuedNotification notification : notifications) {
+            postNotification(notification.source, notification.name);
+        }
+    }
+
+    private static class ObserverReference extends WeakReference<XJNotificationObserver> {
+
+        public ObserverReference(XJNotificationObserver observer) {
+            super(observer);
+        }
+    }
+
+    private static class QueuedNotification {
+
+        public final Object source;
+        public final String name;
+
+        public QueuedNotification(Object source, String name) {
+            this.source = source;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof QueuedNotification))
+                return false;
+            QueuedNotification other = (QueuedNotification) o;
+            return source == other.source && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source)*31+name.hashCode();
         }
     }
 }
@@ -48,6 +48,7 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 public abstract class AbstractTest extends TestCase {
 
     private GrammarEngine engine = new GrammarEngineImpl(new MyGrammarEngineDelegate());
+    private String fileName;
     private String text;
     private String vocabFile;
 
@@ -57,7 +58,12 @@ public abstract class AbstractTest extends TestCase {
     }
 
     public void parseFile(String fileName) throws IOException {
-        this.text = getTextFromFile(fileName);
+        parseText(null, getTextFromFile(fileName));
+    }
+
+    public void parseText(String fileName, String text) {
+        this.fileName = fileName;
+        this.text = text;
         engine.getSyntaxEngine().setDelegate(new MySyntaxEngineDelegate());
         engine.getSyntaxEngine().processSyntax();
         engine.parserCompleted();
@@ -100,7 +106,7 @@ public abstract class AbstractTest extends TestCase {
         }
 
         public String getGrammarFileName() {
-            return null;
+            return fileName;
         }
 
         public String getGrammarText() {
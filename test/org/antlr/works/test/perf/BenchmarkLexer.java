@@ -0,0 +1,114 @@
+package org.antlr.works.test.perf;
+
+import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
+import org.antlr.works.grammar.syntax.GrammarSyntaxLexer;
+import org.antlr.works.test.TestConstants;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.util.Random;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Measures the latency of a keystroke in the grammar lexer, comparing the incremental
+ * tokenization against the full tokenization of the text. Run it with the test classpath:
+ *
+ * java org.antlr.works.test.perf.BenchmarkLexer [copies]
+ *
+ * The benchmark follows the usual warmup/measurement iterations scheme.
+ */
+public class BenchmarkLexer {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+    private static final int KEYSTROKES = 200;
+
+    public static void main(String[] args) throws Exception {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+
+        String grammar = XJUtils.getStringFromFile(BenchmarkLexer.class.getResource(TestConstants.MANTRA).getFile());
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<copies; i++) {
+            sb.append(grammar);
+        }
+        String text = sb.toString();
+        System.out.println("Text of "+text.length()+" characters and "+text.split("\n").length+" lines");
+
+        report("full", run(text, false));
+        report("incremental", run(text, true));
+    }
+
+    private static double[] run(String text, boolean incremental) {
+        double[] results = new double[MEASUREMENT_ITERATIONS];
+        for(int i=0; i<WARMUP_ITERATIONS+MEASUREMENT_ITERATIONS; i++) {
+            double time = iteration(text, incremental);
+            if(i >= WARMUP_ITERATIONS) {
+                results[i-WARMUP_ITERATIONS] = time;
+            }
+        }
+        return results;
+    }
+
+    /** Returns the average time in microseconds of one keystroke */
+    private static double iteration(String text, boolean incremental) {
+        ATESyntaxLexer lexer = new GrammarSyntaxLexer();
+        lexer.setIncremental(incremental);
+        lexer.tokenize(text);
+
+        Random random = new Random(0);
+        long total = 0;
+        for(int i=0; i<KEYSTROKES; i++) {
+            int offset = random.nextInt(text.length());
+            text = text.substring(0, offset)+"x"+text.substring(offset);
+
+            long t = System.nanoTime();
+            lexer.changeUpdate(offset, 1);
+            lexer.tokenize(text);
+            total += System.nanoTime() - t;
+        }
+        return total / 1000.0 / KEYSTROKES;
+    }
+
+    private static void report(String name, double[] results) {
+        double mean = 0;
+        for(double r : results) {
+            mean += r;
+        }
+        mean /= results.length;
+
+        double variance = 0;
+        for(double r : results) {
+            variance += (r - mean) * (r - mean);
+        }
+        double deviation = Math.sqrt(variance / Math.max(1, results.length - 1));
+
+        System.out.println(String.format("%-12s %10.1f +/- %.1f us/keystroke", name, mean, deviation));
+    }
+}
@@ -0,0 +1,186 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.grammar.EditListMutator;
+import org.antlr.works.test.AbstractTest;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import javax.swing.undo.UndoableEdit;
+import java.util.Random;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestEditListMutator extends AbstractTest {
+
+    private static final String[] SNIPPETS = new String[] {
+            "", "x", "foo", "\n", "\n\n", "'a'", "rule"
+    };
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestEditListMutator.class));
+    }
+
+    public void testDescendingEdits() throws Exception {
+        String text = "a : B ;\nb : B ;\nc : B ;\n";
+        EditListMutator mutator = new EditListMutator(text);
+        for(int index = text.lastIndexOf('B'); index >= 0; index = text.lastIndexOf('B', index-1)) {
+            mutator.replace(index, index+1, "TOKEN");
+        }
+        assertEquals("descending", "a : TOKEN ;\nb : TOKEN ;\nc : TOKEN ;\n", mutator.getText());
+        assertApplyAndUndo(text, mutator, mutator.getText());
+    }
+
+    public void testOverlappingEdits() throws Exception {
+        String text = "abcdefghij";
+        EditListMutator mutator = new EditListMutator(text);
+        StringBuilder reference = new StringBuilder(text);
+
+        mutator.replace(2, 4, "XY");
+        reference.replace(2, 4, "XY");
+        mutator.insert(4, "Z");
+        reference.insert(4, "Z");
+        mutator.delete(1, 6);
+        reference.delete(1, 6);
+        mutator.insert(0, "<");
+        reference.insert(0, "<");
+
+        assertEquals("overlapping", reference.toString(), mutator.getText());
+        assertApplyAndUndo(text, mutator, reference.toString());
+    }
+
+    public void testRandomEdits() throws Exception {
+        Random random = new Random(1);
+        for(int i=0; i<2000; i++) {
+            String text = createText(random);
+            EditListMutator mutator = new EditListMutator(text);
+            StringBuilder reference = new StringBuilder(text);
+
+            int count = random.nextInt(15);
+            for(int k=0; k<count; k++) {
+                int length = reference.length();
+                int start = random.nextInt(length+1);
+                int end = start+random.nextInt(Math.min(5, length-start)+1);
+                String s = SNIPPETS[random.nextInt(SNIPPETS.length)];
+                switch(random.nextInt(4)) {
+                    case 0:
+                        mutator.replace(start, end, s);
+                        reference.replace(start, end, s);
+                        break;
+                    case 1:
+                        mutator.insert(start, s);
+                        reference.insert(start, s);
+                        break;
+                    case 2:
+                        mutator.delete(start, end);
+                        reference.delete(start, end);
+                        break;
+                    case 3:
+                        if(start > 0 && start < length-1) {
+                            mutator.insertAtLinesBoundary(start, s);
+                            insertAtLinesBoundary(reference, start, s);
+                        }
+                        break;
+                }
+
+                assertEquals("text "+i+"/"+k, reference.toString(), mutator.getText());
+                assertEquals("length "+i+"/"+k, reference.length(), mutator.length());
+                for(int c=0; c<reference.length(); c++) {
+                    assertEquals("char "+c+" "+i+"/"+k, reference.charAt(c), mutator.charAt(c));
+                }
+            }
+
+            assertApplyAndUndo(text, mutator, reference.toString());
+        }
+    }
+
+    public void testFailedApplyRestoresText() throws Exception {
+        String text = "a : B ;\nb : B ;\nc : B ;\n";
+        EditListMutator mutator = new EditListMutator(text);
+        mutator.replace(4, 5, "T1");
+        mutator.replace(12, 13, "T2");
+        mutator.replace(20, 21, "T3");
+
+        // The edit of the first rule is applied last and fails
+        PlainDocument doc = new PlainDocument() {
+            @Override
+            public void remove(int offs, int len) throws BadLocationException {
+                if(offs == 4) throw new BadLocationException("locked", offs);
+                super.remove(offs, len);
+            }
+        };
+        doc.insertString(0, text, null);
+
+        try {
+            mutator.apply(doc, null);
+            fail("the edit cannot be applied");
+        } catch(BadLocationException e) {
+            assertEquals("restored", text, doc.getText(0, doc.getLength()));
+        }
+    }
+
+    private void assertApplyAndUndo(String text, EditListMutator mutator, String expected) throws Exception {
+        PlainDocument doc = new PlainDocument();
+        doc.insertString(0, text, null);
+
+        UndoableEdit edit = mutator.apply(doc, null);
+        assertEquals("apply", expected, doc.getText(0, doc.getLength()));
+
+        edit.undo();
+        assertEquals("undo", text, doc.getText(0, doc.getLength()));
+
+        edit.redo();
+        assertEquals("redo", expected, doc.getText(0, doc.getLength()));
+    }
+
+    private static String createText(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = 2+random.nextInt(40);
+        for(int i=0; i<length; i++) {
+            sb.append((char)('a'+random.nextInt(4)));
+            if(random.nextInt(8) == 0) sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Same algorithm as the refactoring mutator of the editor, applied to a copy of the text */
+    private static void insertAtLinesBoundary(StringBuilder sb, int index, String s) {
+        if(!(sb.charAt(index) == '\n' && sb.charAt(index-1) == '\n')) {
+            sb.insert(index++, '\n');
+        }
+        sb.insert(index, s);
+        int end = index+s.length();
+        if(!(sb.charAt(end) == '\n' && end+1 < sb.length() && sb.charAt(end+1) == '\n')) {
+            sb.insert(end, '\n');
+        }
+    }
+}
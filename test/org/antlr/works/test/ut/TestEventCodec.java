@@ -0,0 +1,186 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tree.DBTreeToken;
+import org.antlr.works.test.AbstractTest;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestEventCodec extends AbstractTest {
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestEventCodec.class));
+    }
+
+    public void testAllEventTypes() throws Exception {
+        Set<Integer> types = new HashSet<Integer>();
+        for(DBEvent event : createEvents()) {
+            types.add(event.getEventType());
+            if(event.getEventType() == DBEvent.RECOGNITION_EXCEPTION) {
+                assertFalse(DBEventCodec.canEncode(event));
+            } else {
+                assertRoundTrip(event);
+            }
+        }
+        for(int type=DBEvent.ALL; type<=DBEvent.ERROR_NODE; type++) {
+            assertTrue("Event type "+DBEvent.getEventName(type)+" not tested", types.contains(type));
+        }
+    }
+
+    public void testTokens() throws Exception {
+        CommonToken common = new CommonToken(4, "ID");
+        common.setTokenIndex(7);
+        common.setChannel(Token.HIDDEN_CHANNEL);
+        common.setLine(3);
+        common.setCharPositionInLine(12);
+        common.setStartIndex(40);
+        common.setStopIndex(41);
+
+        Token proxy = new RemoteDebugEventSocketListener.ProxyToken(8, 5, 0, 4, 2, "INT");
+        Token tree = new DBTreeToken(new RemoteDebugEventSocketListener.ProxyTree(12, 6, 5, 1, 9, "PLUS"));
+
+        assertToken(common, roundTrip(new DBEventConsumeToken(common)));
+        assertToken(proxy, roundTrip(new DBEventConsumeToken(proxy)));
+        assertToken(tree, roundTrip(new DBEventConsumeToken(tree)));
+        assertNull(((DBEventConsumeToken)roundTrip(new DBEventConsumeToken(null))).token);
+
+        Token decoded = ((DBEventConsumeToken)roundTrip(new DBEventConsumeToken(common))).token;
+        assertEquals(CommonToken.class, decoded.getClass());
+        assertEquals(40, ((CommonToken)decoded).getStartIndex());
+        assertEquals(41, ((CommonToken)decoded).getStopIndex());
+        assertEquals(DBTreeToken.class, ((DBEventLT)roundTrip(new DBEventLT(1, tree))).token.getClass());
+    }
+
+    public void testStrings() throws Exception {
+        DBEventEnterRule rule = new DBEventEnterRule(null, "régle\n中");
+        DBEventEnterRule decoded = (DBEventEnterRule)roundTrip(rule);
+        assertNull(decoded.grammarFileName);
+        assertEquals(rule.name, decoded.name);
+
+        DBEventCreateNode node = (DBEventCreateNode)roundTrip(new DBEventCreateNode(3, "", 0));
+        assertEquals("", node.text);
+        assertEquals(-1, node.tokenIndex);
+    }
+
+    private List<DBEvent> createEvents() {
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        events.add(new DBEvent(DBEvent.ALL));
+        events.add(new DBEvent(DBEvent.NONE));
+        events.add(new DBEvent(DBEvent.COMMENCE));
+        events.add(new DBEvent(DBEvent.TERMINATE));
+        events.add(new DBEventLocation(10, 4));
+        events.add(new DBEventConsumeToken(new RemoteDebugEventSocketListener.ProxyToken(0, 4, 0, 1, 0, "a")));
+        events.add(new DBEventConsumeHiddenToken(new RemoteDebugEventSocketListener.ProxyToken(1, 5, 99, 1, 1, " ")));
+        events.add(new DBEventLT(2, new RemoteDebugEventSocketListener.ProxyToken(2, 6, 0, 2, 0, "b")));
+        events.add(new DBEventEnterRule("T.g", "prog"));
+        events.add(new DBEventExitRule("T.g", "prog"));
+        events.add(new DBEventEnterSubRule(1));
+        events.add(new DBEventExitSubRule(1));
+        events.add(new DBEventEnterDecision(2));
+        events.add(new DBEventExitDecision(2));
+        events.add(new DBEventEnterAlt(3));
+        events.add(new DBEventMark(4));
+        events.add(new DBEventRewind(4));
+        events.add(new DBEventBeginBacktrack(1));
+        events.add(new DBEventEndBacktrack(1, true));
+        events.add(new DBEvent(DBEvent.BEGIN_RESYNC));
+        events.add(new DBEvent(DBEvent.END_RESYNC));
+        events.add(new DBEventNilNode(5));
+        events.add(new DBEventCreateNode(6, 2));
+        events.add(new DBEventCreateNode(7, "IMAGINARY", 8));
+        events.add(new DBEventBecomeRoot(6, 5));
+        events.add(new DBEventAddChild(6, 7));
+        events.add(new DBEventSetTokenBoundaries(6, 0, 2));
+        events.add(new DBEventRecognitionException(null));
+        events.add(new DBEventErrorNode(8, "error", 0));
+
+        for(DBEvent event : events) {
+            event.setGrammarName("T");
+        }
+        return events;
+    }
+
+    private void assertRoundTrip(DBEvent event) throws Exception {
+        assertTrue(DBEvent.getEventName(event.getEventType()), DBEventCodec.canEncode(event));
+        DBEvent decoded = roundTrip(event);
+        assertEquals(event.getClass(), decoded.getClass());
+        assertEquals(event.getEventType(), decoded.getEventType());
+        assertEquals(event.getGrammarName(), decoded.getGrammarName());
+        if(event.getClass() != DBEvent.class) {
+            assertEquals(event.toString(), decoded.toString());
+        }
+        // Encoding the decoded event must give the same bytes, i.e. no field is lost
+        assertEquals(DBEvent.getEventName(event.getEventType()), toString(encode(event)), toString(encode(decoded)));
+    }
+
+    private void assertToken(Token expected, DBEvent decoded) {
+        Token token = ((DBEventConsumeToken)decoded).token;
+        assertEquals(expected.getClass(), token.getClass());
+        assertEquals(expected.getTokenIndex(), token.getTokenIndex());
+        assertEquals(expected.getType(), token.getType());
+        assertEquals(expected.getChannel(), token.getChannel());
+        assertEquals(expected.getLine(), token.getLine());
+        assertEquals(expected.getCharPositionInLine(), token.getCharPositionInLine());
+        assertEquals(expected.getText(), token.getText());
+    }
+
+    private DBEvent roundTrip(DBEvent event) throws IOException {
+        return DBEventCodec.decode(new DataInputStream(new ByteArrayInputStream(encode(event))));
+    }
+
+    private byte[] encode(DBEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        DBEventCodec.encode(event, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static String toString(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(Integer.toHexString(b & 0xff)).append(' ');
+        }
+        return sb.toString();
+    }
+
+}
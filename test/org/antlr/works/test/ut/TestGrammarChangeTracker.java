@@ -0,0 +1,214 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.analysis.DFA;
+import org.antlr.tool.ErrorManager;
+import org.antlr.works.grammar.antlr.GrammarChangeTracker;
+import org.antlr.works.grammar.antlr.GrammarResult;
+import org.antlr.works.grammar.antlr.IncrementalGrammar;
+import org.antlr.works.test.AbstractTest;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestGrammarChangeTracker extends AbstractTest {
+
+    /** Two groups of rules: {d, e} and {a, b, c}. The decisions of d, e, a, b and c
+     * are numbered in this order.
+     */
+    private static final String GRAMMAR =
+            "grammar T;\n" +
+            "d : ID ID | INT ;\n" +
+            "e : d+ ;\n" +
+            "a : b | c ;\n" +
+            "b : ID {foo();} (',' ID)* ;\n" +
+            "c : INT ('+' INT)* ;\n" +
+            "ID : 'a'..'z'+ ;\n" +
+            "INT : '0'..'9'+ ;\n";
+
+    private GrammarResult result;
+    private List<String> analyzed;
+    private List<String> reused;
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestGrammarChangeTracker.class));
+    }
+
+    public void testFirstAnalysis() throws Exception {
+        analyze(GRAMMAR);
+        assertDecisions("d e a b c", "");
+    }
+
+    public void testUnchangedGrammar() throws Exception {
+        analyze(GRAMMAR);
+        analyze(GRAMMAR);
+        assertDecisions("", "d e a b c");
+    }
+
+    public void testActionsAreIgnored() throws Exception {
+        analyze(GRAMMAR);
+        analyze(GRAMMAR.replace("{foo();}", "{bar(); foo();}"));
+        assertDecisions("", "d e a b c");
+    }
+
+    public void testChangedRuleAndConnectedRules() throws Exception {
+        analyze(GRAMMAR);
+        // Same states but different labels: the numbering of the other rules does not change
+        analyze(GRAMMAR.replace("d : ID ID | INT ;", "d : INT | ID ID ;"));
+        assertDecisions("d e", "a b c");
+
+        analyze(GRAMMAR.replace("d : ID ID | INT ;", "d : INT | ID ID ;").replace("('+' INT)*", "('+' INT INT)*"));
+        assertDecisions("a b c", "d e");
+    }
+
+    public void testNumberingChange() throws Exception {
+        analyze(GRAMMAR);
+        // One more decision in e shifts the decisions and states of a, b and c
+        analyze(GRAMMAR.replace("e : d+ ;", "e : d+ d? ;"));
+        assertDecisions("d e e a b c", "");
+    }
+
+    public void testVocabularyChange() throws Exception {
+        analyze(GRAMMAR);
+        analyze(GRAMMAR.replace("(',' ID)*", "(';' ID)*"));
+        assertDecisions("d e a b c", "");
+    }
+
+    public void testDecisionWithMessagesIsAnalyzedAgain() throws Exception {
+        String grammar = GRAMMAR.replace("d : ID ID | INT ;", "d : ID ID | INT | ID ID ;");
+        analyze(grammar);
+        assertDecisions("d e a b c", "");
+        assertFalse(result.warnings.isEmpty());
+        analyze(grammar);
+        assertDecisions("d", "e a b c");
+    }
+
+    public void testCancelledAnalysis() throws Exception {
+        GrammarChangeTracker tracker = new GrammarChangeTracker();
+        IncrementalGrammar g = createGrammar(GRAMMAR);
+        tracker.beginAnalysis(g);
+        for(int decision = 1; decision <= g.getNumberOfDecisions(); decision++) {
+            g.analyzeDecision(decision);
+            tracker.decisionAnalyzed(decision, true, new HashSet<String>());
+        }
+        tracker.endAnalysis();
+
+        // The analysis is cancelled after the first decision: only that one is remembered
+        g = createGrammar(GRAMMAR);
+        tracker.beginAnalysis(g);
+        tracker.decisionReused(1);
+        tracker.endAnalysis();
+
+        g = createGrammar(GRAMMAR);
+        tracker.beginAnalysis(g);
+        assertTrue(tracker.canReuseDecision(g, 1));
+        for(int decision = 2; decision <= g.getNumberOfDecisions(); decision++) {
+            assertFalse("decision "+decision, tracker.canReuseDecision(g, decision));
+        }
+    }
+
+    public void testDeferredDecisions() throws Exception {
+        analyze(GRAMMAR);
+        IncrementalGrammar g = analyze(GRAMMAR);
+        IncrementalGrammar reference = createGrammar(GRAMMAR);
+        reference.createLookaheadDFAs();
+
+        assertEquals(5, g.getNumberOfDeferredDecisions());
+        for(int decision=1; decision<=g.getNumberOfDecisions(); decision++) {
+            DFA dfa = g.getLookaheadDFA(decision);
+            assertNotNull(dfa);
+            assertEquals("decision "+decision, reference.getLookaheadDFA(decision).toString(), dfa.toString());
+        }
+        assertEquals(0, g.getNumberOfDeferredDecisions());
+    }
+
+    public void testEngineResult() throws Exception {
+        analyze(GRAMMAR);
+        assertTrue(result.isSuccess());
+        assertEquals(5, result.analyzedDecisions);
+        assertEquals(0, result.reusedDecisions);
+
+        analyze(GRAMMAR.replace("d : ID ID | INT ;", "d : INT | ID ID ;"));
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.analyzedDecisions);
+        assertEquals(3, result.reusedDecisions);
+    }
+
+    /** Analyzes the grammar with the engine and records the rule of each decision
+     * analyzed or reused (its DFA is then deferred).
+     */
+    private IncrementalGrammar analyze(String text) throws Exception {
+        parseText("T.g", text);
+        getEngine().markDirty();
+        result = getEngine().analyze();
+
+        IncrementalGrammar g = (IncrementalGrammar) getEngine().getANTLRGrammarEngine().getParserGrammar();
+        analyzed = new ArrayList<String>();
+        reused = new ArrayList<String>();
+        for(int decision = 1; decision <= g.getNumberOfDecisions(); decision++) {
+            String rule = g.getDecisionNFAStartState(decision).enclosingRule.name;
+            if(g.isDeferredDecision(decision)) {
+                reused.add(rule);
+            } else {
+                analyzed.add(rule);
+            }
+        }
+        assertEquals(analyzed.size(), result.analyzedDecisions);
+        assertEquals(reused.size(), result.reusedDecisions);
+        return g;
+    }
+
+    private IncrementalGrammar createGrammar(String text) throws Exception {
+        IncrementalGrammar g = new IncrementalGrammar();
+        g.setFileName("T.g");
+        g.setGrammarContent(text);
+        g.composite.createNFAs();
+        ErrorManager.resetErrorState();
+        return g;
+    }
+
+    private void assertDecisions(String expectedAnalyzed, String expectedReused) {
+        assertEquals("analyzed", expectedAnalyzed, join(analyzed));
+        assertEquals("reused", expectedReused, join(reused));
+    }
+
+    private static String join(List<String> names) {
+        StringBuilder sb = new StringBuilder();
+        for(String name : names) {
+            if(sb.length() > 0) sb.append(' ');
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,214 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.components.GrammarEditJournal;
+import org.antlr.works.stats.StatisticsManager;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.utils.Console;
+import org.antlr.xjlib.appkit.document.XJDocumentWriter;
+
+import javax.swing.text.PlainDocument;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestGrammarEditJournal extends AbstractTest {
+
+    private static final String PATH = "/grammars/T.g";
+    private static final String TEXT = "grammar T;\na : ID ;\nID : 'a'..'z'+ ;\n";
+
+    private String userHome;
+    private File home;
+    private PlainDocument document;
+    private MockConsole console;
+    private GrammarEditJournal journal;
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestGrammarEditJournal.class));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // The journal is stored in the user directory: use a temporary one instead
+        userHome = System.getProperty("user.home");
+        home = File.createTempFile("antlrworks", "home");
+        home.delete();
+        home.mkdirs();
+        System.setProperty("user.home", home.getAbsolutePath());
+
+        document = new PlainDocument();
+        document.insertString(0, TEXT, null);
+        console = new MockConsole();
+        journal = new GrammarEditJournal(document, console);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        journal.close();
+        XJDocumentWriter.flush(10);
+        System.setProperty("user.home", userHome);
+        delete(home);
+        super.tearDown();
+    }
+
+    public void testRecoverEdits() throws Exception {
+        journal.reset(PATH, TEXT, TEXT);
+        document.insertString(TEXT.indexOf("ID ;"), "b ", null);
+        document.remove(0, "grammar T;\n".length());
+        waitForJournal();
+
+        assertEquals(document.getText(0, document.getLength()), GrammarEditJournal.recover(PATH, TEXT));
+        assertTrue(console.messages.isEmpty());
+    }
+
+    public void testRecoverUnchanged() throws Exception {
+        journal.reset(PATH, TEXT, TEXT);
+        waitForJournal();
+        assertNull(GrammarEditJournal.recover(PATH, TEXT));
+        assertNull(GrammarEditJournal.recover("/grammars/U.g", TEXT));
+    }
+
+    public void testRecoverDigestMismatch() throws Exception {
+        journal.reset(PATH, TEXT, TEXT+"b : ID ;\n");
+        waitForJournal();
+
+        // The grammar on disk is not the one the journal started from
+        assertNull(GrammarEditJournal.recover(PATH, TEXT+"\n"));
+        assertEquals(TEXT+"b : ID ;\n", GrammarEditJournal.recover(PATH, TEXT));
+    }
+
+    public void testRecoverTruncatedLastEdit() throws Exception {
+        journal.reset(PATH, TEXT, TEXT);
+        document.insertString(0, "// first\n", null);
+        document.insertString(0, "// second\n", null);
+        waitForJournal();
+
+        // The last edit was being written when the application quit
+        File[] files = getJournalFiles();
+        assertEquals(1, files.length);
+        RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+        try {
+            file.setLength(file.length()-1);
+        } finally {
+            file.close();
+        }
+
+        assertEquals("// first\n"+TEXT, GrammarEditJournal.recover(PATH, TEXT));
+    }
+
+    public void testRecoverTextNotSaved() throws Exception {
+        // The journal starts with the difference between the text on disk and the text in the editor
+        assertHeader(TEXT, TEXT.replace("a : ID ;", "a : ID INT ;"));
+        assertHeader(TEXT, TEXT.replace("a : ID ;\n", ""));
+        assertHeader(TEXT, "");
+        assertHeader("", TEXT);
+        assertHeader("aaa", "aa");
+        assertHeader("abab", "ab");
+        assertHeader("ab", "abab");
+    }
+
+    public void testWriteError() throws Exception {
+        journal.reset(PATH, TEXT, TEXT);
+        waitForJournal();
+        File[] files = getJournalFiles();
+        assertEquals(1, files.length);
+
+        // The journal cannot be written anymore
+        files[0].delete();
+        files[0].mkdir();
+        document.insertString(0, "// comment\n", null);
+        waitForJournal();
+
+        assertEquals(1, console.messages.size());
+        assertTrue(console.messages.get(0), console.messages.get(0).startsWith("Cannot write the journal"));
+    }
+
+    private void assertHeader(String base, String current) {
+        journal.reset(PATH, base, current);
+        XJDocumentWriter.flush(10);
+        assertEquals(current, GrammarEditJournal.recover(PATH, base));
+    }
+
+    private void waitForJournal() throws InterruptedException {
+        // The edits are appended after a delay
+        Thread.sleep(GrammarEditJournal.FLUSH_DELAY+200);
+        XJDocumentWriter.flush(10);
+    }
+
+    private File[] getJournalFiles() {
+        File[] files = new File(StatisticsManager.getAbsoluteFileName(GrammarEditJournal.JOURNAL_DIR)).listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static class MockConsole implements Console {
+
+        public final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        public void setMode(int mode) {
+        }
+
+        public void println(String s) {
+            println(s, Console.LEVEL_NORMAL);
+        }
+
+        public void println(String s, int level) {
+            messages.add(s);
+        }
+
+        public void println(Throwable e) {
+            messages.add(e.toString());
+        }
+
+        public void print(String string, int level) {
+            messages.add(string);
+        }
+
+        public void print(Throwable e) {
+            messages.add(e.toString());
+        }
+    }
+}
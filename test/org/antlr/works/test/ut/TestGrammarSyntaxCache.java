@@ -0,0 +1,220 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.grammar.antlr.GrammarError;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.syntax.GrammarSyntaxCache;
+import org.antlr.works.stats.StatisticsManager;
+import org.antlr.works.test.AbstractTest;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestGrammarSyntaxCache extends AbstractTest {
+
+    private static final String GRAMMAR =
+            "grammar T;\n" +
+            "options { output=AST; }\n" +
+            "a : b (',' b)* -> ^(LIST b+) ;\n" +
+            "b : ID {foo();} | INT ;\n" +
+            "ID : 'a'..'z'+ ;\n" +
+            "INT : '0'..'9'+ ;\n";
+
+    private static final String MESSAGE = "Decision can match input such as ID";
+
+    private String userHome;
+    private File home;
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestGrammarSyntaxCache.class));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // The cache is stored in the user directory: use a temporary one instead
+        userHome = System.getProperty("user.home");
+        home = File.createTempFile("antlrworks", "home");
+        home.delete();
+        home.mkdirs();
+        System.setProperty("user.home", home.getAbsolutePath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        System.setProperty("user.home", userHome);
+        delete(home);
+        super.tearDown();
+    }
+
+    public void testStoreAndLoad() throws Exception {
+        storeWarning();
+        assertEquals(1, getCacheFiles().length);
+
+        GrammarSyntaxCache.Entry entry = GrammarSyntaxCache.load(GRAMMAR);
+        assertNotNull(entry);
+        assertTrue(entry.hasWarnings());
+
+        // The warnings are restored on the rules of the next parsing of the same text
+        parseText("T.g", GRAMMAR);
+        List<ElementRule> rules = getEngine().getRules();
+        assertTrue(entry.restore(rules));
+
+        ElementRule rule = rules.get(1);
+        assertTrue(rule.hasErrors());
+        assertEquals(1, rule.getErrors().size());
+        assertEquals(4, rule.getErrors().get(0).line);
+        assertEquals(MESSAGE, rule.getErrors().get(0).messageText);
+        assertFalse(rule.needsToBuildErrors());
+        assertNull(rules.get(0).getErrors());
+    }
+
+    public void testStoreWithoutWarnings() {
+        parseText("T.g", GRAMMAR);
+        GrammarSyntaxCache.Entry entry = GrammarSyntaxCache.Entry.create(getEngine().getRules());
+        assertFalse(entry.hasWarnings());
+
+        GrammarSyntaxCache.store(GRAMMAR, entry);
+        assertEquals(0, getCacheFiles().length);
+    }
+
+    public void testRestoreAnalyzedRules() {
+        storeWarning();
+        GrammarSyntaxCache.Entry entry = GrammarSyntaxCache.load(GRAMMAR);
+        assertNotNull(entry);
+
+        // The analysis completed before the entry was loaded: its result is kept
+        parseText("T.g", GRAMMAR);
+        List<ElementRule> rules = getEngine().getRules();
+        for(ElementRule rule : rules) {
+            rule.setErrors(new ArrayList<GrammarError>());
+        }
+        assertFalse(entry.restore(rules));
+        assertFalse(rules.get(1).hasErrors());
+    }
+
+    public void testRestoreOtherRules() {
+        storeWarning();
+        GrammarSyntaxCache.Entry entry = GrammarSyntaxCache.load(GRAMMAR);
+        assertNotNull(entry);
+
+        parseText("T.g", GRAMMAR.replace("a : b", "a  : b"));
+        assertFalse(entry.restore(getEngine().getRules()));
+
+        parseText("T.g", GRAMMAR.replace("INT", "NUMBER"));
+        assertFalse(entry.restore(getEngine().getRules()));
+        for(ElementRule rule : getEngine().getRules()) {
+            assertNull(rule.getErrors());
+        }
+    }
+
+    public void testLoadUnknownText() {
+        storeWarning();
+
+        assertNull(GrammarSyntaxCache.load(GRAMMAR+"\n"));
+        assertNotNull(GrammarSyntaxCache.load(GRAMMAR));
+    }
+
+    public void testLoadCorruptedEntry() throws Exception {
+        storeWarning();
+        File[] files = getCacheFiles();
+        assertEquals(1, files.length);
+
+        FileOutputStream os = new FileOutputStream(files[0]);
+        try {
+            os.write("not an entry".getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+
+        assertNull(GrammarSyntaxCache.load(GRAMMAR));
+        assertFalse(files[0].exists());
+    }
+
+    public void testLoadTruncatedEntry() throws Exception {
+        storeWarning();
+        File[] files = getCacheFiles();
+        assertEquals(1, files.length);
+
+        RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+        try {
+            file.setLength(file.length()-1);
+        } finally {
+            file.close();
+        }
+
+        assertNull(GrammarSyntaxCache.load(GRAMMAR));
+        assertFalse(files[0].exists());
+    }
+
+    /** Parses the grammar, sets a warning on its second rule and stores it in the cache */
+    private void storeWarning() {
+        parseText("T.g", GRAMMAR);
+        List<ElementRule> rules = getEngine().getRules();
+        assertEquals(4, rules.size());
+
+        List<GrammarError> errors = new ArrayList<GrammarError>();
+        GrammarError error = new GrammarError();
+        error.setLine(4);
+        error.setMessageText(MESSAGE);
+        errors.add(error);
+        rules.get(1).setErrors(errors);
+
+        GrammarSyntaxCache.store(GRAMMAR, GrammarSyntaxCache.Entry.create(rules));
+    }
+
+    private File[] getCacheFiles() {
+        File dir = new File(StatisticsManager.getAbsoluteFileName(GrammarSyntaxCache.CACHE_DIR));
+        File[] files = dir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(GrammarSyntaxCache.CACHE_EXTENSION);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
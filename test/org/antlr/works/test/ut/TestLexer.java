@@ -0,0 +1,156 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.test.TestConstants;
+
+import java.util.List;
+import java.util.Random;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestLexer extends AbstractTest {
+
+    private static final String[] SNIPPETS = new String[] {
+            "a", "foo", " ", "\n", "'", "\"", "//", "/*", "*/", "\\", "{", "}", "->", ";", ":", "$x", "'x'\n"
+    };
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestLexer.class));
+    }
+
+    public void testIncrementalLexing() throws Exception {
+        assertIncrementalLexing(TestConstants.BLOCKS, 1);
+        assertIncrementalLexing(TestConstants.REFERENCES, 2);
+        assertIncrementalLexing(TestConstants.MANTRA, 3);
+    }
+
+    public void testIncrementalLexingMultipleChanges() throws Exception {
+        String text = "a : 'x' /* c */ b ;\nb : B ;\n";
+        IncrementalEngine incremental = new IncrementalEngine(text);
+        IncrementalEngine full = new IncrementalEngine(text);
+        full.getLexer().setIncremental(false);
+
+        // Two changes before the next tokenization (i.e. remove and insert of a replacement)
+        text = incremental.remove(text, 4, 3);
+        text = incremental.insert(text, 4, "'yy' c");
+        incremental.tokenize(text);
+        full.tokenize(text);
+
+        assertSameTokens(full, incremental);
+    }
+
+    private void assertIncrementalLexing(String file, long seed) throws Exception {
+        String text = getTextFromFile(file);
+        IncrementalEngine incremental = new IncrementalEngine(text);
+        IncrementalEngine full = new IncrementalEngine(text);
+        full.getLexer().setIncremental(false);
+
+        Random random = new Random(seed);
+        for(int i=0; i<200; i++) {
+            int offset = random.nextInt(text.length()+1);
+            if(random.nextBoolean() && offset < text.length()) {
+                text = incremental.remove(text, offset, 1+random.nextInt(Math.min(5, text.length()-offset)));
+            } else {
+                text = incremental.insert(text, offset, SNIPPETS[random.nextInt(SNIPPETS.length)]);
+            }
+            incremental.tokenize(text);
+            full.tokenize(text);
+
+            assertSameTokens(full, incremental);
+        }
+    }
+
+    private void assertSameTokens(IncrementalEngine expected, IncrementalEngine actual) {
+        List<ATEToken> expectedTokens = expected.getTokens();
+        List<ATEToken> actualTokens = actual.getTokens();
+        assertEquals("token count", expectedTokens.size(), actualTokens.size());
+        for(int i=0; i<expectedTokens.size(); i++) {
+            ATEToken e = expectedTokens.get(i);
+            ATEToken a = actualTokens.get(i);
+            assertEquals("token "+i, e.toString(), a.toString());
+            assertEquals("index "+i, i, a.index);
+            assertEquals("start line number "+i, e.startLineNumber, a.startLineNumber);
+            assertEquals("end line number "+i, e.endLineNumber, a.endLineNumber);
+            assertEquals("start line index "+i, e.startLineIndex, a.startLineIndex);
+            assertEquals("end line index "+i, e.endLineIndex, a.endLineIndex);
+            assertSame("text "+i, expected.text, a.getText());
+        }
+
+        List<ATELine> expectedLines = expected.getLines();
+        List<ATELine> actualLines = actual.getLines();
+        assertEquals("line count", expectedLines.size(), actualLines.size());
+        for(int i=0; i<expectedLines.size(); i++) {
+            assertEquals("line "+i, expectedLines.get(i).position, actualLines.get(i).position);
+        }
+        assertEquals("max lines", expected.getMaxLines(), actual.getMaxLines());
+    }
+
+    private static class IncrementalEngine extends GrammarSyntaxEngine implements ATESyntaxEngineDelegate {
+
+        private String text;
+
+        public IncrementalEngine(String text) {
+            setDelegate(this);
+            tokenize(text);
+        }
+
+        public String insert(String text, int offset, String s) {
+            changeUpdate(offset, s.length());
+            return text.substring(0, offset)+s+text.substring(offset);
+        }
+
+        public String remove(String text, int offset, int length) {
+            changeUpdate(offset, -length);
+            return text.substring(0, offset)+text.substring(offset+length);
+        }
+
+        public void tokenize(String text) {
+            this.text = text;
+            processSyntax();
+        }
+
+        public void ateEngineBeforeParsing() {
+        }
+
+        public void ateEngineAfterParsing() {
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.xjlib.foundation.notification.XJNotificationCenter;
+import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
+
+import javax.swing.*;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestNotificationCenter extends AbstractTest {
+
+    private static final String NOTIF_A = "A";
+    private static final String NOTIF_B = "B";
+
+    private XJNotificationCenter center;
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestNotificationCenter.class));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        center = new XJNotificationCenter();
+    }
+
+    public void testPostFromMultipleThreads() throws Exception {
+        final int threads = 8;
+        final int posts = 2000;
+
+        final CountingObserver observer = new CountingObserver();
+        center.addObserver(observer, NOTIF_A);
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads+1);
+
+        for(int t=0; t<threads; t++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for(int i=0; i<posts; i++) {
+                            center.postNotification(this, NOTIF_A);
+                        }
+                    } catch(Throwable e) {
+                        failures.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        // Observers are added and removed while the notifications are posted
+        final List<CountingObserver> transients = new ArrayList<CountingObserver>();
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    start.await();
+                    for(int i=0; i<posts; i++) {
+                        CountingObserver o = new CountingObserver();
+                        transients.add(o);
+                        center.addObserver(o, NOTIF_A);
+                        center.addObserver(o, NOTIF_B);
+                        center.removeObserver(o);
+                    }
+                } catch(Throwable e) {
+                    failures.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        }).start();
+
+        start.countDown();
+        done.await();
+
+        assertEquals(Collections.<Throwable>emptyList(), failures);
+        assertEquals(threads*posts, observer.count.get());
+
+        // The removed observers do not receive anything anymore
+        int received = observer.count.get();
+        int transientsReceived = countAll(transients);
+        center.postNotification(this, NOTIF_A);
+        center.postNotification(this, NOTIF_B);
+        assertEquals(received+1, observer.count.get());
+        assertEquals(transientsReceived, countAll(transients));
+    }
+
+    public void testObserverReleasedWhenCollected() throws Exception {
+        CountingObserver kept = new CountingObserver();
+        center.addObserver(kept, NOTIF_A);
+
+        CountingObserver observer = new CountingObserver();
+        center.addObserver(observer, NOTIF_A);
+        center.postNotification(this, NOTIF_A);
+        assertEquals(1, observer.count.get());
+
+        // The observer is never removed: the center must not keep it alive
+        WeakReference<CountingObserver> reference = new WeakReference<CountingObserver>(observer);
+        observer = null;
+        for(int i=0; i<100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("observer collected", reference.get());
+
+        center.postNotification(this, NOTIF_A);
+        center.removeObserver(kept);
+        center.postNotification(this, NOTIF_A);
+        assertEquals(2, kept.count.get());
+    }
+
+    public void testEnqueuedNotificationsAreCoalesced() throws Exception {
+        final Object source = new Object();
+        final Object otherSource = new Object();
+        final RecordingObserver observer = new RecordingObserver();
+        center.addObserver(observer, NOTIF_A);
+        center.addObserver(observer, NOTIF_B);
+
+        // Enqueue in the event thread so nothing is delivered before the last notification is enqueued
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                center.enqueueNotification(source, NOTIF_A);
+                center.enqueueNotification(source, NOTIF_B);
+                center.enqueueNotification(otherSource, NOTIF_A);
+                center.enqueueNotification(source, NOTIF_A);
+                center.enqueueNotification(source, NOTIF_A);
+                assertTrue("delivered later", observer.received.isEmpty());
+            }
+        });
+        flushEventQueue();
+
+        List<String> expected = new ArrayList<String>();
+        expected.add(NOTIF_B);
+        expected.add(NOTIF_A);
+        expected.add(NOTIF_A);
+        assertEquals(expected, observer.received);
+        assertSame(source, observer.sources.get(0));
+        assertSame(otherSource, observer.sources.get(1));
+        assertSame(source, observer.sources.get(2));
+
+        // A notification enqueued after the delivery is delivered again
+        observer.received.clear();
+        observer.sources.clear();
+        center.enqueueNotification(source, NOTIF_A);
+        flushEventQueue();
+        assertEquals(Collections.singletonList(NOTIF_A), observer.received);
+    }
+
+    private void flushEventQueue() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+            }
+        });
+    }
+
+    private static int countAll(List<CountingObserver> observers) {
+        int count = 0;
+        for(CountingObserver o : observers) {
+            count += o.count.get();
+        }
+        return count;
+    }
+
+    private static class CountingObserver implements XJNotificationObserver {
+
+        public final AtomicInteger count = new AtomicInteger();
+
+        public void notificationFire(Object source, String name) {
+            count.incrementAndGet();
+        }
+    }
+
+    private static class RecordingObserver implements XJNotificationObserver {
+
+        public final List<String> received = new ArrayList<String>();
+        public final List<Object> sources = new ArrayList<Object>();
+
+        public void notificationFire(Object source, String name) {
+            assertTrue("event thread", SwingUtilities.isEventDispatchThread());
+            received.add(name);
+            sources.add(source);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.antlr.works.test.ut;
 
 import junit.framework.TestSuite;
 import junit.textui.TestRunner;
+import org.antlr.works.ate.syntax.generic.ATESyntaxSnapshot;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.editor.EditorInspector;
 import org.antlr.works.editor.EditorRules;
@@ -9,6 +10,7 @@ import org.antlr.works.grammar.element.ElementBlock;
 import org.antlr.works.grammar.element.ElementGrammarName;
 import org.antlr.works.grammar.element.ElementReference;
 import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
 import org.antlr.works.test.AbstractTest;
 import org.antlr.works.test.TestConstants;
 
@@ -112,6 +114,36 @@ public class TestParser extends AbstractTest {
         assertEquals("references", Arrays.asList("FOO", "BAR", "OTHER"), getRefsAsString(getEngine().getReferences()));
     }
 
+    public void testEnclosingRuleAtPosition() throws Exception {
+        parseFile(TestConstants.MANTRA);
+
+        for(int position=0; position<=getText().length(); position++) {
+            ElementRule expected = null;
+            for(ElementRule r : getEngine().getRules()) {
+                if(r.containsIndex(position)) {
+                    expected = r;
+                    break;
+                }
+            }
+            assertSame("rule at "+position, expected, getEngine().getEnclosingRuleAtPosition(position));
+        }
+    }
+
+    public void testReplacedSnapshotIsNotModified() throws Exception {
+        parseFile(TestConstants.REFERENCES);
+        ATESyntaxSnapshot first = getSyntaxEngine().getSnapshot();
+        GrammarSyntaxParser parser = (GrammarSyntaxParser) first.getParser();
+        int tokens = first.getTokens().size();
+        int rules = parser.rules.size();
+
+        parseFile(TestConstants.REFERENCES);
+        ATESyntaxSnapshot second = getSyntaxEngine().getSnapshot();
+        assertNotSame(parser, second.getParser());
+        assertEquals(tokens, first.getTokens().size());
+        assertEquals(rules, parser.rules.size());
+        assertEquals(tokens, second.getTokens().size());
+    }
+
     public void testMantra() throws Exception {
         parseFile(TestConstants.MANTRA);
         assertInspector(0);
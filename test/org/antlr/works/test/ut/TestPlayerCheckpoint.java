@@ -0,0 +1,473 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.DebuggerTab;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.input.DBInputProcessor;
+import org.antlr.works.debugger.input.DBInputTextTokenInfo;
+import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
+import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
+import org.antlr.works.debugger.tree.DBASTModel;
+import org.antlr.works.test.AbstractTest;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestPlayerCheckpoint extends AbstractTest {
+
+    private static final int EVENT_COUNT = 4*DBPlayer.CHECKPOINT_INTERVAL+777;
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestPlayerCheckpoint.class));
+    }
+
+    public void testReplayFromCheckpoint() throws Exception {
+        List<DBEvent> events = createEvents(new Random(1), EVENT_COUNT);
+
+        MockDebuggerTab tab = new MockDebuggerTab();
+        DBPlayer player = createPlayer(tab);
+        // Play the events in several steps like the recorder does
+        for(int count=0; count<EVENT_COUNT; count+=731) {
+            player.playEvents(events, count, false);
+        }
+        player.playEvents(events, EVENT_COUNT, false);
+        assertEquals(getStateFromStart(events, EVENT_COUNT), tab.getState());
+
+        Random random = new Random(2);
+        List<Integer> positions = new ArrayList<Integer>();
+        positions.add(0);
+        positions.add(1);
+        positions.add(DBPlayer.CHECKPOINT_INTERVAL);
+        positions.add(DBPlayer.CHECKPOINT_INTERVAL+1);
+        positions.add(3*DBPlayer.CHECKPOINT_INTERVAL-1);
+        positions.add(EVENT_COUNT);
+        for(int i=0; i<20; i++) {
+            positions.add(random.nextInt(EVENT_COUNT+1));
+        }
+
+        for(int position : positions) {
+            player.playEvents(events, position, true);
+            assertEquals("Replay to event "+position, getStateFromStart(events, position), tab.getState());
+        }
+
+        assertTrue(tab.restoredCheckpoints > 0);
+        assertTrue(tab.warnings.isEmpty());
+    }
+
+    private String getStateFromStart(List<DBEvent> events, int position) {
+        MockDebuggerTab tab = new MockDebuggerTab();
+        createPlayer(tab).playEvents(events, position, false);
+        assertEquals(0, tab.restoredCheckpoints);
+        assertTrue(tab.warnings.isEmpty());
+        return tab.getState();
+    }
+
+    private DBPlayer createPlayer(MockDebuggerTab tab) {
+        DBPlayer player = new DBPlayer(tab);
+        tab.player = player;
+        player.setInputBuffer(tab.processor);
+        player.resetPlayEvents(true);
+        return player;
+    }
+
+    /** Creates a random but consistent stream of events: the rules, subrules, decisions,
+     * marks and backtracks are balanced and the tree events only refer to existing nodes.
+     */
+    private List<DBEvent> createEvents(Random random, int count) {
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        Stack<List<Integer>> roots = new Stack<List<Integer>>();
+        List<Integer> freeNodes = new ArrayList<Integer>();
+        Stack<Integer> subrules = new Stack<Integer>();
+        Stack<Integer> decisions = new Stack<Integer>();
+        int marks = 0;
+        int backtracks = 0;
+        int resyncs = 0;
+        int nodeID = 0;
+        int tokenIndex = 0;
+
+        events.add(new DBEvent(DBEvent.COMMENCE));
+        events.add(new DBEventEnterRule("T.g", "r0"));
+        roots.push(new ArrayList<Integer>());
+
+        while(events.size() < count) {
+            List<Integer> currentRoots = roots.peek();
+            switch(random.nextInt(20)) {
+                case 0:
+                    events.add(new DBEventEnterRule("T.g", "r"+roots.size()));
+                    roots.push(new ArrayList<Integer>());
+                    break;
+                case 1:
+                    if(roots.size() > 1) {
+                        events.add(new DBEventExitRule("T.g", "r"+(roots.size()-1)));
+                        roots.pop();
+                    }
+                    break;
+                case 2:
+                    subrules.push(random.nextInt(10));
+                    events.add(new DBEventEnterSubRule(subrules.peek()));
+                    break;
+                case 3:
+                    if(!subrules.isEmpty())
+                        events.add(new DBEventExitSubRule(subrules.pop()));
+                    break;
+                case 4:
+                    decisions.push(random.nextInt(10));
+                    events.add(new DBEventEnterDecision(decisions.peek()));
+                    break;
+                case 5:
+                    if(!decisions.isEmpty())
+                        events.add(new DBEventExitDecision(decisions.pop()));
+                    break;
+                case 6:
+                    events.add(new DBEventMark(++marks));
+                    break;
+                case 7:
+                    if(marks > 0) {
+                        if(random.nextBoolean()) {
+                            events.add(new DBEventRewind());
+                        } else {
+                            events.add(new DBEventRewind(marks--));
+                        }
+                    }
+                    break;
+                case 8:
+                    if(backtracks > 0 && random.nextBoolean()) {
+                        events.add(new DBEventEndBacktrack(backtracks--, random.nextBoolean()));
+                    } else {
+                        events.add(new DBEventBeginBacktrack(++backtracks));
+                    }
+                    break;
+                case 9:
+                    if(resyncs > 0 && random.nextBoolean()) {
+                        events.add(new DBEvent(DBEvent.END_RESYNC));
+                        resyncs--;
+                    } else if(resyncs == 0) {
+                        events.add(new DBEvent(DBEvent.BEGIN_RESYNC));
+                        resyncs++;
+                    }
+                    break;
+                case 10:
+                case 11:
+                    events.add(new DBEventLT(1, createToken(tokenIndex)));
+                    events.add(new DBEventConsumeToken(createToken(tokenIndex++)));
+                    break;
+                case 12:
+                    events.add(new DBEventConsumeHiddenToken(createToken(tokenIndex++)));
+                    break;
+                case 13:
+                    events.add(new DBEventLocation(random.nextInt(100), random.nextInt(80)));
+                    break;
+                case 14:
+                    events.add(new DBEventNilNode(nodeID));
+                    currentRoots.add(nodeID++);
+                    break;
+                case 15:
+                    if(tokenIndex > 0 && random.nextBoolean()) {
+                        events.add(new DBEventCreateNode(nodeID, random.nextInt(tokenIndex)));
+                    } else {
+                        events.add(new DBEventCreateNode(nodeID, "N"+nodeID, 4));
+                    }
+                    freeNodes.add(nodeID++);
+                    break;
+                case 16:
+                case 17:
+                    if(!currentRoots.isEmpty() && !freeNodes.isEmpty()) {
+                        int root = currentRoots.get(random.nextInt(currentRoots.size()));
+                        int child = freeNodes.remove(random.nextInt(freeNodes.size()));
+                        events.add(new DBEventAddChild(root, child));
+                    } else if(currentRoots.size() > 1) {
+                        int root = currentRoots.get(currentRoots.size()-1);
+                        int child = currentRoots.remove(0);
+                        events.add(new DBEventAddChild(root, child));
+                    }
+                    break;
+                case 18:
+                    if(!currentRoots.isEmpty() && !freeNodes.isEmpty()) {
+                        int index = random.nextInt(currentRoots.size());
+                        int newRoot = freeNodes.remove(random.nextInt(freeNodes.size()));
+                        events.add(new DBEventBecomeRoot(newRoot, currentRoots.get(index)));
+                        currentRoots.set(index, newRoot);
+                    }
+                    break;
+                case 19:
+                    events.add(new DBEventEnterAlt(random.nextInt(3)));
+                    break;
+            }
+        }
+        return events;
+    }
+
+    private static Token createToken(int index) {
+        CommonToken token = new CommonToken(4, "t"+index);
+        token.setTokenIndex(index);
+        return token;
+    }
+
+    /** Debugger tab holding the views state used by the player without any user interface */
+    private static class MockDebuggerTab extends DebuggerTab {
+
+        public DBPlayer player;
+        public MockInputProcessor processor = new MockInputProcessor();
+        public DBASTModel astModel = new DBASTModel(this);
+        public List<DBEventEnterRule> stack = new ArrayList<DBEventEnterRule>();
+        public List<String> playedEvents = new ArrayList<String>();
+        public List<String> tokens = new ArrayList<String>();
+        public List<String> warnings = new ArrayList<String>();
+        /** Number of tokens added to the parse tree for each checkpoint */
+        public Map<Integer,Integer> checkpointTokens = new HashMap<Integer, Integer>();
+        public int restoredCheckpoints = 0;
+
+        public MockDebuggerTab() {
+            super(null);
+        }
+
+        public String getState() {
+            StringBuilder sb = new StringBuilder();
+            DBPlayerContextInfo info = player.getContextInfo();
+            sb.append("context: ").append(info.subrule).append(info.decision).append(info.mark).append(info.backtrack);
+            sb.append("\ninput: ").append(processor.getState());
+            sb.append("\nstack: ");
+            for(DBEventEnterRule rule : stack) {
+                sb.append(rule.name).append(' ');
+            }
+            sb.append("\ntokens: ").append(tokens);
+            sb.append("\nevents: ").append(playedEvents);
+            sb.append("\nast:");
+            for(DBASTModel.Rule rule : astModel.rules) {
+                sb.append("\n  ").append(rule.name).append(':');
+                for(DBASTModel.ASTNode root : rule.getRoots()) {
+                    sb.append(' ');
+                    appendNode(sb, root);
+                }
+            }
+            sb.append("\nnodes:");
+            for(DBASTModel.ASTNode node : new TreeMap<Integer, DBASTModel.ASTNode>(astModel.nodesMap).values()) {
+                sb.append(' ');
+                appendNode(sb, node);
+            }
+            return sb.toString();
+        }
+
+        private void appendNode(StringBuilder sb, DBASTModel.ASTNode node) {
+            sb.append(node.id).append('/').append(node);
+            if(node.parentNode != null) {
+                sb.append('^').append(node.parentNode.id);
+            }
+            if(node.getChildCount() > 0) {
+                sb.append('(');
+                for(int i=0; i<node.getChildCount(); i++) {
+                    if(i > 0) sb.append(' ');
+                    appendNode(sb, (DBASTModel.ASTNode)node.getChildAt(i));
+                }
+                sb.append(')');
+            }
+        }
+
+        @Override
+        public void resetGUI() {
+            stack.clear();
+            playedEvents.clear();
+            tokens.clear();
+            astModel.clear();
+        }
+
+        @Override
+        public void playerSaveCheckpoint(DBPlayerCheckpoint checkpoint) {
+            checkpoint.stack = new ArrayList<DBEventEnterRule>(stack);
+            checkpoint.ast = astModel.createCheckpoint();
+            checkpoint.parseTree = null;
+            checkpointTokens.put(checkpoint.eventCount, tokens.size());
+        }
+
+        @Override
+        public void playerRestoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+            restoredCheckpoints++;
+            stack = new ArrayList<DBEventEnterRule>(checkpoint.stack);
+            playedEvents.subList(checkpoint.eventCount, playedEvents.size()).clear();
+            tokens.subList(checkpointTokens.get(checkpoint.eventCount), tokens.size()).clear();
+            astModel.restoreCheckpoint(checkpoint.ast);
+        }
+
+        @Override
+        public void addEvent(int index, DBEvent event, DBPlayerContextInfo info) {
+            assertEquals(playedEvents.size(), index);
+            playedEvents.add(event+" "+info.getSubrule()+","+info.getDecision()+","+info.getMark()+","+info.getBacktrack());
+        }
+
+        @Override
+        public void playerSetLocation(DBEventLocation location) {
+        }
+
+        @Override
+        public void resetGrammarLocation() {
+        }
+
+        @Override
+        public void setGrammarLocation(DBEventLocation location) {
+        }
+
+        @Override
+        public void playerPushRule(DBEventEnterRule rule) {
+            stack.add(rule);
+            astModel.pushRule(rule.name);
+        }
+
+        @Override
+        public void playerPopRule(DBEventExitRule rule) {
+            stack.remove(stack.size()-1);
+            astModel.popRule();
+        }
+
+        @Override
+        public void playerConsumeToken(Token token) {
+            tokens.add(token.getText());
+        }
+
+        @Override
+        public void playerBeginBacktrack(int level) {
+            tokens.add("begin backtrack "+level);
+        }
+
+        @Override
+        public void playerEndBacktrack(int level, boolean success) {
+            tokens.add("end backtrack "+level+" "+success);
+        }
+
+        @Override
+        public void playerNilNode(int id) {
+            astModel.nilNode(id);
+        }
+
+        @Override
+        public void playerCreateNode(int id, Token token) {
+            astModel.createNode(id, token);
+        }
+
+        @Override
+        public void playerCreateNode(int id, String text, int type) {
+            astModel.createNode(id, new CommonToken(type, text));
+        }
+
+        @Override
+        public void playerBecomeRoot(int newRootID, int oldRootID) {
+            astModel.becomeRoot(newRootID, oldRootID);
+        }
+
+        @Override
+        public void playerAddChild(int rootID, int childID) {
+            astModel.addChild(rootID, childID);
+        }
+
+        @Override
+        public void warning(Object o, String message) {
+            warnings.add(message);
+        }
+    }
+
+    private static class MockInputProcessor implements DBInputProcessor {
+
+        private List<Token> tokens = new ArrayList<Token>();
+        private int currentTokenIndex = -1;
+        private int lookahead = 0;
+        private int rewinds = 0;
+        private DBEventLocation location;
+
+        public String getState() {
+            return tokens.size()+" tokens, current "+currentTokenIndex+", "+lookahead+" LT, "+rewinds+" rewinds, location "+location;
+        }
+
+        public void reset() {
+            tokens.clear();
+            currentTokenIndex = -1;
+            lookahead = 0;
+            rewinds = 0;
+            location = null;
+        }
+
+        public void removeAllLT() {
+            lookahead = 0;
+        }
+
+        public void rewind(int i) {
+            currentTokenIndex = i;
+            rewinds++;
+        }
+
+        public void rewindAll() {
+            reset();
+        }
+
+        public void LT(Token token) {
+            lookahead++;
+        }
+
+        public void consumeToken(Token token, int flavor) {
+            tokens.add(token);
+            currentTokenIndex = token.getTokenIndex();
+        }
+
+        public void setLocation(DBEventLocation event) {
+            location = event;
+        }
+
+        public int getCurrentTokenIndex() {
+            return currentTokenIndex;
+        }
+
+        public DBInputTextTokenInfo getTokenInfoAtTokenIndex(int index) {
+            return new DBInputTextTokenInfo(createToken(index), location);
+        }
+
+        public Object createCheckpoint() {
+            MockInputProcessor checkpoint = new MockInputProcessor();
+            checkpoint.set(this);
+            return checkpoint;
+        }
+
+        public void restoreCheckpoint(Object checkpoint) {
+            set((MockInputProcessor)checkpoint);
+        }
+
+        private void set(MockInputProcessor other) {
+            tokens = new ArrayList<Token>(other.tokens);
+            currentTokenIndex = other.currentTokenIndex;
+            lookahead = other.lookahead;
+            rewinds = other.rewinds;
+            location = other.location;
+        }
+    }
+
+}
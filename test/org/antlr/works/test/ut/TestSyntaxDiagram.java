@@ -4,7 +4,9 @@ import org.antlr.works.test.AbstractTest;
 import org.antlr.works.test.TestConstants;
 import org.antlr.xjlib.foundation.XJUtils;
 
-import java.io.File;/*
+import java.io.File;
+import java.util.*;
+/*
 
 [The "BSD licence"]
 Copyright (c) 2005-07 Jean Bovet
@@ -37,6 +39,16 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 public class TestSyntaxDiagram extends AbstractTest {
 
+    private final List<File> tempDirs = new ArrayList<File>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        for(File dir : tempDirs) {
+            delete(dir);
+        }
+        super.tearDown();
+    }
+
     public void testVSQL() throws Exception {
     //    todo redo these syntax diagram
 //        assertSD("vsql", "vsql");
@@ -47,6 +59,112 @@ public class TestSyntaxDiagram extends AbstractTest {
   //      assertSD("expr", "expr");
     }
 
+    public void testIncrementalGeneration() throws Exception {
+        File dir = createTempDir("incremental");
+        File grammar = new File(dir, "calc.g");
+        String text = getTextFromFile(TestConstants.PREFIX+"calc.g");
+        XJUtils.writeStringToFile(text, grammar.getAbsolutePath());
+        File output = new File(dir, "sd");
+
+        generate(grammar, output, "-incremental");
+        Map<String,Long> generated = touchDiagrams(output);
+        assertEquals(new TreeSet<String>(Arrays.asList("INT", "VAR", "WS", "command", "expr", "factor", "line", "term")),
+                new TreeSet<String>(generated.keySet()));
+
+        // Nothing changed: no diagram is generated again
+        generate(grammar, output, "-incremental");
+        assertEquals(generated, getDiagrams(output));
+
+        // Only the modified rule and the deleted diagram are generated again
+        XJUtils.writeStringToFile(text.replace("'*' x=factor", "'*' x=expr"), grammar.getAbsolutePath());
+        new File(output, "line.eps").delete();
+        generate(grammar, output, "-incremental");
+        Map<String,Long> diagrams = getDiagrams(output);
+        for(String rule : generated.keySet()) {
+            if(rule.equals("term") || rule.equals("line")) {
+                assertFalse(rule, generated.get(rule).equals(diagrams.get(rule)));
+            } else {
+                assertEquals(rule, generated.get(rule), diagrams.get(rule));
+            }
+        }
+
+        // Without -incremental, every diagram is generated
+        touchDiagrams(output);
+        generate(grammar, output);
+        diagrams = getDiagrams(output);
+        for(String rule : generated.keySet()) {
+            assertFalse(rule, generated.get(rule).equals(diagrams.get(rule)));
+        }
+    }
+
+    public void testThreadedGeneration() throws Exception {
+        File dir = createTempDir("threads");
+        String grammar = getResourceFile(TestConstants.PREFIX+"calc.g");
+        File single = new File(dir, "single");
+        File multiple = new File(dir, "multiple");
+
+        org.antlr.works.Console.main(new String[] { "-f", grammar, "-sd", "eps", "-o", single.getAbsolutePath() });
+        org.antlr.works.Console.main(new String[] { "-f", grammar, "-sd", "eps", "-o", multiple.getAbsolutePath(), "-threads", "4" });
+
+        Map<String,Long> diagrams = getDiagrams(single);
+        assertEquals(diagrams.keySet(), getDiagrams(multiple).keySet());
+        for(String rule : diagrams.keySet()) {
+            assertEquals(rule, XJUtils.getStringFromFile(new File(single, rule+".eps").getAbsolutePath()),
+                    XJUtils.getStringFromFile(new File(multiple, rule+".eps").getAbsolutePath()));
+        }
+    }
+
+    private void generate(File grammar, File output, String... options) throws Exception {
+        String[] args = new String[6+options.length];
+        args[0] = "-f";
+        args[1] = grammar.getAbsolutePath();
+        args[2] = "-sd";
+        args[3] = "eps";
+        args[4] = "-o";
+        args[5] = output.getAbsolutePath();
+        System.arraycopy(options, 0, args, 6, options.length);
+        org.antlr.works.Console.main(args);
+    }
+
+    /** Sets the same old modification date to all the diagrams so a diagram generated again is detected */
+    private Map<String,Long> touchDiagrams(File output) {
+        for(File file : output.listFiles()) {
+            if(file.getName().endsWith(".eps")) {
+                assertTrue(file.setLastModified(1000));
+            }
+        }
+        return getDiagrams(output);
+    }
+
+    private Map<String,Long> getDiagrams(File output) {
+        Map<String,Long> diagrams = new HashMap<String, Long>();
+        for(File file : output.listFiles()) {
+            String name = file.getName();
+            if(name.endsWith(".eps")) {
+                diagrams.put(name.substring(0, name.length()-".eps".length()), file.lastModified());
+            }
+        }
+        return diagrams;
+    }
+
+    private File createTempDir(String name) throws Exception {
+        File dir = File.createTempFile(name, "sd");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdirs());
+        tempDirs.add(dir);
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
     private void assertSD(String folder, String name) throws Exception {
         // Read the grammar file
         String source = getResourceFile(TestConstants.PREFIX+"sd/"+folder+"/"+name+".g");
@@ -0,0 +1,177 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.xjlib.appkit.document.XJDataPlainText;
+import org.antlr.xjlib.appkit.document.XJDocument;
+import org.antlr.xjlib.appkit.document.XJDocumentWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestXJDataPlainText extends AbstractTest {
+
+    private File dir;
+    private File file;
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestXJDataPlainText.class));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("antlrworks", "data");
+        dir.delete();
+        dir.mkdirs();
+        file = new File(dir, "T.g");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        XJDataPlainText.forgetDiskState(file.getPath());
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testWrite() throws Exception {
+        XJDataPlainText.write(file.getPath(), "grammar T;");
+        XJDataPlainText.write(file.getPath(), "grammar T;\nb : ID ;");
+        assertEquals("grammar T;\nb : ID ;", readText());
+
+        // The temporary files have been moved over the file
+        String[] names = dir.list();
+        assertEquals(1, names.length);
+        assertEquals(file.getName(), names[0]);
+    }
+
+    public void testReadUTF8() throws Exception {
+        writeBytes("grammar \u00e9t\u00e9;".getBytes("UTF-8"));
+        assertEquals("grammar \u00e9t\u00e9;", read());
+    }
+
+    public void testReadPlatformEncoding() throws Exception {
+        // Not valid UTF-8: the file has been written with the encoding of the platform
+        byte[] bytes = "grammar \u00e9t\u00e9;".getBytes("ISO-8859-1");
+        writeBytes(bytes);
+        assertEquals(new String(bytes), read());
+    }
+
+    public void testWriteIfChanged() throws Exception {
+        assertTrue(XJDataPlainText.writeIfChanged(file.getPath(), "grammar T;"));
+        assertFalse(XJDataPlainText.writeIfChanged(file.getPath(), "grammar T;"));
+        assertTrue(XJDataPlainText.writeIfChanged(file.getPath(), "grammar U;"));
+        assertEquals("grammar U;", readText());
+
+        // The file has been modified by another application
+        writeBytes("grammar V; // modified".getBytes("UTF-8"));
+        assertTrue(XJDataPlainText.writeIfChanged(file.getPath(), "grammar U;"));
+        assertEquals("grammar U;", readText());
+
+        // The file is read and then saved without modification
+        assertEquals("grammar U;", read());
+        assertFalse(XJDataPlainText.writeIfChanged(file.getPath(), "grammar U;"));
+    }
+
+    public void testBackgroundSaveAfterSave() throws Exception {
+        XJDataPlainText.write(file.getPath(), "grammar T;");
+        XJDataPlainText data = new XJDataPlainText();
+        XJDocument document = new XJDocument();
+        document.setDocumentData(data);
+        document.load(file.getPath());
+
+        // Keep the writer busy so the background save is still queued when the document is saved
+        final CountDownLatch latch = new CountDownLatch(1);
+        XJDocumentWriter.execute(new Runnable() {
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    // Continue
+                }
+            }
+        });
+
+        data.setText("grammar T; // auto-saved");
+        document.changeDone();
+        document.saveInBackground();
+
+        data.setText("grammar T; // saved");
+        document.changeDone();
+        assertTrue(document.save(false));
+
+        latch.countDown();
+        XJDocumentWriter.flush(10);
+        assertEquals("grammar T; // saved", readText());
+    }
+
+    private String read() throws IOException {
+        XJDataPlainText data = new XJDataPlainText();
+        data.setFile(file.getPath());
+        data.readData();
+        return data.getText();
+    }
+
+    private String readText() throws IOException {
+        byte[] bytes = new byte[(int)file.length()];
+        FileInputStream is = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while(offset < bytes.length) {
+                offset += is.read(bytes, offset, bytes.length-offset);
+            }
+        } finally {
+            is.close();
+        }
+        return new String(bytes, XJDataPlainText.ENCODING);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(bytes);
+        } finally {
+            os.close();
+        }
+    }
+}